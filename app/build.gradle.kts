@@ -47,11 +47,10 @@ dependencies {
     implementation("androidx.room:room-runtime:$room_version")
     annotationProcessor("androidx.room:room-compiler:$room_version")
 
-    implementation("com.github.PhilJay:MPAndroidChart:v3.1.0")
-
     testImplementation("junit:junit:4.13.2")
     testImplementation("androidx.arch.core:core-testing:2.2.0") // Added this line
     androidTestImplementation("androidx.test.ext:junit:1.1.5")
     androidTestImplementation("androidx.test.espresso:espresso-core:3.5.1")
     androidTestImplementation("androidx.test:core-ktx:1.5.0") // Added this line
+    androidTestImplementation("com.github.PhilJay:MPAndroidChart:v3.1.0") // BarChart baseline of HistogramDrawBenchmark
 }
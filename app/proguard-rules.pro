@@ -23,8 +23,4 @@
 # ---- Keeps for Room (annotation-processed) ----
 -keep class androidx.room.** { *; }
 -keep class * extends androidx.room.RoomDatabase { *; }
--dontwarn androidx.room.**
-
-# ---- Keeps for MPAndroidChart ----
--keep class com.github.mikephil.charting.** { *; }
--dontwarn com.github.mikephil.charting.**
\ No newline at end of file
+-dontwarn androidx.room.**
\ No newline at end of file
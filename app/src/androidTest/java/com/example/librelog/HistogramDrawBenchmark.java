@@ -0,0 +1,147 @@
+package com.example.librelog;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.util.Log;
+import android.view.View;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.example.librelog.ui.HistogramView;
+import com.github.mikephil.charting.charts.BarChart;
+import com.github.mikephil.charting.components.XAxis;
+import com.github.mikephil.charting.components.YAxis;
+import com.github.mikephil.charting.data.BarData;
+import com.github.mikephil.charting.data.BarDataSet;
+import com.github.mikephil.charting.data.BarEntry;
+import com.github.mikephil.charting.formatter.ValueFormatter;
+import com.github.mikephil.charting.utils.ColorTemplate;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Time to draw one frame of each dashboard histogram (24, 31, 12 and 8 bins), after its grow
+ * animation has finished, with HistogramView and with the MPAndroidChart BarChart it replaced.
+ * The BarChart is set up the way the dashboard used to set it up, formatters included; the library
+ * is a test-only dependency. Results are logged under the HistogramDrawBenchmark tag.
+ */
+@RunWith(AndroidJUnit4.class)
+public class HistogramDrawBenchmark {
+
+    private static final String TAG = "HistogramDrawBenchmark";
+    private static final int WIDTH = 1080;
+    private static final int HEIGHT = 600;
+    private static final int[] BIN_COUNTS = {24, 31, 12, 8};
+    private static final int WARMUP_FRAMES = 50;
+    private static final int MEASURED_FRAMES = 500;
+
+    @Test
+    public void drawTimePerFrame() {
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(() -> {
+            Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+            Canvas canvas = new Canvas(Bitmap.createBitmap(WIDTH, HEIGHT, Bitmap.Config.ARGB_8888));
+            for (int bins : BIN_COUNTS) {
+                int[] counts = counts(bins);
+
+                HistogramView histogram = new HistogramView(context);
+                layout(histogram);
+                histogram.setCounts(counts, bins);
+
+                BarChart barChart = new BarChart(context);
+                setUpLikeBefore(barChart, counts, bins);
+                layout(barChart);
+
+                long histogramMicros = microsPerFrame(histogram, canvas);
+                long barChartMicros = microsPerFrame(barChart, canvas);
+                Log.i(TAG, String.format(Locale.US, "%d bins: HistogramView %d us, BarChart %d us per frame",
+                        bins, histogramMicros, barChartMicros));
+            }
+        });
+    }
+
+    private static int[] counts(int bins) {
+        int[] counts = new int[bins];
+        for (int i = 0; i < bins; i++) counts[i] = (i * 37) % 101;
+        return counts;
+    }
+
+    private static void layout(View view) {
+        view.measure(View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(HEIGHT, View.MeasureSpec.EXACTLY));
+        view.layout(0, 0, WIDTH, HEIGHT);
+    }
+
+    private static long microsPerFrame(View view, Canvas canvas) {
+        long start = System.nanoTime();
+        while (System.nanoTime() - start < 1_200_000_000L) {
+            view.draw(canvas); // Runs out the one-time animation
+        }
+        for (int i = 0; i < WARMUP_FRAMES; i++) view.draw(canvas);
+        start = System.nanoTime();
+        for (int i = 0; i < MEASURED_FRAMES; i++) view.draw(canvas);
+        return (System.nanoTime() - start) / MEASURED_FRAMES / 1000;
+    }
+
+    // What HomeFragment did for each chart before HistogramView, less the animation
+    private static void setUpLikeBefore(BarChart chart, int[] counts, int bins) {
+        List<BarEntry> barEntries = new ArrayList<>();
+        for (int i = 0; i < bins; i++) {
+            barEntries.add(new BarEntry(i, counts[i]));
+        }
+        BarDataSet dataSet = new BarDataSet(barEntries, "Events");
+        dataSet.setColors(ColorTemplate.MATERIAL_COLORS);
+        dataSet.setValueTextColor(Color.BLACK);
+        dataSet.setValueTextSize(10f);
+        dataSet.setValueFormatter(new ValueFormatter() {
+            @Override
+            public String getFormattedValue(float value) {
+                return value == 0 ? "" : String.valueOf((int) value);
+            }
+        });
+        BarData barData = new BarData(dataSet);
+        barData.setBarWidth(0.9f);
+
+        chart.getDescription().setEnabled(false);
+        chart.setDrawGridBackground(false);
+        chart.setFitBars(true);
+        chart.setData(barData);
+        chart.setDrawBorders(false);
+        chart.getLegend().setEnabled(false);
+
+        XAxis xAxis = chart.getXAxis();
+        xAxis.setPosition(XAxis.XAxisPosition.BOTTOM);
+        xAxis.setGranularity(1f);
+        xAxis.setLabelCount(bins, false);
+        xAxis.setValueFormatter(new ValueFormatter() {
+            @Override
+            public String getFormattedValue(float value) {
+                return String.format(Locale.US, "%02d", (int) value);
+            }
+        });
+        xAxis.setDrawGridLines(false);
+
+        YAxis leftAxis = chart.getAxisLeft();
+        leftAxis.setAxisMinimum(0f);
+        leftAxis.setGranularity(1f);
+        leftAxis.setGranularityEnabled(true);
+        leftAxis.setValueFormatter(new ValueFormatter() {
+            @Override
+            public String getFormattedValue(float value) {
+                return String.valueOf((int) value);
+            }
+        });
+        leftAxis.setDrawGridLines(true);
+
+        chart.getAxisRight().setEnabled(false);
+        // No animateY: its animator runs on the main looper, which the benchmark blocks, and only
+        // settled frames are measured anyway
+    }
+}
@@ -0,0 +1,96 @@
+package com.example.librelog;
+
+import android.content.Context;
+import android.util.Log;
+import android.view.View;
+import android.widget.FrameLayout;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Time to bind one row of the recent-entries list, before and after rows were preformatted
+ * (LogEntryRow). "Before" repeats what onBindViewHolder used to do: format a new Date and check the
+ * notes on every bind. Results are logged under the LogEntryBindBenchmark tag.
+ */
+@RunWith(AndroidJUnit4.class)
+public class LogEntryBindBenchmark {
+
+    private static final String TAG = "LogEntryBindBenchmark";
+    private static final int ROWS = 500;
+    private static final int WARMUP_ROUNDS = 20;
+    private static final int MEASURED_ROUNDS = 100;
+
+    @Test
+    public void bindTimePerRow() {
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(() -> {
+            Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+            Map<Integer, String> eventNames = new HashMap<>();
+            for (int type = 1; type <= 5; type++) {
+                eventNames.put(type, "Event " + type);
+            }
+            List<LogEntry> entries = new ArrayList<>();
+            for (int i = 0; i < ROWS; i++) {
+                LogEntry entry = new LogEntry();
+                entry.setTimestamp(1_700_000_000_000L + i * 60_000L);
+                entry.setEventTypeId(1 + i % 5);
+                entry.setNotes(i % 3 == 0 ? null : "Notes for entry " + i);
+                entries.add(entry);
+            }
+
+            LogEntryAdapter adapter = new LogEntryAdapter(LogEntryRow.fromEntries(entries, eventNames));
+            LogEntryAdapter.LogEntryViewHolder holder = adapter.onCreateViewHolder(new FrameLayout(context), 0);
+            SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.getDefault());
+
+            for (int round = 0; round < WARMUP_ROUNDS; round++) {
+                bindBefore(holder, entries, eventNames, dateFormat);
+                bindAfter(holder, adapter);
+            }
+            long beforeNanos = 0;
+            long afterNanos = 0;
+            for (int round = 0; round < MEASURED_ROUNDS; round++) {
+                long start = System.nanoTime();
+                bindBefore(holder, entries, eventNames, dateFormat);
+                beforeNanos += System.nanoTime() - start;
+                start = System.nanoTime();
+                bindAfter(holder, adapter);
+                afterNanos += System.nanoTime() - start;
+            }
+
+            long binds = (long) ROWS * MEASURED_ROUNDS;
+            Log.i(TAG, String.format(Locale.US, "Bind per row: before %d ns, after %d ns",
+                    beforeNanos / binds, afterNanos / binds));
+        });
+    }
+
+    private static void bindBefore(LogEntryAdapter.LogEntryViewHolder holder, List<LogEntry> entries,
+                                   Map<Integer, String> eventNames, SimpleDateFormat dateFormat) {
+        for (LogEntry entry : entries) {
+            holder.textViewEvent.setText(eventNames.get(entry.getEventTypeId()));
+            holder.textViewTimestamp.setText(dateFormat.format(new Date(entry.getTimestamp())));
+            if (entry.getNotes() != null && !entry.getNotes().isEmpty()) {
+                holder.textViewNotes.setText(entry.getNotes());
+                holder.textViewNotes.setVisibility(View.VISIBLE);
+            } else {
+                holder.textViewNotes.setVisibility(View.GONE);
+            }
+        }
+    }
+
+    private static void bindAfter(LogEntryAdapter.LogEntryViewHolder holder, LogEntryAdapter adapter) {
+        for (int position = 0; position < adapter.getItemCount(); position++) {
+            adapter.onBindViewHolder(holder, position);
+        }
+    }
+}
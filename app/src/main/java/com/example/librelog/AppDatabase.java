@@ -8,20 +8,66 @@ import androidx.room.Room;
 import androidx.room.RoomDatabase;
 import androidx.room.migration.Migration;
 import androidx.sqlite.db.SupportSQLiteDatabase;
+import androidx.sqlite.db.SupportSQLiteStatement;
 
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
-@Database(entities = {LogEntry.class, EventType.class}, version = 2, exportSchema = false)
+@Database(entities = {LogEntry.class, EventType.class, EventRollup.class, IntervalBucket.class, ArchiveBlock.class}, version = 11, exportSchema = false)
 public abstract class AppDatabase extends RoomDatabase {
 
     public abstract LogEntryDao logEntryDao();
     public abstract EventTypeDao eventTypeDao();
+    public abstract EventRollupDao eventRollupDao();
+    public abstract ArchiveBlockDao archiveBlockDao();
+
+    private final Object lazyInitLock = new Object();
+    private DashboardCache dashboardCache;
+    private EventTypeNames eventTypeNames;
+
+    // Created on first use, once the database is built: it registers with the InvalidationTracker
+    public DashboardCache dashboardCache() {
+        synchronized (lazyInitLock) {
+            if (dashboardCache == null) {
+                dashboardCache = new DashboardCache(this);
+            }
+            return dashboardCache;
+        }
+    }
+
+    // Same: created on first use, once the database is built
+    public EventTypeNames eventTypeNames() {
+        synchronized (lazyInitLock) {
+            if (eventTypeNames == null) {
+                eventTypeNames = new EventTypeNames(this);
+            }
+            return eventTypeNames;
+        }
+    }
 
     private static volatile AppDatabase INSTANCE;
-    private static final int NUMBER_OF_THREADS = 4;
-    public static final ExecutorService databaseWriteExecutor =
-            Executors.newFixedThreadPool(NUMBER_OF_THREADS);
+
+    // The database runs in WAL mode, so readers do not wait for the writer and the executors are split:
+    // - databaseWriteExecutor: the only thread that writes. Writes never race, and a long job's
+    //   commits queue up with the app's own inserts instead of holding the lock for the whole job.
+    //   Scheduled so LogEntryWriteBuffer can delay a commit to gather more entries.
+    // - databaseReadExecutor: a small fixed pool for queries; also Room's query executor.
+    // - backgroundJobExecutor: long jobs (import, export, re-bucketing, archiving), one at a time. They read on
+    //   their own thread and hand their writes to the writer with runOnWriteExecutor().
+    private static final int NUMBER_OF_READ_THREADS = 3;
+    private static volatile Thread writerThread;
+    public static final ScheduledExecutorService databaseWriteExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        writerThread = new Thread(runnable, "db-writer");
+        return writerThread;
+    });
+    public static final ExecutorService databaseReadExecutor =
+            Executors.newFixedThreadPool(NUMBER_OF_READ_THREADS, namedThreads("db-reader"));
+    public static final ExecutorService backgroundJobExecutor =
+            Executors.newSingleThreadExecutor(namedThreads("db-job"));
 
     static final Migration MIGRATION_1_2 = new Migration(1, 2) {
         @Override
@@ -56,6 +102,398 @@ public abstract class AppDatabase extends RoomDatabase {
         }
     };
 
+    static final Migration MIGRATION_2_3 = new Migration(2, 3) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            // Replace the single-column index with a composite (event_type_id, timestamp) index.
+            // It still covers the foreign key and lets per-type pages seek straight to their position.
+            database.execSQL("DROP INDEX IF EXISTS `index_log_entries_event_type_id`");
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_log_entries_event_type_id_timestamp` ON `log_entries` (`event_type_id`, `timestamp`)");
+        }
+    };
+
+    static final Migration MIGRATION_3_4 = new Migration(3, 4) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            // Pre-aggregated hour/day/month counts per event type, kept current by triggers
+            database.execSQL("CREATE TABLE IF NOT EXISTS `event_rollups` (" +
+                    "`event_type_id` INTEGER NOT NULL, " +
+                    "`bucket_kind` INTEGER NOT NULL, " +
+                    "`bucket` INTEGER NOT NULL, " +
+                    "`count` INTEGER NOT NULL, " +
+                    "PRIMARY KEY(`event_type_id`, `bucket_kind`, `bucket`), " +
+                    "FOREIGN KEY(`event_type_id`) REFERENCES `event_types`(`event_type_id`) ON UPDATE NO ACTION ON DELETE CASCADE)");
+
+            // Seed the rollups from the existing history, one GROUP BY per bucket kind
+            String[] formats = {"%H", "%Y%m%d", "%Y%m"};
+            for (int kind = EventRollup.KIND_HOUR; kind <= EventRollup.KIND_MONTH; kind++) {
+                database.execSQL("INSERT INTO `event_rollups` (event_type_id, bucket_kind, bucket, count) " +
+                        "SELECT event_type_id, " + kind + ", " +
+                        "CAST(strftime('" + formats[kind] + "', timestamp / 1000, 'unixepoch', 'localtime') AS INTEGER) AS b, COUNT(*) " +
+                        "FROM `log_entries` WHERE event_type_id IS NOT NULL GROUP BY event_type_id, b");
+            }
+        }
+    };
+
+    static final Migration MIGRATION_4_5 = new Migration(4, 5) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            dropTriggers(database);
+
+            // Persisted local-time buckets so grouping and month filters can use indexes
+            database.execSQL("ALTER TABLE `log_entries` ADD COLUMN `local_hour` INTEGER");
+            database.execSQL("ALTER TABLE `log_entries` ADD COLUMN `local_day_key` INTEGER");
+            database.execSQL("ALTER TABLE `log_entries` ADD COLUMN `local_month_key` INTEGER");
+            database.execSQL("UPDATE `log_entries` SET " + LOCAL_BUCKETS_FROM_TIMESTAMP_SQL);
+
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_log_entries_event_type_id_local_hour` ON `log_entries` (`event_type_id`, `local_hour`)");
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_log_entries_event_type_id_local_month_key_local_day_key` ON `log_entries` (`event_type_id`, `local_month_key`, `local_day_key`)");
+        }
+    };
+
+    static final Migration MIGRATION_5_6 = new Migration(5, 6) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            dropTriggers(database);
+
+            database.execSQL("ALTER TABLE `log_entries` ADD COLUMN `notes_hash` INTEGER NOT NULL DEFAULT 0");
+
+            // The hash is computed in Java, so fill it in id order a chunk at a time
+            SupportSQLiteStatement setHash = database.compileStatement("UPDATE `log_entries` SET notes_hash = ? WHERE id = ?");
+            long afterId = 0;
+            while (true) {
+                int rows = 0;
+                try (Cursor cursor = database.query("SELECT id, notes FROM `log_entries` WHERE id > ? ORDER BY id LIMIT 5000", new Object[]{afterId})) {
+                    while (cursor.moveToNext()) {
+                        afterId = cursor.getLong(0);
+                        setHash.bindLong(1, LogEntry.hashNotes(cursor.isNull(1) ? null : cursor.getString(1)));
+                        setHash.bindLong(2, afterId);
+                        setHash.executeUpdateDelete();
+                        rows++;
+                    }
+                }
+                if (rows < 5000) break;
+            }
+
+            // The natural-key index has (event_type_id, timestamp) as its prefix, so it replaces the old index
+            database.execSQL("DROP INDEX IF EXISTS `index_log_entries_event_type_id_timestamp`");
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_log_entries_event_type_id_timestamp_notes_hash` ON `log_entries` (`event_type_id`, `timestamp`, `notes_hash`)");
+        }
+    };
+
+    static final Migration MIGRATION_6_7 = new Migration(6, 7) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            dropTriggers(database);
+
+            // Log-scale histogram of the gaps between entries, kept current by triggers
+            database.execSQL("CREATE TABLE IF NOT EXISTS `interval_buckets` (" +
+                    "`event_type_id` INTEGER NOT NULL, " +
+                    "`bucket` INTEGER NOT NULL, " +
+                    "`count` INTEGER NOT NULL, " +
+                    "PRIMARY KEY(`event_type_id`, `bucket`), " +
+                    "FOREIGN KEY(`event_type_id`) REFERENCES `event_types`(`event_type_id`) ON UPDATE NO ACTION ON DELETE CASCADE)");
+            // Seed it from the existing history: each distinct timestamp's gap to the next one is a
+            // MIN() seek on the (type, timestamp) index
+            database.execSQL("INSERT INTO `interval_buckets` (event_type_id, bucket, count) " +
+                    "SELECT event_type_id, " + intervalBucketSql("gap") + " AS b, COUNT(*) FROM (" +
+                    "SELECT event_type_id, (SELECT MIN(n.timestamp) FROM `log_entries` n " +
+                    "WHERE n.event_type_id = e.event_type_id AND n.timestamp > e.timestamp) - e.timestamp AS gap " +
+                    "FROM (SELECT DISTINCT event_type_id, timestamp FROM `log_entries` WHERE event_type_id IS NOT NULL) e) " +
+                    "WHERE gap IS NOT NULL GROUP BY event_type_id, b");
+        }
+    };
+
+    static final Migration MIGRATION_7_8 = new Migration(7, 8) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            // Version 8 added the full-text index. Its current form is created and filled by
+            // MIGRATION_10_11, the last step of every upgrade from here, so nothing is indexed twice.
+        }
+    };
+
+    static final Migration MIGRATION_8_9 = new Migration(8, 9) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            dropTriggers(database);
+
+            // The event name is no longer copied into every entry; it is read from event_types by id
+            // (EventTypeNames). SQLite before 3.35 (API 34) cannot drop a column, so the table is rebuilt.
+            // The full-text index of version 8 goes first; MIGRATION_10_11 creates its successor.
+            database.execSQL("DROP TABLE IF EXISTS `log_entries_fts`");
+            database.execSQL("CREATE TABLE `log_entries_new` (" +
+                    "`id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, " +
+                    "`timestamp` INTEGER NOT NULL, " +
+                    "`notes` TEXT, " +
+                    "`notes_hash` INTEGER NOT NULL DEFAULT 0, " +
+                    "`event_type_id` INTEGER, " +
+                    "`local_hour` INTEGER, " +
+                    "`local_day_key` INTEGER, " +
+                    "`local_month_key` INTEGER, " +
+                    "FOREIGN KEY(`event_type_id`) REFERENCES `event_types`(`event_type_id`) ON UPDATE CASCADE ON DELETE SET NULL)");
+
+            // One pass in rowid order, appending to the new table; the indexes are built once at the
+            // end instead of being updated row by row. The migration is a single transaction either way.
+            database.execSQL("INSERT INTO `log_entries_new` " +
+                    "(id, timestamp, notes, notes_hash, event_type_id, local_hour, local_day_key, local_month_key) " +
+                    "SELECT id, timestamp, notes, notes_hash, event_type_id, local_hour, local_day_key, local_month_key " +
+                    "FROM `log_entries` ORDER BY id");
+            database.execSQL("DROP TABLE `log_entries`");
+            database.execSQL("ALTER TABLE `log_entries_new` RENAME TO `log_entries`");
+
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_log_entries_event_type_id_timestamp_notes_hash` ON `log_entries` (`event_type_id`, `timestamp`, `notes_hash`)");
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_log_entries_event_type_id_local_hour` ON `log_entries` (`event_type_id`, `local_hour`)");
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_log_entries_event_type_id_local_month_key_local_day_key` ON `log_entries` (`event_type_id`, `local_month_key`, `local_day_key`)");
+        }
+    };
+
+    static final Migration MIGRATION_9_10 = new Migration(9, 10) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            // Cold storage for old entries (LogArchive); empty until the first archiving run
+            database.execSQL("CREATE TABLE IF NOT EXISTS `archive_blocks` (" +
+                    "`event_type_id` INTEGER NOT NULL, " +
+                    "`month_key` INTEGER NOT NULL, " +
+                    "`count` INTEGER NOT NULL, " +
+                    "`first_timestamp` INTEGER NOT NULL, " +
+                    "`last_timestamp` INTEGER NOT NULL, " +
+                    "`time_zone` TEXT NOT NULL, " +
+                    "`keys` BLOB NOT NULL, " +
+                    "`notes` BLOB NOT NULL, " +
+                    "PRIMARY KEY(`event_type_id`, `month_key`))");
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_archive_blocks_event_type_id_last_timestamp` " +
+                    "ON `archive_blocks` (`event_type_id`, `last_timestamp`)");
+        }
+    };
+
+    static final Migration MIGRATION_10_11 = new Migration(10, 11) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            // The full-text index leaves Room's schema so it can index event names again, read from
+            // event_types through log_entries_search (see installTriggers). Databases upgraded from
+            // version 7 or 8 have none yet; this is the only migration that fills it.
+            for (String event : new String[]{"BEFORE_UPDATE", "BEFORE_DELETE", "AFTER_UPDATE", "AFTER_INSERT"}) {
+                database.execSQL("DROP TRIGGER IF EXISTS `room_fts_content_sync_log_entries_fts_" + event + "`");
+            }
+            database.execSQL("DROP TABLE IF EXISTS `log_entries_fts`");
+            createSearchIndex(database);
+            database.execSQL("INSERT INTO `log_entries_fts`(`log_entries_fts`) VALUES('rebuild')");
+        }
+    };
+
+    // Assignments deriving the local_* bucket columns from timestamp in SQLite's notion of local time.
+    // Used to backfill and as a fallback for rows inserted without going through LocalTimeBuckets.
+    private static final String LOCAL_BUCKETS_FROM_TIMESTAMP_SQL =
+            "local_hour = CAST(strftime('%H', timestamp / 1000, 'unixepoch', 'localtime') AS INTEGER), " +
+            "local_day_key = CAST(strftime('%Y%m%d', timestamp / 1000, 'unixepoch', 'localtime') AS INTEGER), " +
+            "local_month_key = CAST(strftime('%Y%m', timestamp / 1000, 'unixepoch', 'localtime') AS INTEGER)";
+
+    // log_entries column holding the bucket of each rollup kind, indexed by EventRollup.KIND_*
+    private static final String[] ROLLUP_BUCKET_COLUMNS = {"local_hour", "local_day_key", "local_month_key"};
+
+    private static final String[] TRIGGER_NAMES = {
+            "log_entries_fill_local_buckets",
+            "log_entries_rollup_insert",
+            "log_entries_rollup_delete",
+            "log_entries_rollup_update",
+            "log_entries_intervals_insert",
+            "log_entries_intervals_delete",
+            "log_entries_intervals_update",
+            "log_entries_fts_insert",
+            "log_entries_fts_delete",
+            "log_entries_fts_before_update",
+            "log_entries_fts_after_update",
+            "event_types_fts_before_rename",
+            "event_types_fts_after_rename",
+            "event_types_fts_delete"
+    };
+
+    private static final String NOT_ARCHIVING = "NOT EXISTS (SELECT 1 FROM archive_pending WHERE id = OLD.id)";
+
+    private static String rollupIncrementSql(String row) {
+        StringBuilder sql = new StringBuilder();
+        for (int kind = EventRollup.KIND_HOUR; kind <= EventRollup.KIND_MONTH; kind++) {
+            String bucket = row + "." + ROLLUP_BUCKET_COLUMNS[kind];
+            // No UPSERT before SQLite 3.24 (API 30), so create the row at zero and then bump it
+            sql.append("INSERT OR IGNORE INTO event_rollups (event_type_id, bucket_kind, bucket, count) ")
+                    .append("SELECT ").append(row).append(".event_type_id, ").append(kind).append(", ").append(bucket).append(", 0 ")
+                    .append("WHERE ").append(row).append(".event_type_id IS NOT NULL AND ").append(bucket).append(" IS NOT NULL; ");
+            sql.append("UPDATE event_rollups SET count = count + 1 WHERE event_type_id = ").append(row).append(".event_type_id ")
+                    .append("AND bucket_kind = ").append(kind).append(" AND bucket = ").append(bucket).append("; ");
+        }
+        return sql.toString();
+    }
+
+    private static String rollupDecrementSql(String row) {
+        StringBuilder sql = new StringBuilder();
+        for (int kind = EventRollup.KIND_HOUR; kind <= EventRollup.KIND_MONTH; kind++) {
+            String where = "WHERE event_type_id = " + row + ".event_type_id AND bucket_kind = " + kind +
+                    " AND bucket = " + row + "." + ROLLUP_BUCKET_COLUMNS[kind];
+            sql.append("UPDATE event_rollups SET count = count - 1 ").append(where).append("; ");
+            sql.append("DELETE FROM event_rollups ").append(where).append(" AND count <= 0; ");
+        }
+        return sql.toString();
+    }
+
+    // IntervalBucket.bucketOf in SQL: digits * 100 + the leading two digits of a positive integer.
+    // NULL when the interval is NULL (no neighbour on that side).
+    static String intervalBucketSql(String interval) {
+        return "(length(" + interval + ") * 100 + CAST(substr(" + interval + ", 1, 2) AS INTEGER))";
+    }
+
+    // Adds (delta 1) or removes (delta -1) one gap of row's type in interval_buckets. Rows sharing
+    // their timestamp with another entry of the type make no gap and leave the histogram alone.
+    private static String intervalChangeSql(String row, String interval, int delta) {
+        String type = row + ".event_type_id";
+        String bucket = intervalBucketSql(interval);
+        String applies = type + " IS NOT NULL AND NOT EXISTS (SELECT 1 FROM log_entries WHERE event_type_id = " + type +
+                " AND timestamp = " + row + ".timestamp AND id <> " + row + ".id)";
+        StringBuilder sql = new StringBuilder();
+        if (delta > 0) {
+            sql.append("INSERT OR IGNORE INTO interval_buckets (event_type_id, bucket, count) ")
+                    .append("SELECT ").append(type).append(", ").append(bucket).append(", 0 ")
+                    .append("WHERE ").append(applies).append(" AND ").append(bucket).append(" IS NOT NULL; ");
+        }
+        sql.append("UPDATE interval_buckets SET count = count ").append(delta > 0 ? "+ 1" : "- 1")
+                .append(" WHERE event_type_id = ").append(type).append(" AND bucket = ").append(bucket)
+                .append(" AND ").append(applies).append("; ");
+        if (delta < 0) {
+            sql.append("DELETE FROM interval_buckets WHERE event_type_id = ").append(type).append(" AND count <= 0; ");
+        }
+        return sql.toString();
+    }
+
+    // A row arriving between prev and next replaces the gap next - prev with two; leaving reverses
+    // that. The neighbours are looked up ignoring the row itself, so on an update the OLD values are
+    // taken out before the NEW ones are put in. Archived entries are older than every live one of
+    // their type, so the oldest live row's prev is the type's newest archived timestamp.
+    private static String intervalsSql(String row, boolean arriving) {
+        String neighbours = "FROM log_entries WHERE event_type_id = " + row + ".event_type_id AND id <> " + row + ".id AND timestamp ";
+        String prev = "(SELECT MAX(t) FROM (SELECT MAX(timestamp) AS t " + neighbours + "< " + row + ".timestamp " +
+                "UNION ALL SELECT MAX(last_timestamp) FROM archive_blocks WHERE event_type_id = " + row + ".event_type_id " +
+                "AND last_timestamp < " + row + ".timestamp))";
+        String next = "(SELECT MIN(timestamp) " + neighbours + "> " + row + ".timestamp)";
+        int sign = arriving ? 1 : -1;
+        return intervalChangeSql(row, "(" + next + " - " + prev + ")", -sign)
+                + intervalChangeSql(row, "(" + row + ".timestamp - " + prev + ")", sign)
+                + intervalChangeSql(row, "(" + next + " - " + row + ".timestamp)", sign);
+    }
+
+    // Full-text index over the event name and notes of each entry (LogEntrySearch). External
+    // content: only the index is stored, and the text is read back from log_entries_search, which
+    // joins in the name from event_types. The docid is the entry id. unicode61 folds case and
+    // diacritics; the 2- and 3-character prefix indexes let short prefix queries ("cof*") read one
+    // index entry instead of merging every matching term. Not part of Room's schema: Room only
+    // supports an entity as the content table.
+    static void createSearchIndex(SupportSQLiteDatabase db) {
+        db.execSQL("CREATE VIEW IF NOT EXISTS `log_entries_search` AS " +
+                "SELECT log_entries.id AS rowid, event_types.event_name AS event, log_entries.notes AS notes " +
+                "FROM log_entries LEFT JOIN event_types ON event_types.event_type_id = log_entries.event_type_id");
+        db.execSQL("CREATE VIRTUAL TABLE IF NOT EXISTS `log_entries_fts` USING FTS4(" +
+                "`event`, `notes`, tokenize=unicode61, content=`log_entries_search`, prefix=`2,3`)");
+    }
+
+    private static final String FTS_INSERT_NEW_SQL = "INSERT INTO log_entries_fts (docid, event, notes) VALUES (NEW.id, " +
+            "(SELECT event_name FROM event_types WHERE event_type_id = NEW.event_type_id), NEW.notes); ";
+    private static final String TYPE_ENTRIES = "(SELECT id FROM log_entries WHERE event_type_id = OLD.event_type_id)";
+
+    // Triggers are not part of Room's schema model, so they are dropped by migrations that reshape
+    // log_entries and (re)installed with their current definition every time the database opens.
+    static void dropTriggers(SupportSQLiteDatabase db) {
+        for (String name : TRIGGER_NAMES) {
+            db.execSQL("DROP TRIGGER IF EXISTS `" + name + "`");
+        }
+    }
+
+    static void installTriggers(SupportSQLiteDatabase db) {
+        dropTriggers(db);
+        // Ids LogArchive is moving to archive_blocks; their deletes leave the rollups and intervals
+        // as they are. Always empty outside an archiving transaction, and not part of Room's schema.
+        db.execSQL("CREATE TABLE IF NOT EXISTS `archive_pending` (`id` INTEGER PRIMARY KEY NOT NULL)");
+        // Rows inserted without precomputed buckets get them from SQLite; the resulting UPDATE feeds the rollups
+        db.execSQL("CREATE TRIGGER `log_entries_fill_local_buckets` AFTER INSERT ON `log_entries` " +
+                "WHEN NEW.local_hour IS NULL BEGIN " +
+                "UPDATE log_entries SET " + LOCAL_BUCKETS_FROM_TIMESTAMP_SQL + " WHERE id = NEW.id; END");
+        // Keep event_rollups in step with every insert, delete, type change and re-bucketing update
+        db.execSQL("CREATE TRIGGER `log_entries_rollup_insert` AFTER INSERT ON `log_entries` " +
+                "WHEN NEW.event_type_id IS NOT NULL AND NEW.local_hour IS NOT NULL BEGIN " + rollupIncrementSql("NEW") + "END");
+        db.execSQL("CREATE TRIGGER `log_entries_rollup_delete` AFTER DELETE ON `log_entries` " +
+                "WHEN OLD.event_type_id IS NOT NULL AND " + NOT_ARCHIVING + " BEGIN " + rollupDecrementSql("OLD") + "END");
+        db.execSQL("CREATE TRIGGER `log_entries_rollup_update` " +
+                "AFTER UPDATE OF event_type_id, local_hour, local_day_key, local_month_key ON `log_entries` " +
+                "BEGIN " + rollupDecrementSql("OLD") + rollupIncrementSql("NEW") + "END");
+        // Keep interval_buckets in step with every insert, delete, type change and timestamp change
+        db.execSQL("CREATE TRIGGER `log_entries_intervals_insert` AFTER INSERT ON `log_entries` " +
+                "WHEN NEW.event_type_id IS NOT NULL BEGIN " + intervalsSql("NEW", true) + "END");
+        db.execSQL("CREATE TRIGGER `log_entries_intervals_delete` AFTER DELETE ON `log_entries` " +
+                "WHEN OLD.event_type_id IS NOT NULL AND " + NOT_ARCHIVING + " BEGIN " + intervalsSql("OLD", false) + "END");
+        db.execSQL("CREATE TRIGGER `log_entries_intervals_update` AFTER UPDATE OF event_type_id, timestamp ON `log_entries` " +
+                "WHEN OLD.event_type_id IS NOT NEW.event_type_id OR OLD.timestamp <> NEW.timestamp " +
+                "BEGIN " + intervalsSql("OLD", false) + intervalsSql("NEW", true) + "END");
+        // Keep log_entries_fts in step. An external-content index removes a row by reading it back
+        // from log_entries_search, so every removal runs before the row or its type name changes.
+        createSearchIndex(db);
+        db.execSQL("CREATE TRIGGER `log_entries_fts_insert` AFTER INSERT ON `log_entries` BEGIN " + FTS_INSERT_NEW_SQL + "END");
+        db.execSQL("CREATE TRIGGER `log_entries_fts_delete` BEFORE DELETE ON `log_entries` " +
+                "BEGIN DELETE FROM log_entries_fts WHERE docid = OLD.id; END");
+        // A deleted type's entries were already removed by event_types_fts_delete, before its
+        // ON DELETE SET NULL reaches them
+        db.execSQL("CREATE TRIGGER `log_entries_fts_before_update` BEFORE UPDATE OF notes, event_type_id ON `log_entries` " +
+                "WHEN OLD.event_type_id IS NULL OR EXISTS (SELECT 1 FROM event_types WHERE event_type_id = OLD.event_type_id) " +
+                "BEGIN DELETE FROM log_entries_fts WHERE docid = OLD.id; END");
+        db.execSQL("CREATE TRIGGER `log_entries_fts_after_update` AFTER UPDATE OF notes, event_type_id ON `log_entries` " +
+                "BEGIN " + FTS_INSERT_NEW_SQL + "END");
+        // A renamed type's entries are indexed again under the new name
+        db.execSQL("CREATE TRIGGER `event_types_fts_before_rename` BEFORE UPDATE OF event_name ON `event_types` " +
+                "WHEN OLD.event_name IS NOT NEW.event_name " +
+                "BEGIN DELETE FROM log_entries_fts WHERE docid IN " + TYPE_ENTRIES + "; END");
+        db.execSQL("CREATE TRIGGER `event_types_fts_after_rename` AFTER UPDATE OF event_name ON `event_types` " +
+                "WHEN OLD.event_name IS NOT NEW.event_name " +
+                "BEGIN INSERT INTO log_entries_fts (docid, event, notes) " +
+                "SELECT id, NEW.event_name, notes FROM log_entries WHERE event_type_id = NEW.event_type_id; END");
+        db.execSQL("CREATE TRIGGER `event_types_fts_delete` BEFORE DELETE ON `event_types` " +
+                "BEGIN DELETE FROM log_entries_fts WHERE docid IN " + TYPE_ENTRIES + "; END");
+    }
+
+    // Package-private so tests building their own (in-memory) database get the same triggers.
+    static final RoomDatabase.Callback schemaCallback = new RoomDatabase.Callback() {
+        @Override
+        public void onOpen(@NonNull SupportSQLiteDatabase db) {
+            super.onOpen(db);
+            // In WAL mode NORMAL only syncs at checkpoints: a power loss can drop the last commits but
+            // cannot corrupt the database, and each commit no longer waits for an fsync
+            try (Cursor cursor = db.query("PRAGMA synchronous = NORMAL")) {
+                cursor.moveToFirst();
+            }
+            installTriggers(db);
+        }
+    };
+
+    // Runs write on databaseWriteExecutor and waits for it. Used by long jobs so their commits
+    // interleave with the app's other writes. Runs write directly when already on the writer.
+    public static void runOnWriteExecutor(Runnable write) {
+        if (Thread.currentThread() == writerThread) {
+            write.run();
+            return;
+        }
+        try {
+            databaseWriteExecutor.submit(write).get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw new RuntimeException(cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for a database write", e);
+        }
+    }
+
+    private static ThreadFactory namedThreads(String prefix) {
+        AtomicInteger count = new AtomicInteger();
+        return runnable -> new Thread(runnable, prefix + "-" + count.incrementAndGet());
+    }
+
     private static RoomDatabase.Callback roomDatabaseCallback = new RoomDatabase.Callback() {
         @Override
         public void onOpen(@NonNull SupportSQLiteDatabase db) {
@@ -88,7 +526,10 @@ public abstract class AppDatabase extends RoomDatabase {
                 if (INSTANCE == null) {
                     INSTANCE = Room.databaseBuilder(context.getApplicationContext(),
                                     AppDatabase.class, "log_database")
-                            .addMigrations(MIGRATION_1_2)
+                            .addMigrations(MIGRATION_1_2, MIGRATION_2_3, MIGRATION_3_4, MIGRATION_4_5, MIGRATION_5_6, MIGRATION_6_7, MIGRATION_7_8, MIGRATION_8_9, MIGRATION_9_10, MIGRATION_10_11)
+                            .setJournalMode(JournalMode.WRITE_AHEAD_LOGGING)
+                            .setQueryExecutor(databaseReadExecutor)
+                            .addCallback(schemaCallback)
                             .addCallback(roomDatabaseCallback) // Add the callback
                             // For development, if migration issues persist and you're OK with data loss:
                             // .fallbackToDestructiveMigration()
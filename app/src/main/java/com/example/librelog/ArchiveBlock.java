@@ -0,0 +1,241 @@
+package com.example.librelog;
+
+import androidx.annotation.NonNull;
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.Index;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+// The archived entries of one event type in one UTC month (see LogArchive), packed into two BLOBs:
+//  - keys: the timestamps, oldest first, as varint deltas in whole seconds (milliseconds if any
+//    timestamp has a sub-second part), then the ids in the same order as zigzag varint deltas;
+//  - notes: per entry a varint of the UTF-8 length + 1 (0 for null notes) and the bytes, deflated.
+// Entries are ordered by (timestamp, id), like the list. A few bytes per entry instead of a row in
+// log_entries and its three indexes.
+// No foreign key: like entries whose type was deleted, a deleted type's blocks are kept for export.
+@Entity(tableName = "archive_blocks",
+        primaryKeys = {"event_type_id", "month_key"},
+        // The interval triggers look up the newest archived timestamp of a type (see AppDatabase)
+        indices = {@Index(value = {"event_type_id", "last_timestamp"})})
+public class ArchiveBlock {
+
+    @ColumnInfo(name = "event_type_id")
+    private int eventTypeId;
+
+    @ColumnInfo(name = "month_key")
+    private int monthKey; // yyyyMM, UTC
+
+    private int count;
+
+    @ColumnInfo(name = "first_timestamp")
+    private long firstTimestamp;
+
+    @ColumnInfo(name = "last_timestamp")
+    private long lastTimestamp;
+
+    // Time zone the entries are counted in by event_rollups; LogArchive.rebucket moves them
+    @NonNull
+    @ColumnInfo(name = "time_zone")
+    private String timeZone = "";
+
+    @NonNull
+    private byte[] keys = new byte[0];
+
+    @NonNull
+    private byte[] notes = new byte[0];
+
+    // entries must all be of eventTypeId; they are sorted here
+    public static ArchiveBlock encode(int eventTypeId, int monthKey, String timeZone, List<LogEntry> entries) {
+        List<LogEntry> sorted = new ArrayList<>(entries);
+        Collections.sort(sorted, (a, b) -> a.getTimestamp() != b.getTimestamp()
+                ? Long.compare(a.getTimestamp(), b.getTimestamp()) : Integer.compare(a.getId(), b.getId()));
+
+        long unit = 1000;
+        for (LogEntry entry : sorted) {
+            if (entry.getTimestamp() % 1000 != 0) unit = 1;
+        }
+        ByteArrayOutputStream keyBytes = new ByteArrayOutputStream(sorted.size() * 4 + 16);
+        writeVarint(keyBytes, unit);
+        long previousTimestamp = 0;
+        for (LogEntry entry : sorted) {
+            writeVarint(keyBytes, (entry.getTimestamp() - previousTimestamp) / unit);
+            previousTimestamp = entry.getTimestamp();
+        }
+        long previousId = 0;
+        for (LogEntry entry : sorted) {
+            long delta = entry.getId() - previousId;
+            writeVarint(keyBytes, (delta << 1) ^ (delta >> 63)); // Zigzag: ids are not in timestamp order
+            previousId = entry.getId();
+        }
+
+        ByteArrayOutputStream noteBytes = new ByteArrayOutputStream();
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION); // Written once, read rarely
+        try (DeflaterOutputStream out = new DeflaterOutputStream(noteBytes, deflater)) {
+            for (LogEntry entry : sorted) {
+                if (entry.getNotes() == null) {
+                    writeVarint(out, 0);
+                } else {
+                    byte[] utf8 = entry.getNotes().getBytes(StandardCharsets.UTF_8);
+                    writeVarint(out, utf8.length + 1);
+                    out.write(utf8);
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException(e); // In-memory streams do not fail
+        } finally {
+            deflater.end();
+        }
+
+        ArchiveBlock block = new ArchiveBlock();
+        block.eventTypeId = eventTypeId;
+        block.monthKey = monthKey;
+        block.count = sorted.size();
+        block.firstTimestamp = sorted.isEmpty() ? 0 : sorted.get(0).getTimestamp();
+        block.lastTimestamp = sorted.isEmpty() ? 0 : sorted.get(sorted.size() - 1).getTimestamp();
+        block.timeZone = timeZone;
+        block.keys = keyBytes.toByteArray();
+        block.notes = noteBytes.toByteArray();
+        return block;
+    }
+
+    // Timestamps only, oldest first; does not inflate the notes
+    public long[] decodeTimestamps() {
+        return readTimestamps(new int[]{0});
+    }
+
+    // Reads the timestamps from the start of keys; position is left at the first id
+    private long[] readTimestamps(int[] position) {
+        long[] timestamps = new long[count];
+        long unit = readVarint(keys, position);
+        long timestamp = 0;
+        for (int i = 0; i < count; i++) {
+            timestamp += readVarint(keys, position) * unit;
+            timestamps[i] = timestamp;
+        }
+        return timestamps;
+    }
+
+    // The entries, oldest first, with id, timestamp, notes and event type set
+    public List<LogEntry> decode() {
+        int[] position = {0};
+        long[] timestamps = readTimestamps(position);
+        List<LogEntry> entries = new ArrayList<>(count);
+        long id = 0;
+        try (DataInputStream in = new DataInputStream(new InflaterInputStream(new ByteArrayInputStream(notes)))) {
+            for (int i = 0; i < count; i++) {
+                long zigzag = readVarint(keys, position);
+                id += (zigzag >>> 1) ^ -(zigzag & 1);
+                LogEntry entry = new LogEntry();
+                entry.setId((int) id);
+                entry.setTimestamp(timestamps[i]);
+                entry.setEventTypeId(eventTypeId);
+                int length = (int) readVarint(in);
+                if (length > 0) {
+                    byte[] utf8 = new byte[length - 1];
+                    in.readFully(utf8);
+                    entry.setNotes(new String(utf8, StandardCharsets.UTF_8));
+                }
+                entries.add(entry);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Corrupt archive block " + eventTypeId + "/" + monthKey, e);
+        }
+        return entries;
+    }
+
+    private static void writeVarint(OutputStream out, long value) {
+        try {
+            while ((value & ~0x7FL) != 0) {
+                out.write((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            out.write((int) value);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static long readVarint(byte[] bytes, int[] position) {
+        long value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = bytes[position[0]++];
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) return value;
+        }
+    }
+
+    private static long readVarint(InputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; ; shift += 7) {
+            int b = in.read();
+            if (b < 0) throw new IOException("Truncated notes");
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return value;
+        }
+    }
+
+    public int getEventTypeId() {
+        return eventTypeId;
+    }
+    public void setEventTypeId(int eventTypeId) {
+        this.eventTypeId = eventTypeId;
+    }
+    public int getMonthKey() {
+        return monthKey;
+    }
+    public void setMonthKey(int monthKey) {
+        this.monthKey = monthKey;
+    }
+    public int getCount() {
+        return count;
+    }
+    public void setCount(int count) {
+        this.count = count;
+    }
+    public long getFirstTimestamp() {
+        return firstTimestamp;
+    }
+    public void setFirstTimestamp(long firstTimestamp) {
+        this.firstTimestamp = firstTimestamp;
+    }
+    public long getLastTimestamp() {
+        return lastTimestamp;
+    }
+    public void setLastTimestamp(long lastTimestamp) {
+        this.lastTimestamp = lastTimestamp;
+    }
+    @NonNull
+    public String getTimeZone() {
+        return timeZone;
+    }
+    public void setTimeZone(@NonNull String timeZone) {
+        this.timeZone = timeZone;
+    }
+    @NonNull
+    public byte[] getKeys() {
+        return keys;
+    }
+    public void setKeys(@NonNull byte[] keys) {
+        this.keys = keys;
+    }
+    @NonNull
+    public byte[] getNotes() {
+        return notes;
+    }
+    public void setNotes(@NonNull byte[] notes) {
+        this.notes = notes;
+    }
+}
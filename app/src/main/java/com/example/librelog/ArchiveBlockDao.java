@@ -0,0 +1,68 @@
+package com.example.librelog;
+
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
+import androidx.room.Query;
+
+import java.util.List;
+
+// Reads and writes of archive_blocks for LogArchive. Blocks are addressed by (type, UTC month), so
+// walking a type's archive in time order is a walk of its primary key.
+@Dao
+public interface ArchiveBlockDao {
+    // Replaces the block when a month gets more entries
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    void insert(ArchiveBlock block);
+
+    @Query("SELECT * FROM archive_blocks WHERE event_type_id = :eventTypeId AND month_key = :monthKey")
+    ArchiveBlock getBlock(long eventTypeId, int monthKey);
+
+    @Query("SELECT * FROM archive_blocks WHERE event_type_id = :eventTypeId AND month_key <= :monthKey " +
+            "ORDER BY month_key DESC LIMIT 1")
+    ArchiveBlock getBlockAtOrBefore(long eventTypeId, int monthKey);
+
+    @Query("SELECT * FROM archive_blocks WHERE event_type_id = :eventTypeId AND month_key >= :monthKey " +
+            "ORDER BY month_key ASC LIMIT 1")
+    ArchiveBlock getBlockAtOrAfter(long eventTypeId, int monthKey);
+
+    @Query("SELECT * FROM archive_blocks WHERE event_type_id = :eventTypeId " +
+            "AND month_key BETWEEN :fromMonthKey AND :toMonthKey ORDER BY month_key ASC")
+    List<ArchiveBlock> getBlocksInRange(long eventTypeId, int fromMonthKey, int toMonthKey);
+
+    // Search: the blocks of the type (any type when eventTypeId is negative) in the month range,
+    // newest month first
+    @Query("SELECT event_type_id AS eventTypeId, month_key AS monthKey FROM archive_blocks " +
+            "WHERE (:eventTypeId < 0 OR event_type_id = :eventTypeId) " +
+            "AND month_key BETWEEN :fromMonthKey AND :toMonthKey ORDER BY month_key DESC")
+    List<BlockKey> getBlockKeysInRange(long eventTypeId, int fromMonthKey, int toMonthKey);
+
+    // Newest archived timestamp of the type; every entry still in log_entries is newer
+    @Query("SELECT MAX(last_timestamp) FROM archive_blocks WHERE event_type_id = :eventTypeId")
+    Long getHorizon(long eventTypeId);
+
+    // Export: every block, one at a time, in (type, month) order
+    @Query("SELECT * FROM archive_blocks WHERE event_type_id > :afterEventTypeId " +
+            "OR (event_type_id = :afterEventTypeId AND month_key > :afterMonthKey) " +
+            "ORDER BY event_type_id ASC, month_key ASC LIMIT 1")
+    ArchiveBlock getNextBlock(long afterEventTypeId, int afterMonthKey);
+
+    // Blocks whose rollup counts are in another time zone
+    @Query("SELECT event_type_id AS eventTypeId, month_key AS monthKey FROM archive_blocks WHERE time_zone != :timeZone")
+    List<BlockKey> getBlocksNotInZone(String timeZone);
+
+    @Query("SELECT COUNT(*) AS blocks, COALESCE(SUM(count), 0) AS entries, " +
+            "COALESCE(SUM(length(keys) + length(notes)), 0) AS bytes FROM archive_blocks")
+    Stats getStats();
+
+    class BlockKey {
+        public int eventTypeId;
+        public int monthKey;
+    }
+
+    class Stats {
+        public int blocks;
+        public long entries;
+        public long bytes;
+    }
+}
@@ -0,0 +1,143 @@
+package com.example.librelog;
+
+import android.database.Cursor;
+import android.os.SystemClock;
+
+import androidx.annotation.Nullable;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.Map;
+
+// Streams every log entry to CSV in fixed-size chunks, so memory use does not depend on the
+// number of rows: live entries first, then the archived ones one block at a time (LogArchive).
+// Must run off the main thread.
+// CSV format: ID,Timestamp (yyyy-MM-dd HH:mm:ss),"Event","Notes"
+public class CsvExporter {
+
+    public interface ProgressListener {
+        // Called on the exporting thread every PROGRESS_INTERVAL_ROWS rows and once at the end
+        void onProgress(long rowsWritten, long totalRows, double rowsPerSecond);
+    }
+
+    public static final String HEADER = "ID,Timestamp,Event,Notes\n";
+
+    private static final int CHUNK_SIZE = 2000;
+    private static final int WRITER_BUFFER_SIZE = 256 * 1024;
+    private static final int PROGRESS_INTERVAL_ROWS = 10000;
+
+    private final AppDatabase db;
+
+    public CsvExporter(AppDatabase db) {
+        this.db = db;
+    }
+
+    // Writes the header and all rows, flushes (but does not close) the stream, and returns the row count.
+    public long export(OutputStream outputStream, @Nullable ProgressListener listener) throws IOException {
+        LogEntryDao logEntryDao = db.logEntryDao();
+        ArchiveBlockDao archiveBlockDao = db.archiveBlockDao();
+        long totalRows = logEntryDao.getCountAllLogEntries() + archiveBlockDao.getStats().entries;
+        long startTime = SystemClock.elapsedRealtime();
+        long rowsWritten = 0;
+
+        Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8), WRITER_BUFFER_SIZE);
+        SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.getDefault());
+        Date date = new Date(); // Reused for every row
+        Map<Integer, String> eventNames = db.eventTypeNames().get(); // Rows only carry the type id
+
+        writer.write(HEADER);
+
+        // Rows are walked in id order: each chunk seeks past the last id written, so a chunk costs
+        // the same at any depth and no query has to sort the whole table.
+        int afterId = 0;
+        while (true) {
+            int rowsInChunk = 0;
+            try (Cursor cursor = logEntryDao.getLogEntriesCursorAfterId(afterId, CHUNK_SIZE)) {
+                int idColumn = cursor.getColumnIndexOrThrow("id");
+                int timestampColumn = cursor.getColumnIndexOrThrow("timestamp");
+                int eventTypeColumn = cursor.getColumnIndexOrThrow("event_type_id");
+                int notesColumn = cursor.getColumnIndexOrThrow("notes");
+                while (cursor.moveToNext()) {
+                    afterId = cursor.getInt(idColumn);
+                    date.setTime(cursor.getLong(timestampColumn));
+                    // Entries whose type was deleted have no name and export as "", like null notes
+                    writeRow(writer, afterId, dateFormat.format(date),
+                            cursor.isNull(eventTypeColumn) ? null : eventNames.get(cursor.getInt(eventTypeColumn)),
+                            cursor.getString(notesColumn));
+
+                    rowsInChunk++;
+                    rowsWritten++;
+                    if (listener != null && rowsWritten % PROGRESS_INTERVAL_ROWS == 0) {
+                        listener.onProgress(rowsWritten, Math.max(totalRows, rowsWritten), rowsPerSecond(rowsWritten, startTime));
+                    }
+                }
+            }
+            if (rowsInChunk < CHUNK_SIZE) {
+                break;
+            }
+        }
+
+        // Archived entries, block by block in (type, month) order; a block is one month of one type
+        ArchiveBlock block = archiveBlockDao.getNextBlock(-1, 0);
+        while (block != null) {
+            String eventName = eventNames.get(block.getEventTypeId());
+            for (LogEntry entry : block.decode()) {
+                date.setTime(entry.getTimestamp());
+                writeRow(writer, entry.getId(), dateFormat.format(date), eventName, entry.getNotes());
+                rowsWritten++;
+                if (listener != null && rowsWritten % PROGRESS_INTERVAL_ROWS == 0) {
+                    listener.onProgress(rowsWritten, Math.max(totalRows, rowsWritten), rowsPerSecond(rowsWritten, startTime));
+                }
+            }
+            block = archiveBlockDao.getNextBlock(block.getEventTypeId(), block.getMonthKey());
+        }
+        writer.flush();
+
+        if (listener != null) {
+            listener.onProgress(rowsWritten, rowsWritten, rowsPerSecond(rowsWritten, startTime));
+        }
+        return rowsWritten;
+    }
+
+    private static void writeRow(Writer writer, int id, String timestamp, @Nullable String eventName,
+                                 @Nullable String notes) throws IOException {
+        writer.write(Integer.toString(id));
+        writer.write(',');
+        writer.write(timestamp);
+        writer.write(',');
+        appendQuoted(writer, eventName);
+        writer.write(',');
+        appendQuoted(writer, notes);
+        writer.write('\n');
+    }
+
+    // Writes the value as a quoted CSV field, doubling embedded quotes. Null is written as "".
+    static void appendQuoted(Writer writer, @Nullable String value) throws IOException {
+        writer.write('"');
+        if (value != null) {
+            int runStart = 0;
+            int length = value.length();
+            for (int i = 0; i < length; i++) {
+                if (value.charAt(i) == '"') {
+                    writer.write(value, runStart, i + 1 - runStart); // Up to and including the quote
+                    writer.write('"');
+                    runStart = i + 1;
+                }
+            }
+            writer.write(value, runStart, length - runStart);
+        }
+        writer.write('"');
+    }
+
+    private static double rowsPerSecond(long rows, long startTime) {
+        long elapsed = SystemClock.elapsedRealtime() - startTime;
+        return elapsed > 0 ? rows * 1000.0 / elapsed : 0;
+    }
+}
@@ -0,0 +1,480 @@
+package com.example.librelog;
+
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+// Streams a CSV file into log_entries through a three-stage pipeline:
+//  - a reader thread decodes the file and cuts it into blocks of whole records (it tracks quotes,
+//    so a quoted line break never splits a record) and notes the line number each block starts on;
+//  - workerCount parser threads turn blocks into LogEntry lists in parallel (CsvReader, timestamp
+//    parsing and bucket computation are the expensive part of an import);
+//  - the calling thread puts the parsed blocks back in file order and commits every chunkSize rows
+//    in its own transaction on AppDatabase.databaseWriteExecutor, so other writes get in between chunks. Event names are
+//    mapped to event types there (EventTypeResolver), creating the types that do not exist yet.
+// At most a fixed number of blocks is in flight at once, which bounds memory whatever the file size.
+// Entries already in the archive count as duplicates; new ones among archived entries are folded into
+// the archive at the end (LogArchive.ImportFilter).
+// Must run off the main thread.
+// CSV format: ID,Timestamp (yyyy-MM-dd HH:mm:ss),Event,Notes (the format CsvExporter writes)
+public class CsvImporter {
+
+    private static final String TAG = "CsvImporter";
+
+    public static final int DEFAULT_CHUNK_SIZE = 5000;
+    // Error details beyond this are only counted, so a badly broken file cannot exhaust memory
+    private static final int MAX_REPORTED_ERRORS = 50;
+
+    private static final int BLOCK_CHARS = 128 * 1024; // Blocks end at the first record boundary past this
+    private static final int READ_BUFFER_CHARS = 64 * 1024;
+    private static final int IN_FLIGHT_BLOCKS_PER_WORKER = 3;
+    private static final int MAX_WORKERS = 8;
+
+    public interface ProgressListener {
+        // Called on the importing thread after every committed chunk. totalBytes is -1 if unknown.
+        void onProgress(long rowsImported, long bytesRead, long totalBytes);
+    }
+
+    public static class Result {
+        public long importedCount; // New rows
+        public long duplicateCount; // Rows skipped because an identical entry already exists
+        public long failedLinesCount;
+        public final StringBuilder errors = new StringBuilder();
+    }
+
+    private final AppDatabase db;
+    private final int chunkSize;
+    private final int workerCount;
+
+    public CsvImporter(AppDatabase db, int chunkSize) {
+        // Leave one core for the reader and writer stages
+        this(db, chunkSize, Math.max(1, Math.min(MAX_WORKERS, Runtime.getRuntime().availableProcessors() - 1)));
+    }
+
+    public CsvImporter(AppDatabase db, int chunkSize, int workerCount) {
+        if (chunkSize <= 0) throw new IllegalArgumentException("chunkSize must be positive");
+        if (workerCount <= 0) throw new IllegalArgumentException("workerCount must be positive");
+        this.db = db;
+        this.chunkSize = chunkSize;
+        this.workerCount = workerCount;
+    }
+
+    public Result importFrom(InputStream inputStream, long totalBytes, @Nullable ProgressListener listener) throws IOException {
+        CountingInputStream countingStream = new CountingInputStream(inputStream);
+        Reader reader = new InputStreamReader(countingStream, StandardCharsets.UTF_8);
+
+        // Permits are taken by the reader per block and given back once the writer has consumed it
+        Semaphore inFlight = new Semaphore(workerCount * IN_FLIGHT_BLOCKS_PER_WORKER);
+        BlockingQueue<Block> blocks = new ArrayBlockingQueue<>(workerCount * 2);
+        BlockingQueue<ParsedBlock> parsedBlocks = new ArrayBlockingQueue<>(workerCount * 2);
+        AtomicLong blockCount = new AtomicLong(-1); // Set by the reader once the input is exhausted
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        ExecutorService stages = Executors.newFixedThreadPool(workerCount + 1);
+        try {
+            stages.execute(() -> readBlocks(reader, countingStream, blocks, inFlight, blockCount, failure));
+            for (int i = 0; i < workerCount; i++) {
+                stages.execute(() -> parseBlocks(blocks, parsedBlocks, failure));
+            }
+            return writeInOrder(parsedBlocks, inFlight, blockCount, failure, totalBytes, listener);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Import interrupted");
+        } finally {
+            stages.shutdownNow();
+            reader.close();
+        }
+    }
+
+    // Writer stage, on the calling thread
+    private Result writeInOrder(BlockingQueue<ParsedBlock> parsedBlocks, Semaphore inFlight, AtomicLong blockCount,
+                                AtomicReference<Throwable> failure, long totalBytes,
+                                @Nullable ProgressListener listener) throws IOException, InterruptedException {
+        Result result = new Result();
+        List<LogEntry> chunk = new ArrayList<>(chunkSize);
+        EventTypeResolver eventTypes = new EventTypeResolver(db.eventTypeDao());
+        LogArchive.ImportFilter archived = new LogArchive(db).newImportFilter();
+        Map<Long, ParsedBlock> outOfOrder = new HashMap<>();
+        long nextSequence = 0;
+        long bytesRead = 0;
+        int reportedErrors = 0;
+
+        while (blockCount.get() < 0 || nextSequence < blockCount.get()) {
+            ParsedBlock parsed = parsedBlocks.poll(100, TimeUnit.MILLISECONDS);
+            rethrow(failure.get());
+            if (parsed == null) {
+                continue;
+            }
+            outOfOrder.put(parsed.sequence, parsed);
+
+            while ((parsed = outOfOrder.remove(nextSequence)) != null) {
+                nextSequence++;
+                bytesRead = parsed.bytesRead;
+                result.failedLinesCount += parsed.failedLinesCount;
+                for (String error : parsed.errors) {
+                    if (reportedErrors++ < MAX_REPORTED_ERRORS) result.errors.append(error);
+                }
+                for (LogEntry entry : parsed.entries) {
+                    chunk.add(entry);
+                    if (chunk.size() >= chunkSize) {
+                        commitChunk(chunk, eventTypes, archived, result);
+                        if (listener != null) listener.onProgress(result.importedCount, bytesRead, totalBytes);
+                    }
+                }
+                inFlight.release();
+            }
+        }
+
+        if (!chunk.isEmpty()) {
+            commitChunk(chunk, eventTypes, archived, result);
+        }
+        archived.finish(TimeZone.getDefault().getID()); // The zone RecordParser bucketed the entries in
+        if (result.failedLinesCount > MAX_REPORTED_ERRORS) {
+            result.errors.append("(further errors omitted)\n");
+        }
+        if (listener != null) listener.onProgress(result.importedCount, bytesRead, totalBytes);
+        return result;
+    }
+
+    private void commitChunk(List<LogEntry> chunk, EventTypeResolver eventTypes, LogArchive.ImportFilter archived,
+                             Result result) {
+        AppDatabase.runOnWriteExecutor(() -> db.runInTransaction(() -> {
+            eventTypes.resolve(chunk); // Creates the chunk's new types in the same transaction
+            result.duplicateCount += archived.removeArchived(chunk);
+            // Natural-key duplicates (same type, second and notes) are skipped, so a re-import writes nothing
+            for (long rowId : db.logEntryDao().insertAllIfNew(chunk)) {
+                if (rowId == -1) {
+                    result.duplicateCount++;
+                } else {
+                    result.importedCount++;
+                }
+            }
+        }));
+        chunk.clear();
+    }
+
+    private static void rethrow(@Nullable Throwable failure) throws IOException {
+        if (failure instanceof IOException) throw (IOException) failure;
+        if (failure instanceof RuntimeException) throw (RuntimeException) failure;
+        if (failure instanceof Error) throw (Error) failure;
+        if (failure != null) throw new RuntimeException(failure);
+    }
+
+    // Reader stage. Line numbers are counted as '\n' characters, the same way CsvReader counts them
+    // (a "\r\n" ending counts once; files using bare '\r' endings are read as one long line).
+    private void readBlocks(Reader reader, CountingInputStream countingStream, BlockingQueue<Block> blocks,
+                            Semaphore inFlight, AtomicLong blockCount, AtomicReference<Throwable> failure) {
+        long sequence = 0;
+        try {
+            RecordBoundaryScanner scanner = new RecordBoundaryScanner();
+            char[] buffer = new char[READ_BUFFER_CHARS];
+            char[] block = new char[BLOCK_CHARS + READ_BUFFER_CHARS];
+            int blockLength = 0;
+            int firstLineNumber = 1;
+            int lineBreaks = 0;
+
+            int n;
+            while ((n = reader.read(buffer, 0, buffer.length)) > 0) {
+                int segmentStart = 0;
+                for (int i = 0; i < n; i++) {
+                    char c = buffer[i];
+                    boolean recordEnd = scanner.accept(c);
+                    if (c == '\n') lineBreaks++;
+                    if (recordEnd && blockLength + i + 1 - segmentStart >= BLOCK_CHARS) {
+                        block = append(block, blockLength, buffer, segmentStart, i + 1 - segmentStart);
+                        blockLength += i + 1 - segmentStart;
+                        segmentStart = i + 1;
+
+                        inFlight.acquire();
+                        blocks.put(new Block(sequence++, block, blockLength, firstLineNumber, countingStream.count));
+                        block = new char[BLOCK_CHARS + READ_BUFFER_CHARS];
+                        blockLength = 0;
+                        firstLineNumber += lineBreaks;
+                        lineBreaks = 0;
+                    }
+                }
+                block = append(block, blockLength, buffer, segmentStart, n - segmentStart);
+                blockLength += n - segmentStart;
+            }
+            if (blockLength > 0) {
+                inFlight.acquire();
+                blocks.put(new Block(sequence++, block, blockLength, firstLineNumber, countingStream.count));
+            }
+            blockCount.set(sequence);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Throwable t) {
+            failure.compareAndSet(null, t);
+        } finally {
+            // One end marker per worker. If the import was aborted the put is interrupted instead.
+            try {
+                for (int i = 0; i < workerCount; i++) {
+                    blocks.put(Block.END);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    // Copies length chars from source into target after targetLength, growing target if needed
+    private static char[] append(char[] target, int targetLength, char[] source, int offset, int length) {
+        if (targetLength + length > target.length) {
+            char[] grown = new char[Math.max(target.length * 2, targetLength + length)];
+            System.arraycopy(target, 0, grown, 0, targetLength);
+            target = grown;
+        }
+        System.arraycopy(source, offset, target, targetLength, length);
+        return target;
+    }
+
+    // Parser stage
+    private static void parseBlocks(BlockingQueue<Block> blocks, BlockingQueue<ParsedBlock> parsedBlocks,
+                                    AtomicReference<Throwable> failure) {
+        RecordParser parser = new RecordParser(); // Date formats and calendars are per thread
+        try {
+            while (true) {
+                Block block = blocks.take();
+                if (block == Block.END) {
+                    return;
+                }
+                parsedBlocks.put(parser.parse(block));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Throwable t) {
+            failure.compareAndSet(null, t);
+        }
+    }
+
+    // A run of whole CSV records cut from the input
+    private static class Block {
+        static final Block END = new Block(-1, null, 0, 0, 0);
+
+        final long sequence;
+        final char[] chars;
+        final int length;
+        final int firstLineNumber;
+        final long bytesRead; // Bytes consumed from the file when the block was cut
+
+        Block(long sequence, char[] chars, int length, int firstLineNumber, long bytesRead) {
+            this.sequence = sequence;
+            this.chars = chars;
+            this.length = length;
+            this.firstLineNumber = firstLineNumber;
+            this.bytesRead = bytesRead;
+        }
+    }
+
+    private static class ParsedBlock {
+        final long sequence;
+        final long bytesRead;
+        final List<LogEntry> entries = new ArrayList<>();
+        final List<String> errors = new ArrayList<>(); // At most MAX_REPORTED_ERRORS, in line order
+        int failedLinesCount;
+
+        ParsedBlock(Block block) {
+            this.sequence = block.sequence;
+            this.bytesRead = block.bytesRead;
+        }
+
+        void addError(int lineNumber, String message) {
+            failedLinesCount++;
+            if (errors.size() < MAX_REPORTED_ERRORS) {
+                errors.add("Line " + lineNumber + ": " + message + "\n");
+            }
+        }
+    }
+
+    // Follows CsvReader's quoting rules closely enough to tell which line feeds end a record: a quote
+    // only opens a quoted field at the start of a field, and "" inside a quoted field is an escape.
+    private static class RecordBoundaryScanner {
+        private static final int FIELD_START = 0;
+        private static final int UNQUOTED = 1;
+        private static final int QUOTED = 2;
+        private static final int QUOTE_IN_QUOTED = 3; // Closing quote, or the first half of ""
+
+        private int state = FIELD_START;
+
+        // Returns true if c is a line feed that ends a record
+        boolean accept(char c) {
+            if (state == QUOTED) {
+                if (c == '"') state = QUOTE_IN_QUOTED;
+                return false;
+            }
+            if (state == QUOTE_IN_QUOTED) {
+                if (c == '"') {
+                    state = QUOTED;
+                    return false;
+                }
+                state = UNQUOTED; // The quote closed the field; c is handled below
+            }
+            if (c == ',' || c == '\r') {
+                state = FIELD_START;
+            } else if (c == '\n') {
+                state = FIELD_START;
+                return true;
+            } else if (c == '"' && state == FIELD_START) {
+                state = QUOTED;
+            } else if (c != ' ' && c != '\t') {
+                state = UNQUOTED;
+            }
+            return false;
+        }
+    }
+
+    // Turns blocks into entries. Holds the non-thread-safe parsing state of one worker.
+    private static class RecordParser {
+        // Defines the CSV format: ID,Timestamp (yyyy-MM-dd HH:mm:ss),Event,Notes
+        private final SimpleDateFormat csvDateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.getDefault());
+        private final Calendar calendar = Calendar.getInstance(); // Fast path of parseTimestamp
+        private final LocalTimeBuckets localTimeBuckets = new LocalTimeBuckets();
+
+        ParsedBlock parse(Block block) throws IOException {
+            ParsedBlock parsed = new ParsedBlock(block);
+            CsvReader csvReader = new CsvReader(block.chars, block.length, block.firstLineNumber);
+            boolean isHeader = block.sequence == 0; // The first record of the file is the header row
+
+            while (csvReader.readRecord()) {
+                if (isHeader) {
+                    isHeader = false;
+                    continue;
+                }
+                LogEntry entry = parseRecord(csvReader, parsed);
+                if (entry != null) parsed.entries.add(entry);
+            }
+            return parsed;
+        }
+
+        // Returns the entry for the current record, or null if the record is blank or invalid
+        // (the error is recorded in parsed).
+        @Nullable
+        private LogEntry parseRecord(CsvReader csvReader, ParsedBlock parsed) {
+            int lineNumber = csvReader.getRecordLineNumber();
+            // CSV format: ID,Timestamp (yyyy-MM-dd HH:mm:ss),Event,Notes
+            if (csvReader.getFieldCount() < 4) { // Expect at least ID, timestamp, event, notes
+                if (!csvReader.isEmptyRecord()) { // Don't count empty lines as errors
+                    Log.w(TAG, "Skipping line " + lineNumber + " due to incorrect column count: " + csvReader.getFieldCount());
+                    parsed.addError(lineNumber, "Incorrect column count (expected 4, got " + csvReader.getFieldCount() + ").");
+                }
+                return null;
+            }
+
+            try {
+                // The imported ID is not used (the database assigns a new one), but a row without a
+                // numeric one is not an exported entry
+                Integer.parseInt(csvReader.getField(0));
+                long timestamp = parseTimestamp(csvReader, 1);
+
+                LogEntry entry = new LogEntry();
+                entry.setTimestamp(timestamp);
+                entry.setEventName(csvReader.getField(2));
+                entry.setNotes(csvReader.getField(3));
+                localTimeBuckets.apply(entry);
+                return entry;
+            } catch (NumberFormatException e) {
+                Log.w(TAG, "Skipping line " + lineNumber + " due to ID parsing error", e);
+                parsed.addError(lineNumber, "Invalid ID format.");
+            } catch (ParseException e) {
+                Log.w(TAG, "Skipping line " + lineNumber + " due to timestamp parsing error", e);
+                parsed.addError(lineNumber, "Invalid timestamp format (expected yyyy-MM-dd HH:mm:ss).");
+            } catch (Exception e) { // Catch other unexpected parsing issues
+                Log.w(TAG, "Skipping line " + lineNumber + " due to unexpected error", e);
+                parsed.addError(lineNumber, String.valueOf(e.getMessage()));
+            }
+            return null;
+        }
+
+        // Parses a "yyyy-MM-dd HH:mm:ss" field straight from the reader's buffer. Anything that does not
+        // have exactly that shape goes through SimpleDateFormat, which keeps its lenient behaviour.
+        private long parseTimestamp(CsvReader csvReader, int field) throws ParseException {
+            if (csvReader.getFieldLength(field) == 19
+                    && csvReader.charAt(field, 4) == '-' && csvReader.charAt(field, 7) == '-'
+                    && csvReader.charAt(field, 10) == ' '
+                    && csvReader.charAt(field, 13) == ':' && csvReader.charAt(field, 16) == ':') {
+                int year = digits(csvReader, field, 0, 4);
+                int month = digits(csvReader, field, 5, 2);
+                int day = digits(csvReader, field, 8, 2);
+                int hour = digits(csvReader, field, 11, 2);
+                int minute = digits(csvReader, field, 14, 2);
+                int second = digits(csvReader, field, 17, 2);
+                if (year >= 0 && month >= 1 && month <= 12 && day >= 1 && day <= 31
+                        && hour >= 0 && hour <= 23 && minute >= 0 && minute <= 59 && second >= 0 && second <= 59) {
+                    calendar.clear();
+                    calendar.set(year, month - 1, day, hour, minute, second);
+                    return calendar.getTimeInMillis();
+                }
+            }
+            Date timestampDate = csvDateFormat.parse(csvReader.getField(field));
+            if (timestampDate == null) throw new ParseException("Parsed date was null", 0);
+            return timestampDate.getTime();
+        }
+
+        // Decimal value of count digits starting at offset, or -1 if any of them is not a digit
+        private static int digits(CsvReader csvReader, int field, int offset, int count) {
+            int value = 0;
+            for (int i = offset; i < offset + count; i++) {
+                char c = csvReader.charAt(field, i);
+                if (c < '0' || c > '9') return -1;
+                value = value * 10 + (c - '0');
+            }
+            return value;
+        }
+    }
+
+    // Counts the bytes consumed from the file for progress reporting
+    private static class CountingInputStream extends FilterInputStream {
+        volatile long count; // Written by the reader stage, read when blocks are cut
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) count++;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int n = super.read(buffer, offset, length);
+            if (n > 0) count += n;
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+    }
+}
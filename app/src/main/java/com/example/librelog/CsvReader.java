@@ -0,0 +1,217 @@
+package com.example.librelog;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+
+// RFC 4180 CSV reader built as a small state machine over a reusable char buffer.
+// Handles quoted fields containing commas, line breaks and doubled ("") quotes, which is exactly
+// what CsvExporter writes. The unescaped fields of the current record are kept in one shared char
+// array and exposed as (start, length) slices, so reading a record allocates nothing; callers only
+// pay for a String when they ask for one with getField().
+// Whitespace around unquoted fields and outside the quotes of quoted fields is trimmed.
+// Not thread-safe.
+public class CsvReader implements Closeable {
+
+    private static final int INPUT_BUFFER_SIZE = 64 * 1024;
+
+    private final Reader reader; // Null when reading from a fixed char array
+    private final char[] input;
+    private int inputPosition;
+    private int inputLimit;
+    private boolean skipLineFeed; // Previous record ended with '\r'; swallow a following '\n'
+
+    // Unescaped characters of the current record and the slice of each field within it
+    private char[] recordChars = new char[256];
+    private int recordLength;
+    private int[] fieldStarts = new int[8];
+    private int[] fieldEnds = new int[8];
+    private int fieldCount;
+
+    private int lineNumber; // Number of line breaks consumed so far, plus the starting line
+    private int recordLineNumber;
+
+    public CsvReader(Reader reader) {
+        this(reader, 1);
+    }
+
+    // firstLineNumber is the line number of the first line the reader will see; used when the
+    // input is a block taken from the middle of a larger file.
+    public CsvReader(Reader reader, int firstLineNumber) {
+        this.reader = reader;
+        this.input = new char[INPUT_BUFFER_SIZE];
+        this.lineNumber = firstLineNumber;
+    }
+
+    // Reads the first length chars of the array in place, without copying them.
+    public CsvReader(char[] chars, int length, int firstLineNumber) {
+        this.reader = null;
+        this.input = chars;
+        this.inputLimit = length;
+        this.lineNumber = firstLineNumber;
+    }
+
+    // Advances to the next record. Returns false at end of input. A blank line is returned as a
+    // record with a single empty field.
+    public boolean readRecord() throws IOException {
+        recordLength = 0;
+        fieldCount = 0;
+
+        int c = read();
+        if (c == -1) {
+            return false;
+        }
+        recordLineNumber = lineNumber;
+
+        int fieldStart = 0;
+        int trimmedEnd = 0; // Record length up to the last character that belongs to the field value
+        boolean quoted = false;
+        boolean fieldHasContent = false;
+
+        while (true) {
+            if (quoted) {
+                if (c == -1) {
+                    // Unterminated quote at end of input: keep what was read
+                    endField(fieldStart, recordLength);
+                    return true;
+                }
+                if (c == '"') {
+                    int next = read();
+                    if (next == '"') {
+                        append('"'); // Escaped quote
+                    } else {
+                        quoted = false;
+                        trimmedEnd = recordLength;
+                        c = next;
+                        continue;
+                    }
+                } else {
+                    if (c == '\n') lineNumber++;
+                    append((char) c);
+                }
+                c = read();
+                continue;
+            }
+
+            if (c == ',' || c == '\n' || c == '\r' || c == -1) {
+                endField(fieldStart, trimmedEnd);
+                if (c == ',') {
+                    fieldStart = recordLength;
+                    trimmedEnd = recordLength;
+                    fieldHasContent = false;
+                    c = read();
+                    continue;
+                }
+                if (c == '\r') {
+                    skipLineFeed = true;
+                }
+                if (c != -1) {
+                    lineNumber++;
+                }
+                return true;
+            }
+
+            if (c == '"' && !fieldHasContent) {
+                quoted = true;
+                fieldHasContent = true;
+                recordLength = fieldStart; // Drop any whitespace before the opening quote
+            } else if (c == ' ' || c == '\t') {
+                if (fieldHasContent) append((char) c); // Kept unless it turns out to be trailing
+            } else {
+                // Also covers text after a closing quote, which is kept verbatim (lenient)
+                fieldHasContent = true;
+                append((char) c);
+                trimmedEnd = recordLength;
+            }
+            c = read();
+        }
+    }
+
+    public int getFieldCount() {
+        return fieldCount;
+    }
+
+    // Line number (1-based, relative to the first line number given) on which the current record starts
+    public int getRecordLineNumber() {
+        return recordLineNumber;
+    }
+
+    public int getFieldLength(int field) {
+        checkField(field);
+        return fieldEnds[field] - fieldStarts[field];
+    }
+
+    public char charAt(int field, int index) {
+        checkField(field);
+        return recordChars[fieldStarts[field] + index];
+    }
+
+    public String getField(int field) {
+        checkField(field);
+        return new String(recordChars, fieldStarts[field], fieldEnds[field] - fieldStarts[field]);
+    }
+
+    // True if the record is a blank line
+    public boolean isEmptyRecord() {
+        return fieldCount == 1 && fieldEnds[0] == fieldStarts[0];
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (reader != null) {
+            reader.close();
+        }
+    }
+
+    private void checkField(int field) {
+        if (field < 0 || field >= fieldCount) {
+            throw new IndexOutOfBoundsException("Field " + field + " of " + fieldCount);
+        }
+    }
+
+    private int read() throws IOException {
+        if (inputPosition == inputLimit) {
+            if (reader == null) {
+                return -1;
+            }
+            int n = reader.read(input, 0, input.length);
+            if (n <= 0) {
+                return -1;
+            }
+            inputPosition = 0;
+            inputLimit = n;
+        }
+        char c = input[inputPosition++];
+        if (skipLineFeed) {
+            skipLineFeed = false;
+            if (c == '\n') {
+                return read();
+            }
+        }
+        return c;
+    }
+
+    private void append(char c) {
+        if (recordLength == recordChars.length) {
+            char[] grown = new char[recordChars.length * 2];
+            System.arraycopy(recordChars, 0, grown, 0, recordLength);
+            recordChars = grown;
+        }
+        recordChars[recordLength++] = c;
+    }
+
+    private void endField(int start, int end) {
+        if (fieldCount == fieldStarts.length) {
+            int[] grownStarts = new int[fieldCount * 2];
+            int[] grownEnds = new int[fieldCount * 2];
+            System.arraycopy(fieldStarts, 0, grownStarts, 0, fieldCount);
+            System.arraycopy(fieldEnds, 0, grownEnds, 0, fieldCount);
+            fieldStarts = grownStarts;
+            fieldEnds = grownEnds;
+        }
+        fieldStarts[fieldCount] = start;
+        fieldEnds[fieldCount] = Math.max(start, end);
+        fieldCount++;
+        recordLength = Math.max(start, end); // Trailing whitespace is not part of the field
+    }
+}
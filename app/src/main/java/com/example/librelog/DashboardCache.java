@@ -0,0 +1,113 @@
+package com.example.librelog;
+
+import android.util.LruCache;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.room.InvalidationTracker;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Recently computed dashboard sections (first page and count, analytics) per event type, so going
+// back to a type seen a moment ago renders straight from memory instead of re-running its queries.
+// Every entry is stamped with the data version it was computed at. The version is bumped by Room's
+// InvalidationTracker on any write to the tables the sections read (log_entries, event_types, the
+// rollups and interval histogram, archive_blocks), which makes every older entry a miss without
+// having to find and evict it. LogArchive's re-bucketing and interval recounts write the rollups and
+// histogram alone, so those are watched as well as log_entries. Least recently used entries are evicted beyond
+// MAX_BYTES (estimated sizes).
+// Thread-safe: lookups happen on the main thread, stores on the read pool.
+public class DashboardCache {
+
+    public static final String RECENT_ENTRIES = "recentEntries";
+    public static final String ANALYTICS = "analytics";
+
+    static final int MAX_BYTES = 512 * 1024;
+
+    private static final class Entry {
+        final long version;
+        final Object value;
+        final int bytes;
+
+        Entry(long version, Object value, int bytes) {
+            this.version = version;
+            this.value = value;
+            this.bytes = bytes;
+        }
+    }
+
+    private final LruCache<String, Entry> entries = new LruCache<String, Entry>(MAX_BYTES) {
+        @Override
+        protected int sizeOf(String key, Entry entry) {
+            return entry.bytes;
+        }
+    };
+    private final AtomicLong dataVersion = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public DashboardCache(AppDatabase db) {
+        db.getInvalidationTracker().addObserver(new InvalidationTracker.Observer(
+                "log_entries", "event_types", "event_rollups", "interval_buckets", "archive_blocks") {
+            @Override
+            public void onInvalidated(@NonNull Set<String> tables) {
+                dataVersion.incrementAndGet();
+            }
+        });
+    }
+
+    // Read before running a query and passed to put(), so a result read while a write was being
+    // committed is stored under the older version and never served as current
+    public long version() {
+        return dataVersion.get();
+    }
+
+    // Returns the section of the type if it was computed at the current data version
+    @Nullable
+    @SuppressWarnings("unchecked")
+    public <T> T get(String section, long eventTypeId) {
+        Entry entry = entries.get(key(section, eventTypeId));
+        if (entry == null || entry.version != dataVersion.get()) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return (T) entry.value;
+    }
+
+    public void put(String section, long eventTypeId, long version, Object value, int estimatedBytes) {
+        if (version != dataVersion.get()) {
+            return; // Already stale
+        }
+        entries.put(key(section, eventTypeId), new Entry(version, value, estimatedBytes));
+    }
+
+    public String describeStats() {
+        long hitCount = hits.get();
+        long total = hitCount + misses.get();
+        return String.format(Locale.US, "Dashboard cache: %d hits, %d misses (%d%% hit rate), %d of %d KB used, %d evictions",
+                hitCount, total - hitCount, total == 0 ? 0 : hitCount * 100 / total,
+                entries.size() / 1024, entries.maxSize() / 1024, entries.evictionCount());
+    }
+
+    // Rough heap footprint of a page of rows: object headers, fields and the strings' chars
+    public static int estimateBytes(List<LogEntryRow> rows) {
+        int bytes = 64;
+        for (LogEntryRow row : rows) {
+            bytes += 200 + 2 * (row.event.length() + row.notes.length());
+        }
+        return bytes;
+    }
+
+    public static int estimateBytes(EventAnalytics.Result result) {
+        return 128 + 4 * (result.hourly.length + result.dayOfMonth.length
+                + result.monthOfYear.length + result.intervalBins.length);
+    }
+
+    private static String key(String section, long eventTypeId) {
+        return section + ":" + eventTypeId;
+    }
+}
@@ -0,0 +1,107 @@
+package com.example.librelog;
+
+import java.util.List;
+
+// Everything the dashboard charts show for one event type, read from pre-aggregated tables kept
+// current by triggers. The hour / day-of-month / month histograms come from event_rollups, and the
+// time between entries from interval_buckets; both are at most a few hundred rows, however long the
+// history. Must run off the main thread.
+public class EventAnalytics {
+
+    private static final long SECOND = 1000;
+    private static final long MINUTE = 60 * SECOND;
+    private static final long HOUR = 60 * MINUTE;
+    private static final long DAY = 24 * HOUR;
+
+    // Log-scale chart bins in readable steps; bin i holds gaps from INTERVAL_BIN_STARTS[i] up to the
+    // next start. A gap is binned by the lower bound of its IntervalBucket, so gaps within 10% above
+    // a step can land one bin early.
+    public static final long[] INTERVAL_BIN_STARTS = {
+            0, SECOND, 2 * SECOND, 5 * SECOND, 10 * SECOND, 30 * SECOND,
+            MINUTE, 2 * MINUTE, 5 * MINUTE, 10 * MINUTE, 30 * MINUTE,
+            HOUR, 2 * HOUR, 6 * HOUR, 12 * HOUR,
+            DAY, 2 * DAY, 4 * DAY, 7 * DAY, 14 * DAY, 30 * DAY, 90 * DAY, 365 * DAY};
+    public static final String[] INTERVAL_BIN_LABELS = {
+            "<1s", "1s", "2s", "5s", "10s", "30s",
+            "1m", "2m", "5m", "10m", "30m",
+            "1h", "2h", "6h", "12h",
+            "1d", "2d", "4d", "1w", "2w", "30d", "90d", "1y+"};
+    public static final int INTERVAL_BIN_COUNT = INTERVAL_BIN_STARTS.length;
+
+    public static class Result {
+        public final int[] hourly = new int[24]; // Index = local hour
+        public final int[] dayOfMonth = new int[31]; // Index = day - 1, current month only
+        public final int[] monthOfYear = new int[12]; // Index = month - 1, last 12 months only
+
+        // Positive gaps between consecutive entries, in the INTERVAL_BIN_STARTS bins. The chart shows
+        // firstIntervalBin..lastIntervalBin, the bins from the shortest to the longest gap.
+        public final int[] intervalBins = new int[INTERVAL_BIN_COUNT];
+        public int firstIntervalBin = -1;
+        public int lastIntervalBin = -1;
+        public long intervalCount;
+        // Percentiles of the gaps in ms; 0 without gaps. Each is the middle of its IntervalBucket, which
+        // spans under 10% of its lower bound, so the middle is within 5% of any gap in the bucket.
+        public long medianInterval;
+        public long p90Interval;
+        public long p99Interval;
+    }
+
+    private final LogEntryDao logEntryDao;
+
+    public EventAnalytics(LogEntryDao logEntryDao) {
+        this.logEntryDao = logEntryDao;
+    }
+
+    public Result compute(long eventTypeId) {
+        Result result = new Result();
+        for (LogEntryDao.EventCountByHour row : logEntryDao.getEventCountByHour(eventTypeId)) {
+            if (row.hour >= 0 && row.hour < 24) result.hourly[row.hour] = row.count;
+        }
+        for (LogEntryDao.EventCountByDay row : logEntryDao.getEventCountByDay(eventTypeId)) {
+            if (row.day >= 1 && row.day <= 31) result.dayOfMonth[row.day - 1] = row.count;
+        }
+        for (LogEntryDao.EventCountByMonth row : logEntryDao.getEventCountByMonthLast12(eventTypeId)) {
+            if (row.month >= 1 && row.month <= 12) result.monthOfYear[row.month - 1] = row.count;
+        }
+        computeIntervals(logEntryDao.getIntervalBuckets(eventTypeId), result);
+        return result;
+    }
+
+    public static boolean isEmpty(int[] counts) {
+        for (int count : counts) {
+            if (count != 0) return false;
+        }
+        return true;
+    }
+
+    // buckets in gap order, as stored
+    static void computeIntervals(List<IntervalBucket> buckets, Result result) {
+        long count = 0;
+        for (IntervalBucket bucket : buckets) count += bucket.getCount();
+        result.intervalCount = count;
+        if (count == 0) {
+            return;
+        }
+
+        // Nearest-rank percentiles: the bucket holding the ceil(p * count)-th gap
+        long p50Rank = (count + 1) / 2;
+        long p90Rank = (count * 9 + 9) / 10;
+        long p99Rank = (count * 99 + 99) / 100;
+        long seen = 0;
+        int bin = 0;
+        for (IntervalBucket bucket : buckets) {
+            long lower = IntervalBucket.lowerBound(bucket.getBucket());
+            long middle = lower + (IntervalBucket.upperBound(bucket.getBucket()) - lower) / 2;
+            long before = seen;
+            seen += bucket.getCount();
+            if (before < p50Rank && seen >= p50Rank) result.medianInterval = middle;
+            if (before < p90Rank && seen >= p90Rank) result.p90Interval = middle;
+            if (before < p99Rank && seen >= p99Rank) result.p99Interval = middle;
+
+            while (bin + 1 < INTERVAL_BIN_COUNT && INTERVAL_BIN_STARTS[bin + 1] <= lower) bin++;
+            result.intervalBins[bin] += bucket.getCount();
+            if (result.firstIntervalBin < 0) result.firstIntervalBin = bin;
+            result.lastIntervalBin = bin;
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.example.librelog;
+
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.ForeignKey;
+
+// Pre-aggregated event counts per (event type, time bucket). Rows are maintained by triggers on
+// log_entries (see AppDatabase.createRollupTriggers) so the dashboard charts read a few dozen rows
+// instead of grouping the whole history of a type.
+@Entity(tableName = "event_rollups",
+        primaryKeys = {"event_type_id", "bucket_kind", "bucket"},
+        foreignKeys = @ForeignKey(entity = EventType.class,
+                parentColumns = "event_type_id",
+                childColumns = "event_type_id",
+                onDelete = ForeignKey.CASCADE)) // Rollups of a deleted type are meaningless
+public class EventRollup {
+    // Bucket kinds. Buckets are local-time integers: hour 0-23, day yyyyMMdd, month yyyyMM.
+    public static final int KIND_HOUR = 0;
+    public static final int KIND_DAY = 1;
+    public static final int KIND_MONTH = 2;
+
+    @ColumnInfo(name = "event_type_id")
+    private int eventTypeId;
+
+    @ColumnInfo(name = "bucket_kind")
+    private int bucketKind;
+
+    private int bucket;
+    private int count;
+
+    public int getEventTypeId() {
+        return eventTypeId;
+    }
+    public void setEventTypeId(int eventTypeId) {
+        this.eventTypeId = eventTypeId;
+    }
+    public int getBucketKind() {
+        return bucketKind;
+    }
+    public void setBucketKind(int bucketKind) {
+        this.bucketKind = bucketKind;
+    }
+    public int getBucket() {
+        return bucket;
+    }
+    public void setBucket(int bucket) {
+        this.bucket = bucket;
+    }
+    public int getCount() {
+        return count;
+    }
+    public void setCount(int count) {
+        this.count = count;
+    }
+}
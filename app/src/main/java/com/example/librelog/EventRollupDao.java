@@ -0,0 +1,56 @@
+package com.example.librelog;
+
+import androidx.room.Dao;
+import androidx.room.Query;
+import androidx.room.Transaction;
+
+// Maintenance of the event_rollups table. Day-to-day updates happen in SQL triggers; this DAO only
+// provides the queries of the full rebuild (LogArchive.rebuildRollups) and the re-bucketing of
+// archived entries.
+@Dao
+public interface EventRollupDao {
+    @Query("DELETE FROM event_rollups")
+    void deleteAll();
+
+    // The rebuilds of the live part (LogArchive.rebuildRollups) group on the persisted local_*
+    // columns, which the covering indexes on (event_type_id, local_hour) and
+    // (event_type_id, local_month_key, local_day_key) serve directly.
+    @Query("INSERT INTO event_rollups (event_type_id, bucket_kind, bucket, count) " +
+            "SELECT event_type_id, " + EventRollup.KIND_HOUR + ", local_hour, COUNT(*) " +
+            "FROM log_entries WHERE event_type_id IS NOT NULL AND local_hour IS NOT NULL " +
+            "GROUP BY event_type_id, local_hour")
+    void rebuildHourly();
+
+    @Query("INSERT INTO event_rollups (event_type_id, bucket_kind, bucket, count) " +
+            "SELECT event_type_id, " + EventRollup.KIND_DAY + ", local_day_key, COUNT(*) " +
+            "FROM log_entries WHERE event_type_id IS NOT NULL AND local_day_key IS NOT NULL " +
+            "GROUP BY event_type_id, local_month_key, local_day_key")
+    void rebuildDaily();
+
+    @Query("INSERT INTO event_rollups (event_type_id, bucket_kind, bucket, count) " +
+            "SELECT event_type_id, " + EventRollup.KIND_MONTH + ", local_month_key, COUNT(*) " +
+            "FROM log_entries WHERE event_type_id IS NOT NULL AND local_month_key IS NOT NULL " +
+            "GROUP BY event_type_id, local_month_key")
+    void rebuildMonthly();
+
+    // Moves counts of archived entries (LogArchive.rebucket), which the triggers do not see. A type
+    // deleted since its entries were archived has no rollups to move.
+    @Query("INSERT OR IGNORE INTO event_rollups (event_type_id, bucket_kind, bucket, count) " +
+            "SELECT :eventTypeId, :kind, :bucket, 0 WHERE EXISTS (SELECT 1 FROM event_types WHERE event_type_id = :eventTypeId)")
+    void insertEmpty(int eventTypeId, int kind, int bucket);
+
+    @Query("UPDATE event_rollups SET count = count + :delta " +
+            "WHERE event_type_id = :eventTypeId AND bucket_kind = :kind AND bucket = :bucket")
+    void changeCount(int eventTypeId, int kind, int bucket, int delta);
+
+    @Query("DELETE FROM event_rollups WHERE event_type_id = :eventTypeId AND bucket_kind = :kind " +
+            "AND bucket = :bucket AND count <= 0")
+    void deleteIfEmpty(int eventTypeId, int kind, int bucket);
+
+    @Transaction
+    default void addToCount(int eventTypeId, int kind, int bucket, int delta) {
+        insertEmpty(eventTypeId, kind, bucket);
+        changeCount(eventTypeId, kind, bucket, delta);
+        deleteIfEmpty(eventTypeId, kind, bucket);
+    }
+}
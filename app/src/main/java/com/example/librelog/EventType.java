@@ -9,6 +9,8 @@ import androidx.room.PrimaryKey;
 @Entity(tableName = "event_types",
         indices = {@Index(value = "event_name", unique = true)})
 public class EventType {
+    public static final String DEFAULT_EVENT_NAME = "Default Event"; // Created by AppDatabase on open
+
     @PrimaryKey(autoGenerate = true)
     @ColumnInfo(name = "event_type_id")
     private int eventTypeId;
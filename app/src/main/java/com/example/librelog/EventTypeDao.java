@@ -14,6 +14,10 @@ public interface EventTypeDao {
     @Insert(onConflict = OnConflictStrategy.IGNORE)
     long insert(EventType eventType);
 
+    // Row ids of the new types, -1 for names that already exist
+    @Insert(onConflict = OnConflictStrategy.IGNORE)
+    long[] insertAll(List<EventType> eventTypes);
+
     @Update
     void update(EventType eventType);
 
@@ -26,6 +30,9 @@ public interface EventTypeDao {
     @Query("SELECT * FROM event_types WHERE event_name = :name LIMIT 1")
     EventType findByName(String name);
 
+    @Query("SELECT * FROM event_types WHERE event_name IN (:names)")
+    List<EventType> findByNames(List<String> names);
+
     @Query("SELECT * FROM event_types WHERE event_type_id = :id LIMIT 1")
     EventType findById(int id);
 }
\ No newline at end of file
@@ -0,0 +1,61 @@
+package com.example.librelog;
+
+import androidx.annotation.NonNull;
+import androidx.room.InvalidationTracker;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Event type names by id. log_entries only stores event_type_id; lists, search and the CSV export
+// look the name up here instead of carrying a copy per row or joining event_types on every row.
+// The map is read from event_types in one query and read again after any write to that table
+// (Room's InvalidationTracker), so a rename shows up everywhere at once. All rows of a type share
+// the one String instance held here.
+// Thread-safe. get() may query the database, so it is called off the main thread.
+public class EventTypeNames {
+
+    private static final class Snapshot {
+        final long version;
+        final Map<Integer, String> names;
+
+        Snapshot(long version, Map<Integer, String> names) {
+            this.version = version;
+            this.names = names;
+        }
+    }
+
+    private final EventTypeDao eventTypeDao;
+    private final AtomicLong dataVersion = new AtomicLong();
+    private volatile Snapshot snapshot;
+
+    public EventTypeNames(AppDatabase db) {
+        eventTypeDao = db.eventTypeDao();
+        db.getInvalidationTracker().addObserver(new InvalidationTracker.Observer("event_types") {
+            @Override
+            public void onInvalidated(@NonNull Set<String> tables) {
+                dataVersion.incrementAndGet();
+            }
+        });
+    }
+
+    // Unmodifiable map of every event type's name by id
+    public Map<Integer, String> get() {
+        Snapshot current = snapshot;
+        // Read before the query, like DashboardCache.version(): names read while a rename was being
+        // committed are kept under the older version and read again on the next call
+        long version = dataVersion.get();
+        if (current != null && current.version == version) {
+            return current.names;
+        }
+        Map<Integer, String> names = new HashMap<>();
+        for (EventType eventType : eventTypeDao.getAllEventTypes()) {
+            names.put(eventType.getEventTypeId(), eventType.getEventName());
+        }
+        Map<Integer, String> unmodifiable = Collections.unmodifiableMap(names);
+        snapshot = new Snapshot(version, unmodifiable);
+        return unmodifiable;
+    }
+}
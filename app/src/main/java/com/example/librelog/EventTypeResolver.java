@@ -0,0 +1,76 @@
+package com.example.librelog;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+// Sets eventTypeId on log entries from their event name, for bulk writers such as CsvImporter.
+// The name -> id map is filled once from event_types; after that the database is only touched for
+// names not seen before, and all new names of a batch are created together. Blank names go to the
+// default event type. Not thread-safe.
+public class EventTypeResolver {
+
+    private static final int MAX_NAMES_PER_QUERY = 500; // SQLite allows at most 999 bound variables
+
+    private final EventTypeDao eventTypeDao;
+    private Map<String, Integer> idsByName;
+
+    public EventTypeResolver(EventTypeDao eventTypeDao) {
+        this.eventTypeDao = eventTypeDao;
+    }
+
+    // Should be called inside the transaction that inserts the entries, so a type and its first
+    // entries are committed together.
+    public void resolve(List<LogEntry> entries) {
+        if (idsByName == null) {
+            idsByName = new HashMap<>();
+            for (EventType eventType : eventTypeDao.getAllEventTypes()) {
+                idsByName.put(eventType.getEventName(), eventType.getEventTypeId());
+            }
+        }
+
+        LinkedHashSet<String> unknownNames = new LinkedHashSet<>();
+        for (LogEntry entry : entries) {
+            String name = eventName(entry);
+            if (!idsByName.containsKey(name)) unknownNames.add(name);
+        }
+        if (!unknownNames.isEmpty()) {
+            createEventTypes(new ArrayList<>(unknownNames));
+        }
+
+        for (LogEntry entry : entries) {
+            entry.setEventTypeId(idsByName.get(eventName(entry)));
+        }
+    }
+
+    private void createEventTypes(List<String> names) {
+        List<EventType> eventTypes = new ArrayList<>(names.size());
+        for (String name : names) {
+            eventTypes.add(new EventType(name));
+        }
+        long[] rowIds = eventTypeDao.insertAll(eventTypes);
+
+        // Names that were ignored already exist (created since the map was filled); look them up
+        List<String> existingNames = new ArrayList<>();
+        for (int i = 0; i < rowIds.length; i++) {
+            if (rowIds[i] == -1) {
+                existingNames.add(names.get(i));
+            } else {
+                idsByName.put(names.get(i), (int) rowIds[i]);
+            }
+        }
+        for (int start = 0; start < existingNames.size(); start += MAX_NAMES_PER_QUERY) {
+            List<String> batch = existingNames.subList(start, Math.min(existingNames.size(), start + MAX_NAMES_PER_QUERY));
+            for (EventType eventType : eventTypeDao.findByNames(batch)) {
+                idsByName.put(eventType.getEventName(), eventType.getEventTypeId());
+            }
+        }
+    }
+
+    private static String eventName(LogEntry entry) {
+        String name = entry.getEventName();
+        return name == null || name.trim().isEmpty() ? EventType.DEFAULT_EVENT_NAME : name;
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.librelog;
+
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.ForeignKey;
+
+// Histogram of the gaps between consecutive entries of an event type, in log-scale buckets.
+// Rows are maintained by triggers on log_entries (see AppDatabase.installTriggers): an insert or
+// delete only looks up its neighbours in the (type, timestamp) index and moves a few counts, so
+// percentiles and the interval chart never read the type's history.
+// A bucket keeps two significant decimal digits of the gap in milliseconds, like an HdrHistogram
+// with two significant digits: bucket = digits * 100 + leading two digits, e.g. 3_456_000 ms is
+// bucket 734 and covers [3_400_000, 3_500_000). Gaps below 10 ms are exact. The relative error is
+// under 10%, there are at most 90 buckets per power of ten, and bucket order is gap order.
+// Entries sharing a timestamp make no gap.
+@Entity(tableName = "interval_buckets",
+        primaryKeys = {"event_type_id", "bucket"},
+        foreignKeys = @ForeignKey(entity = EventType.class,
+                parentColumns = "event_type_id",
+                childColumns = "event_type_id",
+                onDelete = ForeignKey.CASCADE))
+public class IntervalBucket {
+
+    @ColumnInfo(name = "event_type_id")
+    private int eventTypeId;
+
+    private int bucket;
+    private int count;
+
+    // Bucket of a positive gap; the SQL version is AppDatabase.intervalBucketSql
+    public static int bucketOf(long interval) {
+        int digits = Long.toString(interval).length();
+        long lead = digits == 1 ? interval : interval / pow10(digits - 2);
+        return digits * 100 + (int) lead;
+    }
+
+    public static long lowerBound(int bucket) {
+        int digits = bucket / 100;
+        long lead = bucket % 100;
+        return digits == 1 ? lead : lead * pow10(digits - 2);
+    }
+
+    // Exclusive
+    public static long upperBound(int bucket) {
+        int digits = bucket / 100;
+        long lead = bucket % 100;
+        return digits == 1 ? lead + 1 : (lead + 1) * pow10(digits - 2);
+    }
+
+    private static long pow10(int exponent) {
+        long value = 1;
+        for (int i = 0; i < exponent; i++) value *= 10;
+        return value;
+    }
+
+    public int getEventTypeId() {
+        return eventTypeId;
+    }
+    public void setEventTypeId(int eventTypeId) {
+        this.eventTypeId = eventTypeId;
+    }
+    public int getBucket() {
+        return bucket;
+    }
+    public void setBucket(int bucket) {
+        this.bucket = bucket;
+    }
+    public int getCount() {
+        return count;
+    }
+    public void setCount(int count) {
+        this.count = count;
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.librelog;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import java.util.Calendar;
+import java.util.List;
+import java.util.TimeZone;
+
+// Computes the persisted local-time bucket columns of a LogEntry (local_hour, local_day_key,
+// local_month_key) and re-buckets the whole table when the device time zone changes.
+// Instances are not thread-safe: use one per thread (e.g. one per import job).
+public class LocalTimeBuckets {
+
+    private static final String TAG = "LocalTimeBuckets";
+    static final String PREFS_NAME = "librelog_prefs";
+    private static final String PREF_BUCKETS_TIME_ZONE = "buckets_time_zone";
+    private static final int REBUCKET_CHUNK_SIZE = 5000;
+
+    private final Calendar calendar;
+
+    public LocalTimeBuckets() {
+        this(TimeZone.getDefault());
+    }
+
+    LocalTimeBuckets(TimeZone timeZone) {
+        calendar = Calendar.getInstance(timeZone);
+    }
+
+    public void apply(LogEntry entry) {
+        calendar.setTimeInMillis(entry.getTimestamp());
+        entry.setLocalHour(calendar.get(Calendar.HOUR_OF_DAY));
+        entry.setLocalDayKey(dayKey());
+        entry.setLocalMonthKey(monthKey());
+    }
+
+    // Convenience for one-off inserts; bulk writers should reuse an instance.
+    public static void fill(LogEntry entry) {
+        new LocalTimeBuckets().apply(entry);
+    }
+
+    // The bucket of each EventRollup kind (hour, day, month), indexed by kind
+    void bucketsOf(long timestamp, int[] buckets) {
+        calendar.setTimeInMillis(timestamp);
+        buckets[EventRollup.KIND_HOUR] = calendar.get(Calendar.HOUR_OF_DAY);
+        buckets[EventRollup.KIND_DAY] = dayKey();
+        buckets[EventRollup.KIND_MONTH] = monthKey();
+    }
+
+    private int dayKey() {
+        return monthKey() * 100 + calendar.get(Calendar.DAY_OF_MONTH);
+    }
+
+    private int monthKey() {
+        return calendar.get(Calendar.YEAR) * 100 + calendar.get(Calendar.MONTH) + 1;
+    }
+
+    // Recomputes the bucket columns of every entry if they were computed for a different time zone.
+    // Runs in committed chunks, so it can be interrupted; the zone is only recorded once every row is
+    // done, which makes the next call resume the job. Must be called off the main thread.
+    public static void rebucketIfNeeded(Context context) {
+        SharedPreferences prefs = context.getApplicationContext().getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        String currentZone = TimeZone.getDefault().getID();
+        String bucketsZone = prefs.getString(PREF_BUCKETS_TIME_ZONE, null);
+        if (bucketsZone == null) {
+            // First run after the columns were added: the migration filled them for the current zone
+            prefs.edit().putString(PREF_BUCKETS_TIME_ZONE, currentZone).apply();
+            return;
+        }
+        if (bucketsZone.equals(currentZone)) {
+            return;
+        }
+
+        Log.d(TAG, "Time zone changed from " + bucketsZone + " to " + currentZone + ", re-bucketing log entries.");
+        AppDatabase db = AppDatabase.getDatabase(context);
+        LogEntryDao logEntryDao = db.logEntryDao();
+        LocalTimeBuckets buckets = new LocalTimeBuckets();
+        int afterId = 0;
+        int changedRows = 0;
+        while (true) {
+            List<LogEntryDao.EntryTimestamp> chunk = logEntryDao.getEntryTimestampsAfterId(afterId, REBUCKET_CHUNK_SIZE);
+            if (chunk.isEmpty()) {
+                break;
+            }
+            int[] changedInChunk = new int[1];
+            // One transaction per chunk on the writer; the rollup triggers move the counts between buckets
+            AppDatabase.runOnWriteExecutor(() -> db.runInTransaction(() -> {
+                for (LogEntryDao.EntryTimestamp row : chunk) {
+                    buckets.calendar.setTimeInMillis(row.timestamp);
+                    changedInChunk[0] += logEntryDao.updateLocalBuckets(row.id,
+                            buckets.calendar.get(Calendar.HOUR_OF_DAY), buckets.dayKey(), buckets.monthKey());
+                }
+            }));
+            changedRows += changedInChunk[0];
+            afterId = chunk.get(chunk.size() - 1).id;
+        }
+        // Archived entries are not in log_entries; their rollup counts are moved block by block
+        changedRows += new LogArchive(db).rebucket(currentZone);
+        prefs.edit().putString(PREF_BUCKETS_TIME_ZONE, currentZone).apply();
+        Log.d(TAG, "Re-bucketing finished, " + changedRows + " entries changed.");
+    }
+
+    // Whether the stored buckets are for the current time zone, i.e. no re-bucketing is pending
+    public static boolean isUpToDate(Context context) {
+        SharedPreferences prefs = context.getApplicationContext().getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        String bucketsZone = prefs.getString(PREF_BUCKETS_TIME_ZONE, null);
+        return bucketsZone == null || bucketsZone.equals(TimeZone.getDefault().getID());
+    }
+}
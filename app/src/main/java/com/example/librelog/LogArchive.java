@@ -0,0 +1,480 @@
+package com.example.librelog;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.database.Cursor;
+import android.util.Log;
+
+import androidx.sqlite.db.SupportSQLiteDatabase;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TimeZone;
+import java.util.function.Predicate;
+
+// Cold storage for old entries. Entries older than a configurable age leave log_entries and are
+// kept in one ArchiveBlock per (event type, UTC month), a few bytes each instead of a row and its
+// index entries. What stays exact:
+//  - event_rollups and interval_buckets keep counting archived entries. Archived ids go through
+//    archive_pending, which the delete triggers check, so archiving leaves both tables untouched.
+//  - The interval triggers take a row's previous neighbour from archive_blocks when no live entry
+//    is older. Every archived timestamp is older than every live one of its type; entries inserted
+//    at or before a type's horizon (its newest archived timestamp), e.g. by an import, are folded
+//    into their blocks on the next run and the type's histogram is recounted.
+//  - Blocks record the time zone their rollup counts are in; rebucket() moves them like
+//    LocalTimeBuckets does for live rows, and rebuildRollups() recounts them in that zone.
+// The list (LogEntryPager), the zoomed-in timeline, the CSV export and search read the archive
+// through this class. Archived entries leave the full-text index with their rows, so search
+// (LogEntrySearch) matches them by decoding their blocks once the live matches run out. Archiving
+// runs as a background job, one transaction per block on the writer. Reads may run on any thread.
+public class LogArchive {
+
+    private static final String TAG = "LogArchive";
+    private static final String PREF_ARCHIVE_AFTER_MONTHS = "archive_after_months";
+    public static final int NEVER = 0;
+    public static final int DEFAULT_ARCHIVE_AFTER_MONTHS = 24;
+
+    private static final TimeZone UTC = TimeZone.getTimeZone("UTC");
+    private static final int DECODED_BLOCKS_CACHED = 16; // Import duplicate checks
+
+    private final AppDatabase db;
+    private final LogEntryDao logEntryDao;
+    private final ArchiveBlockDao archiveBlockDao;
+
+    public LogArchive(AppDatabase db) {
+        this.db = db;
+        this.logEntryDao = db.logEntryDao();
+        this.archiveBlockDao = db.archiveBlockDao();
+    }
+
+    public static int getArchiveAfterMonths(Context context) {
+        return prefs(context).getInt(PREF_ARCHIVE_AFTER_MONTHS, DEFAULT_ARCHIVE_AFTER_MONTHS);
+    }
+
+    public static void setArchiveAfterMonths(Context context, int months) {
+        prefs(context).edit().putInt(PREF_ARCHIVE_AFTER_MONTHS, months).apply();
+    }
+
+    private static SharedPreferences prefs(Context context) {
+        return context.getApplicationContext().getSharedPreferences(LocalTimeBuckets.PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
+    // Archives what the setting says is old enough, and folds in stragglers even when it says never.
+    // Waits for a pending re-bucketing: blocks are written in the zone of the live rows' buckets.
+    // Must be called off the main thread, on AppDatabase.backgroundJobExecutor.
+    public static void archiveIfNeeded(Context context) {
+        if (!LocalTimeBuckets.isUpToDate(context)) {
+            return;
+        }
+        int months = getArchiveAfterMonths(context);
+        long cutoff = months == NEVER ? Long.MIN_VALUE : monthStart(addMonths(monthKey(System.currentTimeMillis()), -months));
+        int archived = new LogArchive(AppDatabase.getDatabase(context)).archiveOlderThan(cutoff, TimeZone.getDefault().getID());
+        if (archived > 0) {
+            Log.d(TAG, "Archived " + archived + " entries.");
+        }
+    }
+
+    // Moves every type's entries older than cutoff (the start of a UTC month) into the archive.
+    // timeZone is the zone the live rows are bucketed in. Returns the number of entries moved.
+    public int archiveOlderThan(long cutoff, String timeZone) {
+        int archived = 0;
+        for (EventType eventType : db.eventTypeDao().getAllEventTypes()) {
+            archived += archiveType(eventType.getEventTypeId(), cutoff, timeZone);
+        }
+        return archived;
+    }
+
+    int archiveType(int eventTypeId, long cutoff, String timeZone) {
+        boolean folding = false;
+        Long horizon = archiveBlockDao.getHorizon(eventTypeId);
+        if (horizon != null) {
+            Long oldest = logEntryDao.getOldestTimestampFrom(eventTypeId, Long.MIN_VALUE);
+            if (oldest != null && oldest <= horizon) {
+                // Live entries among archived ones: the whole horizon month goes to the archive
+                folding = true;
+                cutoff = Math.max(cutoff, monthStart(nextMonthKey(monthKey(horizon))));
+            }
+        }
+
+        int archived = 0;
+        Long oldest = logEntryDao.getOldestTimestampFrom(eventTypeId, Long.MIN_VALUE);
+        while (oldest != null && oldest < cutoff) {
+            int month = monthKey(oldest);
+            long end = monthStart(nextMonthKey(month));
+            archived += archiveMonth(eventTypeId, month, monthStart(month), end, timeZone);
+            oldest = logEntryDao.getOldestTimestampFrom(eventTypeId, end);
+        }
+        if (folding) {
+            recountIntervals(eventTypeId);
+        }
+        return archived;
+    }
+
+    private int archiveMonth(int eventTypeId, int month, long start, long end, String timeZone) {
+        int[] archived = new int[1];
+        AppDatabase.runOnWriteExecutor(() -> db.runInTransaction(() -> {
+            List<LogEntry> entries = logEntryDao.getLogEntriesInRange(eventTypeId, start, end);
+            if (entries.isEmpty()) return;
+            List<LogEntry> merged = new ArrayList<>(entries);
+            ArchiveBlock existing = archiveBlockDao.getBlock(eventTypeId, month);
+            if (existing != null) {
+                if (!existing.getTimeZone().equals(timeZone)) moveRollups(existing, timeZone);
+                merged.addAll(existing.decode());
+            }
+            archiveBlockDao.insert(ArchiveBlock.encode(eventTypeId, month, timeZone, merged));
+
+            // Deleted without touching the rollups or the interval histogram (see the triggers)
+            SupportSQLiteDatabase sql = db.getOpenHelper().getWritableDatabase();
+            Object[] range = {eventTypeId, start, end};
+            sql.execSQL("INSERT INTO archive_pending (id) SELECT id FROM log_entries " +
+                    "WHERE event_type_id = ? AND timestamp >= ? AND timestamp < ?", range);
+            sql.execSQL("DELETE FROM log_entries WHERE event_type_id = ? AND timestamp >= ? AND timestamp < ?", range);
+            sql.execSQL("DELETE FROM archive_pending");
+            archived[0] = entries.size();
+        }));
+        return archived[0];
+    }
+
+    // Recounts the type's interval histogram from its archived and live timestamps, in one pass
+    // over both in time order
+    private void recountIntervals(int eventTypeId) {
+        AppDatabase.runOnWriteExecutor(() -> db.runInTransaction(() -> {
+            Map<Integer, Integer> counts = new HashMap<>();
+            long[] previous = {Long.MIN_VALUE};
+            for (ArchiveBlock block : archiveBlockDao.getBlocksInRange(eventTypeId, 0, Integer.MAX_VALUE)) {
+                for (long timestamp : block.decodeTimestamps()) {
+                    countInterval(counts, previous, timestamp);
+                }
+            }
+            try (Cursor cursor = logEntryDao.getTimestampsCursor(eventTypeId)) {
+                while (cursor.moveToNext()) {
+                    countInterval(counts, previous, cursor.getLong(0));
+                }
+            }
+            List<IntervalBucket> buckets = new ArrayList<>(counts.size());
+            for (Map.Entry<Integer, Integer> count : counts.entrySet()) {
+                IntervalBucket bucket = new IntervalBucket();
+                bucket.setEventTypeId(eventTypeId);
+                bucket.setBucket(count.getKey());
+                bucket.setCount(count.getValue());
+                buckets.add(bucket);
+            }
+            logEntryDao.deleteIntervalBuckets(eventTypeId);
+            logEntryDao.insertIntervalBuckets(buckets);
+        }));
+    }
+
+    private static void countInterval(Map<Integer, Integer> counts, long[] previous, long timestamp) {
+        if (previous[0] != Long.MIN_VALUE && timestamp > previous[0]) {
+            counts.merge(IntervalBucket.bucketOf(timestamp - previous[0]), 1, Integer::sum);
+        }
+        previous[0] = timestamp;
+    }
+
+    // Moves the rollup counts of every block bucketed in another zone to timeZone. Called by
+    // LocalTimeBuckets.rebucketIfNeeded. Returns the number of archived entries re-bucketed.
+    public int rebucket(String timeZone) {
+        int moved = 0;
+        for (ArchiveBlockDao.BlockKey key : archiveBlockDao.getBlocksNotInZone(timeZone)) {
+            int[] count = new int[1];
+            AppDatabase.runOnWriteExecutor(() -> db.runInTransaction(() -> {
+                ArchiveBlock block = archiveBlockDao.getBlock(key.eventTypeId, key.monthKey);
+                if (block == null || block.getTimeZone().equals(timeZone)) return;
+                moveRollups(block, timeZone);
+                archiveBlockDao.insert(block);
+                count[0] = block.getCount();
+            }));
+            moved += count[0];
+        }
+        return moved;
+    }
+
+    // Recomputes every rollup row in one transaction: live entries from their local_* columns,
+    // archived ones from their timestamps in the zone their block records. For when the table has
+    // stopped matching the entries.
+    public void rebuildRollups() {
+        AppDatabase.runOnWriteExecutor(() -> db.runInTransaction(() -> {
+            EventRollupDao eventRollupDao = db.eventRollupDao();
+            eventRollupDao.deleteAll();
+            eventRollupDao.rebuildHourly();
+            eventRollupDao.rebuildDaily();
+            eventRollupDao.rebuildMonthly();
+            int[] buckets = new int[3];
+            for (ArchiveBlock block = archiveBlockDao.getNextBlock(-1, 0); block != null;
+                 block = archiveBlockDao.getNextBlock(block.getEventTypeId(), block.getMonthKey())) {
+                LocalTimeBuckets zone = new LocalTimeBuckets(TimeZone.getTimeZone(block.getTimeZone()));
+                Map<Long, Integer> counts = new HashMap<>(); // By bucket * 4 + kind
+                for (long timestamp : block.decodeTimestamps()) {
+                    zone.bucketsOf(timestamp, buckets);
+                    for (int kind = EventRollup.KIND_HOUR; kind <= EventRollup.KIND_MONTH; kind++) {
+                        counts.merge((long) buckets[kind] * 4 + kind, 1, Integer::sum);
+                    }
+                }
+                for (Map.Entry<Long, Integer> count : counts.entrySet()) {
+                    eventRollupDao.addToCount(block.getEventTypeId(), (int) (count.getKey() % 4),
+                            (int) (count.getKey() / 4), count.getValue());
+                }
+            }
+        }));
+    }
+
+    // Moves the block's entries between rollup buckets as if they were re-bucketed from the block's
+    // zone to timeZone, and records the new zone on the block (which the caller saves)
+    private void moveRollups(ArchiveBlock block, String timeZone) {
+        LocalTimeBuckets from = new LocalTimeBuckets(TimeZone.getTimeZone(block.getTimeZone()));
+        LocalTimeBuckets to = new LocalTimeBuckets(TimeZone.getTimeZone(timeZone));
+        int[] oldBuckets = new int[3];
+        int[] newBuckets = new int[3];
+        Map<Long, Integer> deltas = new HashMap<>(); // By bucket * 4 + kind
+        for (long timestamp : block.decodeTimestamps()) {
+            from.bucketsOf(timestamp, oldBuckets);
+            to.bucketsOf(timestamp, newBuckets);
+            for (int kind = EventRollup.KIND_HOUR; kind <= EventRollup.KIND_MONTH; kind++) {
+                if (oldBuckets[kind] == newBuckets[kind]) continue;
+                deltas.merge((long) oldBuckets[kind] * 4 + kind, -1, Integer::sum);
+                deltas.merge((long) newBuckets[kind] * 4 + kind, 1, Integer::sum);
+            }
+        }
+        EventRollupDao eventRollupDao = db.eventRollupDao();
+        for (Map.Entry<Long, Integer> delta : deltas.entrySet()) {
+            if (delta.getValue() == 0) continue;
+            eventRollupDao.addToCount(block.getEventTypeId(), (int) (delta.getKey() % 4),
+                    (int) (delta.getKey() / 4), delta.getValue());
+        }
+        block.setTimeZone(timeZone);
+    }
+
+    // The same pages as LogEntryDao's keyset queries, over live and archived entries together.
+    // Archived entries are all older than live ones, so a page is the live part followed (newest
+    // first) or preceded (oldest first) by archived entries read block by block.
+    public List<LogEntry> getFirstLogEntriesPage(long eventTypeId, int limit) {
+        List<LogEntry> entries = logEntryDao.getFirstLogEntriesPage(eventTypeId, limit);
+        if (entries.size() < limit) {
+            entries.addAll(archivedBefore(eventTypeId, Long.MAX_VALUE, Integer.MAX_VALUE, limit - entries.size()));
+        }
+        return entries;
+    }
+
+    // Newest first
+    public List<LogEntry> getLogEntriesPageAfter(long eventTypeId, long afterTimestamp, int afterId, int limit) {
+        List<LogEntry> entries = logEntryDao.getLogEntriesPageAfter(eventTypeId, afterTimestamp, afterId, limit);
+        if (entries.size() < limit) {
+            entries.addAll(archivedBefore(eventTypeId, afterTimestamp, afterId, limit - entries.size()));
+        }
+        return entries;
+    }
+
+    // Oldest first, like the DAO query
+    public List<LogEntry> getLogEntriesPageBefore(long eventTypeId, long beforeTimestamp, int beforeId, int limit) {
+        List<LogEntry> entries = archivedAfter(eventTypeId, beforeTimestamp, beforeId, limit);
+        if (entries.size() < limit) {
+            entries.addAll(logEntryDao.getLogEntriesPageBefore(eventTypeId, beforeTimestamp, beforeId, limit - entries.size()));
+        }
+        return entries;
+    }
+
+    // Archived entries before the (timestamp, id) key, newest first
+    private List<LogEntry> archivedBefore(long eventTypeId, long timestamp, int id, int limit) {
+        List<LogEntry> result = new ArrayList<>();
+        int month = timestamp == Long.MAX_VALUE ? Integer.MAX_VALUE : monthKey(timestamp);
+        ArchiveBlock block = archiveBlockDao.getBlockAtOrBefore(eventTypeId, month);
+        while (block != null && result.size() < limit) {
+            List<LogEntry> entries = block.decode();
+            for (int i = entries.size() - 1; i >= 0 && result.size() < limit; i--) {
+                LogEntry entry = entries.get(i);
+                if (entry.getTimestamp() < timestamp || (entry.getTimestamp() == timestamp && entry.getId() < id)) {
+                    result.add(entry);
+                }
+            }
+            block = archiveBlockDao.getBlockAtOrBefore(eventTypeId, previousMonthKey(block.getMonthKey()));
+        }
+        return result;
+    }
+
+    // Archived entries after the (timestamp, id) key, oldest first. From a live key this is one
+    // primary-key seek that finds nothing.
+    private List<LogEntry> archivedAfter(long eventTypeId, long timestamp, int id, int limit) {
+        List<LogEntry> result = new ArrayList<>();
+        ArchiveBlock block = archiveBlockDao.getBlockAtOrAfter(eventTypeId, monthKey(timestamp));
+        while (block != null && result.size() < limit) {
+            for (LogEntry entry : block.decode()) {
+                if (result.size() >= limit) break;
+                if (entry.getTimestamp() > timestamp || (entry.getTimestamp() == timestamp && entry.getId() > id)) {
+                    result.add(entry);
+                }
+            }
+            block = archiveBlockDao.getBlockAtOrAfter(eventTypeId, nextMonthKey(block.getMonthKey()));
+        }
+        return result;
+    }
+
+    // Adds the archived entries in [from, to) to counts[timestamp / bucketMillis - firstBucket], for
+    // the zoomed-in timeline. Only the timestamps of the blocks in range are decoded.
+    public void addCountsPerBucket(long eventTypeId, long from, long to, long bucketMillis, long firstBucket, float[] counts) {
+        for (ArchiveBlock block : archiveBlockDao.getBlocksInRange(eventTypeId, monthKey(from), monthKey(to - 1))) {
+            if (block.getLastTimestamp() < from || block.getFirstTimestamp() >= to) continue;
+            for (long timestamp : block.decodeTimestamps()) {
+                if (timestamp < from || timestamp >= to) continue;
+                long index = Math.floorDiv(timestamp, bucketMillis) - firstBucket;
+                if (index >= 0 && index < counts.length) counts[(int) index]++;
+            }
+        }
+    }
+
+    // Archived entries of eventTypeId (any type when negative) logged in [from, to] and accepted by
+    // matches, newest first, at most limit of them. Blocks are decoded one at a time, newest month
+    // first, until the limit is reached.
+    public List<LogEntry> search(long eventTypeId, long from, long to, Predicate<LogEntry> matches, int limit) {
+        List<LogEntry> result = new ArrayList<>();
+        int toMonth = to == Long.MAX_VALUE ? Integer.MAX_VALUE : monthKey(to);
+        List<ArchiveBlockDao.BlockKey> keys = archiveBlockDao.getBlockKeysInRange(eventTypeId, monthKey(Math.max(from, 0)), toMonth);
+        int i = 0;
+        while (i < keys.size() && result.size() < limit) {
+            // The blocks of other types in the same month overlap in time: the month is read whole
+            int month = keys.get(i).monthKey;
+            for (; i < keys.size() && keys.get(i).monthKey == month; i++) {
+                ArchiveBlock block = archiveBlockDao.getBlock(keys.get(i).eventTypeId, month);
+                if (block == null || block.getLastTimestamp() < from || block.getFirstTimestamp() > to) continue;
+                for (LogEntry entry : block.decode()) {
+                    if (entry.getTimestamp() >= from && entry.getTimestamp() <= to && matches.test(entry)) {
+                        result.add(entry);
+                    }
+                }
+            }
+        }
+        Collections.sort(result, (a, b) -> a.getTimestamp() != b.getTimestamp()
+                ? Long.compare(b.getTimestamp(), a.getTimestamp()) : Integer.compare(b.getId(), a.getId()));
+        return result.size() > limit ? new ArrayList<>(result.subList(0, limit)) : result;
+    }
+
+    // Import support: drops entries that are already archived, which the natural-key check on
+    // log_entries cannot see, and reports the types that got entries at or before their horizon
+    // so they can be folded in once the import is done. Not thread-safe; used by the import's
+    // writer stage, after the chunk's event types are resolved.
+    public ImportFilter newImportFilter() {
+        return new ImportFilter();
+    }
+
+    public class ImportFilter {
+        private final Map<Integer, Long> horizons = new HashMap<>();
+        private final Map<Long, Set<NaturalKey>> decodedBlocks =
+                new LinkedHashMap<Long, Set<NaturalKey>>(DECODED_BLOCKS_CACHED, 0.75f, true) {
+                    @Override
+                    protected boolean removeEldestEntry(Map.Entry<Long, Set<NaturalKey>> eldest) {
+                        return size() > DECODED_BLOCKS_CACHED;
+                    }
+                };
+        private final Set<Integer> typesToFold = new HashSet<>();
+
+        // Removes the archived entries from the list and returns how many there were
+        public int removeArchived(List<LogEntry> entries) {
+            int kept = 0;
+            for (LogEntry entry : entries) {
+                Integer eventTypeId = entry.getEventTypeId();
+                if (eventTypeId != null && entry.getTimestamp() <= horizon(eventTypeId)) {
+                    if (archivedKeys(eventTypeId, monthKey(entry.getTimestamp()))
+                            .contains(new NaturalKey(entry.getTimestamp(), entry.getNotesHash()))) {
+                        continue;
+                    }
+                    typesToFold.add(eventTypeId);
+                }
+                entries.set(kept++, entry); // Compacted in place; the chunk can be all archived
+            }
+            int removed = entries.size() - kept;
+            entries.subList(kept, entries.size()).clear();
+            return removed;
+        }
+
+        // Moves the imported entries that landed among archived ones into their blocks
+        public void finish(String timeZone) {
+            for (int eventTypeId : typesToFold) {
+                archiveType(eventTypeId, Long.MIN_VALUE, timeZone);
+            }
+            typesToFold.clear();
+        }
+
+        private long horizon(int eventTypeId) {
+            Long horizon = horizons.get(eventTypeId);
+            if (horizon == null) {
+                horizon = archiveBlockDao.getHorizon(eventTypeId);
+                if (horizon == null) horizon = Long.MIN_VALUE;
+                horizons.put(eventTypeId, horizon);
+            }
+            return horizon;
+        }
+
+        private Set<NaturalKey> archivedKeys(int eventTypeId, int month) {
+            long cacheKey = (long) eventTypeId * 1_000_000 + month;
+            Set<NaturalKey> keys = decodedBlocks.get(cacheKey);
+            if (keys == null) {
+                keys = new HashSet<>();
+                ArchiveBlock block = archiveBlockDao.getBlock(eventTypeId, month);
+                if (block != null) {
+                    for (LogEntry archived : block.decode()) {
+                        keys.add(new NaturalKey(archived.getTimestamp(), archived.getNotesHash()));
+                    }
+                }
+                decodedBlocks.put(cacheKey, keys);
+            }
+            return keys;
+        }
+    }
+
+    // (second, notes_hash): with the type, the natural key CSV imports deduplicate on
+    // (see LogEntryDao.insertIfNew)
+    private static final class NaturalKey {
+        final long second;
+        final long notesHash;
+
+        NaturalKey(long timestamp, long notesHash) {
+            this.second = Math.floorDiv(timestamp, 1000L);
+            this.notesHash = notesHash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof NaturalKey)) return false;
+            NaturalKey other = (NaturalKey) o;
+            return second == other.second && notesHash == other.notesHash;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(second) * 31 + Long.hashCode(notesHash);
+        }
+    }
+
+    // UTC months as yyyyMM
+    static int monthKey(long timestamp) {
+        Calendar calendar = Calendar.getInstance(UTC);
+        calendar.setTimeInMillis(timestamp);
+        return calendar.get(Calendar.YEAR) * 100 + calendar.get(Calendar.MONTH) + 1;
+    }
+
+    static long monthStart(int monthKey) {
+        Calendar calendar = Calendar.getInstance(UTC);
+        calendar.clear();
+        calendar.set(monthKey / 100, monthKey % 100 - 1, 1);
+        return calendar.getTimeInMillis();
+    }
+
+    static int nextMonthKey(int monthKey) {
+        return monthKey % 100 == 12 ? (monthKey / 100 + 1) * 100 + 1 : monthKey + 1;
+    }
+
+    static int previousMonthKey(int monthKey) {
+        return monthKey % 100 == 1 ? (monthKey / 100 - 1) * 100 + 12 : monthKey - 1;
+    }
+
+    static int addMonths(int monthKey, int months) {
+        int index = monthKey / 100 * 12 + monthKey % 100 - 1 + months;
+        return index / 12 * 100 + index % 12 + 1;
+    }
+}
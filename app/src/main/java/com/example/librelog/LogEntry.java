@@ -3,6 +3,7 @@ package com.example.librelog;
 import androidx.room.ColumnInfo;
 import androidx.room.Entity;
 import androidx.room.ForeignKey;
+import androidx.room.Ignore;
 import androidx.room.PrimaryKey;
 import androidx.room.Index;
 
@@ -12,18 +13,44 @@ import androidx.room.Index;
                 childColumns = "event_type_id",
                 onDelete = ForeignKey.SET_NULL, // When an EventType is deleted, set event_type_id in LogEntry to NULL
                 onUpdate = ForeignKey.CASCADE), // If an EventType's ID changes, update it here too
-        indices = {@Index(value = "event_type_id")})
+        // Natural key of CSV imports, which skip an entry whose type, second and notes are already
+        // stored (LogEntryDao.insertIfNew). Not unique: the app itself may log identical entries. Its
+        // (event_type_id, timestamp) prefix also serves the foreign key lookups and the per-type
+        // "ORDER BY timestamp" scans used for keyset pagination.
+        indices = {@Index(value = {"event_type_id", "timestamp", "notes_hash"}),
+                // Covering indexes for the per-type hour and day/month groupings
+                @Index(value = {"event_type_id", "local_hour"}),
+                @Index(value = {"event_type_id", "local_month_key", "local_day_key"})})
 public class LogEntry {
     @PrimaryKey(autoGenerate = true)
     private int id;
 
     private long timestamp;
-    private String event; // This will store the event name text
     private String notes;
 
+    // Hash of notes for the import natural key; maintained by setNotes
+    @ColumnInfo(name = "notes_hash", defaultValue = "0")
+    private long notesHash = hashNotes(null);
+
     @ColumnInfo(name = "event_type_id") // Allows null by default for Integer
     private Integer eventTypeId; // Use Integer to allow nulls, links to EventType table
 
+    // Local-time buckets of timestamp, filled by LocalTimeBuckets when the entry is written and
+    // recomputed when the device time zone changes
+    @ColumnInfo(name = "local_hour")
+    private Integer localHour; // 0-23
+
+    @ColumnInfo(name = "local_day_key")
+    private Integer localDayKey; // yyyyMMdd
+
+    @ColumnInfo(name = "local_month_key")
+    private Integer localMonthKey; // yyyyMM
+
+    // Event name of an entry that has no event type yet (CSV import), until EventTypeResolver turns it
+    // into eventTypeId. Not stored: names live in event_types only (see EventTypeNames).
+    @Ignore
+    private String eventName;
+
     // Getters and setters for all fields
     public int getId() {
         return id;
@@ -37,17 +64,33 @@ public class LogEntry {
     public void setTimestamp(long timestamp) {
         this.timestamp = timestamp;
     }
-    public String getEvent() {
-        return event;
-    }
-    public void setEvent(String event) {
-        this.event = event;
-    }
     public String getNotes() {
         return notes;
     }
     public void setNotes(String notes) {
         this.notes = notes;
+        this.notesHash = hashNotes(notes);
+    }
+
+    public long getNotesHash() {
+        return notesHash;
+    }
+
+    public void setNotesHash(long notesHash) {
+        this.notesHash = notesHash;
+    }
+
+    // 64-bit FNV-1a over the UTF-16 chars. Null hashes like "" because the CSV export writes null
+    // notes as an empty field.
+    public static long hashNotes(String notes) {
+        long hash = 0xcbf29ce484222325L;
+        if (notes != null) {
+            for (int i = 0; i < notes.length(); i++) {
+                hash ^= notes.charAt(i);
+                hash *= 0x100000001b3L;
+            }
+        }
+        return hash;
     }
 
     public Integer getEventTypeId() {
@@ -57,4 +100,36 @@ public class LogEntry {
     public void setEventTypeId(Integer eventTypeId) {
         this.eventTypeId = eventTypeId;
     }
+
+    public Integer getLocalHour() {
+        return localHour;
+    }
+
+    public void setLocalHour(Integer localHour) {
+        this.localHour = localHour;
+    }
+
+    public Integer getLocalDayKey() {
+        return localDayKey;
+    }
+
+    public void setLocalDayKey(Integer localDayKey) {
+        this.localDayKey = localDayKey;
+    }
+
+    public Integer getLocalMonthKey() {
+        return localMonthKey;
+    }
+
+    public void setLocalMonthKey(Integer localMonthKey) {
+        this.localMonthKey = localMonthKey;
+    }
+
+    public String getEventName() {
+        return eventName;
+    }
+
+    public void setEventName(String eventName) {
+        this.eventName = eventName;
+    }
 }
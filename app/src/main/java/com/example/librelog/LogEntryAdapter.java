@@ -6,24 +6,42 @@ import android.view.ViewGroup;
 import android.widget.TextView;
 
 import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListAdapter;
 import androidx.recyclerview.widget.RecyclerView;
 
 import io.github.billpottle.librelog.R;
 
-import java.text.SimpleDateFormat;
-import java.util.Date;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Locale;
 
-public class LogEntryAdapter extends RecyclerView.Adapter<LogEntryAdapter.LogEntryViewHolder> {
+// Rows are diffed against the previous list on a background thread (ListAdapter), so inserting or
+// loading entries only rebinds the rows that changed. Entry ids are stable row ids. Rows arrive
+// already formatted (LogEntryRow), so binding does no formatting and allocates nothing.
+public class LogEntryAdapter extends ListAdapter<LogEntryRow, LogEntryAdapter.LogEntryViewHolder> {
 
-    private List<LogEntry> logEntries;
-    private final SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.getDefault());
+    // The list last passed to submitList(). getCurrentList() lags behind it while a diff is running,
+    // so incremental updates start from this one.
+    private List<LogEntryRow> submittedEntries = new ArrayList<>();
 
-    public LogEntryAdapter(List<LogEntry> logEntries) {
-        this.logEntries = logEntries;
+    public LogEntryAdapter(List<LogEntryRow> logEntries) {
+        super(DIFF_CALLBACK);
+        setHasStableIds(true);
+        setLogEntries(logEntries);
     }
 
+    private static final DiffUtil.ItemCallback<LogEntryRow> DIFF_CALLBACK = new DiffUtil.ItemCallback<LogEntryRow>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull LogEntryRow oldItem, @NonNull LogEntryRow newItem) {
+            return oldItem.id == newItem.id;
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull LogEntryRow oldItem, @NonNull LogEntryRow newItem) {
+            return oldItem.hasSameContent(newItem);
+        }
+    };
+
     @NonNull
     @Override
     public LogEntryViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
@@ -34,29 +52,39 @@ public class LogEntryAdapter extends RecyclerView.Adapter<LogEntryAdapter.LogEnt
 
     @Override
     public void onBindViewHolder(@NonNull LogEntryViewHolder holder, int position) {
-        LogEntry currentEntry = logEntries.get(position);
-        holder.textViewEvent.setText(currentEntry.getEvent());
-
-        // Format the timestamp
-        String formattedDate = dateFormat.format(new Date(currentEntry.getTimestamp()));
-        holder.textViewTimestamp.setText(formattedDate);
-
-        if (currentEntry.getNotes() != null && !currentEntry.getNotes().isEmpty()) {
-            holder.textViewNotes.setText(currentEntry.getNotes());
-            holder.textViewNotes.setVisibility(View.VISIBLE);
-        } else {
-            holder.textViewNotes.setVisibility(View.GONE);
-        }
+        LogEntryRow row = getItem(position);
+        holder.textViewEvent.setText(row.event);
+        holder.textViewTimestamp.setText(row.formattedTimestamp);
+        holder.textViewNotes.setText(row.notes);
+        holder.textViewNotes.setVisibility(row.notesVisibility);
     }
 
     @Override
-    public int getItemCount() {
-        return logEntries != null ? logEntries.size() : 0;
+    public long getItemId(int position) {
+        return getItem(position).id;
+    }
+
+    public void setLogEntries(List<LogEntryRow> newLogEntries) {
+        submittedEntries = new ArrayList<>(newLogEntries);
+        submitList(submittedEntries);
+    }
+
+    // Incremental updates from LogEntryPager and SearchFragment
+    public void appendLogEntries(List<LogEntryRow> entries) {
+        List<LogEntryRow> updated = new ArrayList<>(submittedEntries);
+        updated.addAll(entries);
+        setLogEntries(updated);
+    }
+
+    public void prependLogEntries(List<LogEntryRow> entries) {
+        List<LogEntryRow> updated = new ArrayList<>(entries);
+        updated.addAll(submittedEntries);
+        setLogEntries(updated);
     }
 
-    public void setLogEntries(List<LogEntry> newLogEntries) {
-        this.logEntries = newLogEntries;
-        notifyDataSetChanged(); // Notify the adapter to refresh the view
+    public void removeLogEntries(boolean fromStart, int count) {
+        int size = submittedEntries.size();
+        setLogEntries(fromStart ? submittedEntries.subList(count, size) : submittedEntries.subList(0, size - count));
     }
 
     static class LogEntryViewHolder extends RecyclerView.ViewHolder {
@@ -1,22 +1,56 @@
 package com.example.librelog;
 
+import android.database.Cursor;
+
 import androidx.room.Dao;
 import androidx.room.Delete;
 import androidx.room.Insert;
 import androidx.room.OnConflictStrategy;
 import androidx.room.Query;
+import androidx.room.RawQuery;
 import androidx.room.Update;
+import androidx.sqlite.db.SimpleSQLiteQuery;
+import androidx.sqlite.db.SupportSQLiteQuery;
 
 import java.util.List;
 
 @Dao
 public interface LogEntryDao {
-    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    // IGNORE rather than REPLACE: entries never carry an id that could conflict, and REPLACE's
+    // implicit delete would bypass the rollup triggers.
+    @Insert(onConflict = OnConflictStrategy.IGNORE)
     void insert(LogEntry logEntry);
 
-    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    @Insert(onConflict = OnConflictStrategy.IGNORE)
     void insertAll(LogEntry... logEntries);
 
+    // Row ids of the inserted entries
+    @Insert(onConflict = OnConflictStrategy.IGNORE)
+    long[] insertAll(List<LogEntry> logEntries);
+
+    // CSV import: inserts the entry unless one of the same type and notes is already stored in the
+    // same second (the resolution of the CSV format), so re-importing an export writes nothing.
+    // A range seek on the (event_type_id, timestamp, notes_hash) index. Row id, or -1 if skipped.
+    @Query("INSERT INTO log_entries (timestamp, notes, notes_hash, event_type_id, local_hour, local_day_key, local_month_key) " +
+            "SELECT :timestamp, :notes, :notesHash, :eventTypeId, :localHour, :localDayKey, :localMonthKey " +
+            "WHERE NOT EXISTS (SELECT 1 FROM log_entries WHERE event_type_id = :eventTypeId " +
+            "AND timestamp >= :second AND timestamp < :second + 1000 AND notes_hash = :notesHash)")
+    long insertIfNew(long timestamp, String notes, long notesHash, Integer eventTypeId,
+                     Integer localHour, Integer localDayKey, Integer localMonthKey, long second);
+
+    // Row ids of the imported entries, -1 for the duplicates that were skipped. Entries earlier in
+    // the list count, so a file repeating a row imports it once.
+    default long[] insertAllIfNew(List<LogEntry> logEntries) {
+        long[] rowIds = new long[logEntries.size()];
+        for (int i = 0; i < rowIds.length; i++) {
+            LogEntry entry = logEntries.get(i);
+            rowIds[i] = insertIfNew(entry.getTimestamp(), entry.getNotes(), entry.getNotesHash(), entry.getEventTypeId(),
+                    entry.getLocalHour(), entry.getLocalDayKey(), entry.getLocalMonthKey(),
+                    entry.getTimestamp() - Math.floorMod(entry.getTimestamp(), 1000L));
+        }
+        return rowIds;
+    }
+
     @Update
     void update(LogEntry logEntry);
 
@@ -32,38 +66,170 @@ public interface LogEntryDao {
     @Query("SELECT * FROM log_entries ORDER BY timestamp DESC")
     List<LogEntry> getAllLogEntriesNoFilter();
 
+    @Query("SELECT COUNT(*) FROM log_entries")
+    long getCountAllLogEntries();
+
+    // Export chunk: the next :limit rows after :afterId in rowid order. Returned as a Cursor so the
+    // exporter can stream rows without materialising LogEntry objects; the caller closes it.
+    @Query("SELECT id, timestamp, event_type_id, notes FROM log_entries WHERE id > :afterId ORDER BY id ASC LIMIT :limit")
+    Cursor getLogEntriesCursorAfterId(int afterId, int limit);
+
     // **** MODIFIED METHOD for PAGINATION ****
     @Query("SELECT * FROM log_entries WHERE event_type_id = :eventTypeId ORDER BY timestamp DESC LIMIT :limit OFFSET :offset")
     List<LogEntry> getRecentLogEntries(long eventTypeId, int limit, int offset);
 
+    // Keyset (seek) pagination: pages are addressed by the (timestamp, id) of the boundary row instead
+    // of an OFFSET, so every page is a bounded range scan on index_log_entries_event_type_id_timestamp
+    // no matter how deep it is. id breaks ties between entries logged in the same millisecond.
+    @Query("SELECT * FROM log_entries WHERE event_type_id = :eventTypeId ORDER BY timestamp DESC, id DESC LIMIT :limit")
+    List<LogEntry> getFirstLogEntriesPage(long eventTypeId, int limit);
+
+    // Entries older than the (afterTimestamp, afterId) key, newest first. The "timestamp <=" term gives
+    // SQLite an index bound; the OR only filters rows that share the boundary timestamp.
+    @Query("SELECT * FROM log_entries WHERE event_type_id = :eventTypeId " +
+            "AND timestamp <= :afterTimestamp AND (timestamp < :afterTimestamp OR id < :afterId) " +
+            "ORDER BY timestamp DESC, id DESC LIMIT :limit")
+    List<LogEntry> getLogEntriesPageAfter(long eventTypeId, long afterTimestamp, int afterId, int limit);
+
+    // Entries newer than the (beforeTimestamp, beforeId) key, returned oldest first (closest to the key).
+    // Callers reverse the list to display it newest first.
+    @Query("SELECT * FROM log_entries WHERE event_type_id = :eventTypeId " +
+            "AND timestamp >= :beforeTimestamp AND (timestamp > :beforeTimestamp OR id > :beforeId) " +
+            "ORDER BY timestamp ASC, id ASC LIMIT :limit")
+    List<LogEntry> getLogEntriesPageBefore(long eventTypeId, long beforeTimestamp, int beforeId, int limit);
+
     // **** NEW METHOD for PAGINATION ****
     @Query("SELECT COUNT(*) FROM log_entries WHERE event_type_id = :eventTypeId")
     long getCountLogEntries(long eventTypeId);
 
-    @Query("SELECT strftime('%H', datetime(timestamp/1000, 'unixepoch', 'localtime')) as hour, COUNT(*) as count FROM log_entries WHERE event_type_id = :eventTypeId GROUP BY hour ORDER BY hour ASC")
+    // Same as getCountLogEntries, summed from the type's day rollups (one row per day with entries)
+    // instead of counting its index entries
+    @Query("SELECT COALESCE(SUM(count), 0) FROM event_rollups WHERE event_type_id = :eventTypeId " +
+            "AND bucket_kind = " + EventRollup.KIND_DAY)
+    long getCountFromRollups(long eventTypeId);
+
+    // The chart aggregates read the trigger-maintained event_rollups table (see EventRollup) rather than
+    // grouping every log entry of the type on each refresh.
+    @Query("SELECT bucket AS hour, count FROM event_rollups WHERE event_type_id = :eventTypeId " +
+            "AND bucket_kind = " + EventRollup.KIND_HOUR + " ORDER BY bucket ASC")
     List<EventCountByHour> getEventCountByHour(long eventTypeId);
 
-    @Query("SELECT strftime('%d', datetime(timestamp/1000, 'unixepoch', 'localtime')) as day, COUNT(*) as count FROM log_entries WHERE event_type_id = :eventTypeId AND strftime('%Y-%m', datetime(timestamp/1000, 'unixepoch', 'localtime')) = strftime('%Y-%m', 'now', 'localtime') GROUP BY day ORDER BY day ASC")
+    @Query("SELECT bucket % 100 AS day, count FROM event_rollups WHERE event_type_id = :eventTypeId " +
+            "AND bucket_kind = " + EventRollup.KIND_DAY + " " +
+            "AND bucket >= CAST(strftime('%Y%m01', 'now', 'localtime') AS INTEGER) " +
+            "AND bucket < CAST(strftime('%Y%m01', 'now', 'localtime', 'start of month', '+1 month') AS INTEGER) " +
+            "ORDER BY bucket ASC")
     List<EventCountByDay> getEventCountByDay(long eventTypeId);
 
-    @Query("SELECT strftime('%m', datetime(timestamp/1000, 'unixepoch', 'localtime')) as month, COUNT(*) as count FROM log_entries WHERE event_type_id = :eventTypeId AND datetime(timestamp/1000, 'unixepoch', 'localtime') >= datetime('now', 'start of month', '-11 months', 'localtime') GROUP BY month ORDER BY month ASC")
+    @Query("SELECT bucket % 100 AS month, count FROM event_rollups WHERE event_type_id = :eventTypeId " +
+            "AND bucket_kind = " + EventRollup.KIND_MONTH + " " +
+            "AND bucket >= CAST(strftime('%Y%m', 'now', 'localtime', 'start of month', '-11 months') AS INTEGER) " +
+            "ORDER BY bucket ASC")
     List<EventCountByMonth> getEventCountByMonthLast12(long eventTypeId);
 
+    // Re-bucketing support: walks the table in id order in bounded chunks
+    @Query("SELECT id, timestamp FROM log_entries WHERE id > :afterId ORDER BY id ASC LIMIT :limit")
+    List<EntryTimestamp> getEntryTimestampsAfterId(int afterId, int limit);
+
+    @Query("UPDATE log_entries SET local_hour = :localHour, local_day_key = :localDayKey, local_month_key = :localMonthKey " +
+            "WHERE id = :id AND (local_hour IS NOT :localHour OR local_day_key IS NOT :localDayKey OR local_month_key IS NOT :localMonthKey)")
+    int updateLocalBuckets(int id, int localHour, int localDayKey, int localMonthKey);
+
+    // Full-text search (LogEntrySearch). The inner query walks the matches newest first (docid is the
+    // entry id) and stops after RESULT_WINDOW of them pass the filters; only those are ranked by the
+    // number of term hits (offsets() lists four numbers per hit) and paged. eventTypeId < 0 means any type.
+    // Raw queries because log_entries_fts is not part of Room's schema (AppDatabase.createSearchIndex).
+    String SEARCH_WINDOW_SQL = "SELECT log_entries.*, length(offsets(log_entries_fts)) AS hits FROM log_entries_fts " +
+            "JOIN log_entries ON log_entries.id = log_entries_fts.docid " +
+            "WHERE log_entries_fts MATCH ? " +
+            "AND (? < 0 OR log_entries.event_type_id = ?) " +
+            "AND log_entries.timestamp BETWEEN ? AND ? " +
+            "ORDER BY log_entries_fts.docid DESC LIMIT " + LogEntrySearch.RESULT_WINDOW;
+
+    default List<LogEntry> search(String matchQuery, long eventTypeId, long from, long to, int limit, int offset) {
+        return searchRaw(new SimpleSQLiteQuery(
+                "SELECT id, timestamp, notes, notes_hash, event_type_id, local_hour, local_day_key, local_month_key " +
+                "FROM (" + SEARCH_WINDOW_SQL + ") ORDER BY hits DESC, timestamp DESC, id DESC LIMIT ? OFFSET ?",
+                new Object[]{matchQuery, eventTypeId, eventTypeId, from, to, limit, offset}));
+    }
+
+    // Number of matches in the window, at most RESULT_WINDOW
+    default int countSearchMatches(String matchQuery, long eventTypeId, long from, long to) {
+        return countRaw(new SimpleSQLiteQuery("SELECT COUNT(*) FROM (" + SEARCH_WINDOW_SQL + ")",
+                new Object[]{matchQuery, eventTypeId, eventTypeId, from, to}));
+    }
+
+    @RawQuery
+    List<LogEntry> searchRaw(SupportSQLiteQuery query);
+
+    @RawQuery
+    int countRaw(SupportSQLiteQuery query);
+
+    // The type's interval histogram, in gap order (a few hundred rows at most)
+    @Query("SELECT * FROM interval_buckets WHERE event_type_id = :eventTypeId ORDER BY bucket ASC")
+    List<IntervalBucket> getIntervalBuckets(long eventTypeId);
+
+    // Timeline (TimelineLoader). Zoomed out it reads day rollups, one row per day with entries;
+    // zoomed in it counts the range's entries per bucket, seeking the (type, timestamp) index.
+    @Query("SELECT bucket AS dayKey, count FROM event_rollups WHERE event_type_id = :eventTypeId " +
+            "AND bucket_kind = " + EventRollup.KIND_DAY + " AND bucket BETWEEN :fromDayKey AND :toDayKey " +
+            "ORDER BY bucket ASC")
+    List<DayCount> getDayCountsInRange(long eventTypeId, int fromDayKey, int toDayKey);
+
+    @Query("SELECT timestamp / :bucketMillis AS bucket, COUNT(*) AS count FROM log_entries " +
+            "WHERE event_type_id = :eventTypeId AND timestamp >= :from AND timestamp < :to " +
+            "GROUP BY timestamp / :bucketMillis ORDER BY bucket ASC")
+    List<BucketCount> getCountsPerBucket(long eventTypeId, long from, long to, long bucketMillis);
+
+    @Query("SELECT MIN(bucket) FROM event_rollups WHERE event_type_id = :eventTypeId " +
+            "AND bucket_kind = " + EventRollup.KIND_DAY)
+    Integer getFirstDayKey(long eventTypeId);
+
+    // Archiving (LogArchive): the type's entries are walked month by month with index seeks
+    @Query("SELECT MIN(timestamp) FROM log_entries WHERE event_type_id = :eventTypeId AND timestamp >= :from")
+    Long getOldestTimestampFrom(long eventTypeId, long from);
+
+    @Query("SELECT * FROM log_entries WHERE event_type_id = :eventTypeId AND timestamp >= :from AND timestamp < :to " +
+            "ORDER BY timestamp ASC, id ASC")
+    List<LogEntry> getLogEntriesInRange(long eventTypeId, long from, long to);
+
+    // Oldest first, read from the (type, timestamp) index; the caller closes the cursor
     @Query("SELECT timestamp FROM log_entries WHERE event_type_id = :eventTypeId ORDER BY timestamp ASC")
-    List<Long> getTimestampsForEventType(long eventTypeId);
+    Cursor getTimestampsCursor(long eventTypeId);
+
+    @Query("DELETE FROM interval_buckets WHERE event_type_id = :eventTypeId")
+    void deleteIntervalBuckets(long eventTypeId);
+
+    @Insert
+    void insertIntervalBuckets(List<IntervalBucket> buckets);
 
     class EventCountByHour {
-        public String hour;
+        public int hour;
         public int count;
     }
 
     class EventCountByDay {
-        public String day;
+        public int day;
         public int count;
     }
 
     class EventCountByMonth {
-        public String month;
+        public int month;
+        public int count;
+    }
+
+    class DayCount {
+        public int dayKey; // yyyyMMdd, local time
         public int count;
     }
+
+    class BucketCount {
+        public long bucket; // timestamp / bucketMillis
+        public int count;
+    }
+
+    class EntryTimestamp {
+        public int id;
+        public long timestamp;
+    }
 }
@@ -0,0 +1,155 @@
+package com.example.librelog;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+// Pages of one event type's entries, newest first, for a list that loads as it is scrolled.
+// Pages are fetched with the keyset queries of LogEntryDao, so each one costs an index seek no
+// matter how deep the user has scrolled; LogArchive continues them into archived entries. A page
+// is requested PREFETCH_DISTANCE items before the user reaches either end of what is loaded. At
+// most MAX_PAGES pages are kept: loading past that drops the page at the far end, and scrolling
+// back loads it again.
+// Loads run on AppDatabase.databaseReadExecutor; every other method and all Callback calls happen
+// on the main thread.
+public class LogEntryPager {
+
+    private static final String TAG = "LogEntryPager";
+
+    public static final int PAGE_SIZE = 50;
+    static final int PREFETCH_DISTANCE = 20;
+    static final int MAX_PAGES = 5;
+
+    // The receiver of the loaded window, normally the list's adapter
+    public interface Callback {
+        void onPageAppended(List<LogEntryRow> page); // Older entries, after the loaded ones
+        void onPagePrepended(List<LogEntryRow> page); // Newer entries, before the loaded ones
+        void onItemsDropped(boolean fromStart, int count);
+    }
+
+    private final LogArchive logArchive;
+    private final EventTypeNames eventTypeNames;
+    private final Callback callback;
+    private final Executor loadExecutor;
+    private final Executor mainExecutor;
+
+    private final ArrayDeque<List<LogEntryRow>> pages = new ArrayDeque<>(); // Newest page first
+    private long eventTypeId = -1L;
+    private int itemCount;
+    private boolean loading;
+    private boolean reachedOldest; // No entries older than the last page
+    private boolean reachedNewest; // No entries newer than the first page
+    private int generation; // Bumped by reset() so loads for an older list are dropped
+
+    public LogEntryPager(LogArchive logArchive, EventTypeNames eventTypeNames, Callback callback) {
+        this(logArchive, eventTypeNames, callback, AppDatabase.databaseReadExecutor,
+                new Handler(Looper.getMainLooper())::post);
+    }
+
+    // Tests pass executors that run loads and their delivery right away
+    LogEntryPager(LogArchive logArchive, EventTypeNames eventTypeNames, Callback callback,
+                  Executor loadExecutor, Executor mainExecutor) {
+        this.logArchive = logArchive;
+        this.eventTypeNames = eventTypeNames;
+        this.callback = callback;
+        this.loadExecutor = loadExecutor;
+        this.mainExecutor = mainExecutor;
+    }
+
+    // Starts over at the newest page, already loaded by the caller. The callback's list is expected
+    // to have been replaced with firstPage.
+    public void reset(long eventTypeId, List<LogEntryRow> firstPage) {
+        this.eventTypeId = eventTypeId;
+        generation++;
+        pages.clear();
+        itemCount = firstPage.size();
+        if (!firstPage.isEmpty()) pages.add(firstPage);
+        loading = false;
+        reachedNewest = true;
+        reachedOldest = firstPage.size() < PAGE_SIZE;
+    }
+
+    // Entries were added since the window was loaded. The list keeps its place; newer entries are
+    // loaded when the user scrolls back to the top.
+    public void onNewerEntriesMayExist() {
+        reachedNewest = false;
+    }
+
+    public int getItemCount() {
+        return itemCount;
+    }
+
+    // Called as the list scrolls, with the adapter positions on screen
+    public void onVisibleRange(int firstVisible, int lastVisible) {
+        if (loading || pages.isEmpty()) return;
+        if (!reachedOldest && lastVisible >= itemCount - PREFETCH_DISTANCE) {
+            load(true);
+        } else if (!reachedNewest && firstVisible < PREFETCH_DISTANCE) {
+            load(false);
+        }
+    }
+
+    private void load(boolean older) {
+        loading = true;
+        final int loadGeneration = generation;
+        final long typeId = eventTypeId;
+        final LogEntryRow boundary = older ? pages.getLast().get(pages.getLast().size() - 1) : pages.getFirst().get(0);
+        loadExecutor.execute(() -> {
+            List<LogEntryRow> page;
+            try {
+                List<LogEntry> entries;
+                if (older) {
+                    entries = logArchive.getLogEntriesPageAfter(typeId, boundary.timestamp, boundary.id, PAGE_SIZE);
+                } else {
+                    entries = logArchive.getLogEntriesPageBefore(typeId, boundary.timestamp, boundary.id, PAGE_SIZE);
+                    Collections.reverse(entries); // Query returns oldest first; display newest first
+                }
+                page = LogEntryRow.fromEntries(entries, eventTypeNames.get()); // Formatted here, off the main thread
+            } catch (RuntimeException e) {
+                Log.e(TAG, "Could not load a page of entries", e);
+                page = null;
+            }
+            final List<LogEntryRow> loaded = page;
+            mainExecutor.execute(() -> {
+                if (loadGeneration != generation) {
+                    return; // reset() was called meanwhile
+                }
+                loading = false;
+                if (loaded != null) onPageLoaded(older, loaded);
+            });
+        });
+    }
+
+    private void onPageLoaded(boolean older, List<LogEntryRow> page) {
+        if (older) {
+            reachedOldest = page.size() < PAGE_SIZE;
+            if (page.isEmpty()) return;
+            pages.addLast(page);
+            itemCount += page.size();
+            callback.onPageAppended(page);
+            if (pages.size() > MAX_PAGES) {
+                List<LogEntryRow> dropped = pages.removeFirst();
+                itemCount -= dropped.size();
+                reachedNewest = false;
+                callback.onItemsDropped(true, dropped.size());
+            }
+        } else {
+            reachedNewest = page.size() < PAGE_SIZE;
+            if (page.isEmpty()) return;
+            pages.addFirst(page);
+            itemCount += page.size();
+            callback.onPagePrepended(page);
+            if (pages.size() > MAX_PAGES) {
+                List<LogEntryRow> dropped = pages.removeLast();
+                itemCount -= dropped.size();
+                reachedOldest = false;
+                callback.onItemsDropped(false, dropped.size());
+            }
+        }
+    }
+}
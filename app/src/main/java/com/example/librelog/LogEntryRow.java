@@ -0,0 +1,60 @@
+package com.example.librelog;
+
+import android.view.View;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+// What one row of the recent-entries list shows, formatted ahead of time on a background thread so
+// binding a row only hands ready-made strings to its views: no Date, no formatting, no allocation.
+// Also keeps the entry's (timestamp, id) key, which LogEntryPager pages from.
+public final class LogEntryRow {
+
+    static final int MAX_NOTES_LENGTH = 200; // Longer notes are cut for the list
+
+    public final int id;
+    public final long timestamp;
+    public final String event;
+    public final String formattedTimestamp;
+    public final String notes; // Truncated; "" when the entry has none
+    public final int notesVisibility; // View.VISIBLE or View.GONE
+
+    private LogEntryRow(LogEntry entry, String event, SimpleDateFormat dateFormat) {
+        id = entry.getId();
+        timestamp = entry.getTimestamp();
+        this.event = event != null ? event : "";
+        formattedTimestamp = dateFormat.format(new Date(timestamp));
+        String fullNotes = entry.getNotes();
+        if (fullNotes == null || fullNotes.isEmpty()) {
+            notes = "";
+            notesVisibility = View.GONE;
+        } else {
+            notes = fullNotes.length() > MAX_NOTES_LENGTH ? fullNotes.substring(0, MAX_NOTES_LENGTH) + "…" : fullNotes;
+            notesVisibility = View.VISIBLE;
+        }
+    }
+
+    // Not for the main thread: this is where the formatting cost goes. Event names come from
+    // eventNames (EventTypeNames.get()) by event type id.
+    public static List<LogEntryRow> fromEntries(List<LogEntry> entries, Map<Integer, String> eventNames) {
+        // SimpleDateFormat is not thread-safe, so each call gets its own
+        SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.getDefault());
+        List<LogEntryRow> rows = new ArrayList<>(entries.size());
+        for (LogEntry entry : entries) {
+            rows.add(new LogEntryRow(entry, eventNames.get(entry.getEventTypeId()), dateFormat));
+        }
+        return rows;
+    }
+
+    // Same displayed content; used by LogEntryAdapter's diff
+    boolean hasSameContent(LogEntryRow other) {
+        return timestamp == other.timestamp
+                && event.equals(other.event)
+                && formattedTimestamp.equals(other.formattedTimestamp)
+                && notes.equals(other.notes);
+    }
+}
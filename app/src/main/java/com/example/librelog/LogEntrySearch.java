@@ -0,0 +1,121 @@
+package com.example.librelog;
+
+import java.text.Normalizer;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+// Search over log entry notes and event names (log_entries_fts). Matches are ranked by how often the
+// query terms occur in them, then by recency. Only the RESULT_WINDOW most recently added matches
+// that pass the filters are ranked, so a very broad prefix still stops after a bounded amount of work
+// instead of ranking most of the table. Archived entries (LogArchive) are not in the index: when the
+// live matches run out, the window is filled with archived matches, newest first, found by decoding
+// the archive blocks in range. Call off the main thread.
+public class LogEntrySearch {
+
+    public static final int PAGE_SIZE = 50;
+    public static final int RESULT_WINDOW = 2000;
+    public static final long ALL_EVENT_TYPES = -1L;
+
+    private final LogEntryDao logEntryDao;
+    private final LogArchive logArchive;
+    private final EventTypeNames eventTypeNames;
+
+    public LogEntrySearch(LogEntryDao logEntryDao, LogArchive logArchive, EventTypeNames eventTypeNames) {
+        this.logEntryDao = logEntryDao;
+        this.logArchive = logArchive;
+        this.eventTypeNames = eventTypeNames;
+    }
+
+    // Page `page` (from 0) of the matches of text among entries of eventTypeId (or ALL_EVENT_TYPES)
+    // logged in [from, to]; empty when text has no searchable words or the window is exhausted.
+    public List<LogEntryRow> search(String text, long eventTypeId, long from, long to, int page) {
+        String matchQuery = toMatchQuery(text);
+        int offset = page * PAGE_SIZE;
+        if (matchQuery == null || offset >= RESULT_WINDOW) {
+            return Collections.emptyList();
+        }
+        Map<Integer, String> names = eventTypeNames.get();
+        List<LogEntry> entries = logEntryDao.search(matchQuery, eventTypeId, from, to, PAGE_SIZE, offset);
+        if (entries.size() < PAGE_SIZE) {
+            // The live matches end on this page (or before it); archived ones follow
+            int liveCount = entries.isEmpty() && offset > 0
+                    ? logEntryDao.countSearchMatches(matchQuery, eventTypeId, from, to) : offset + entries.size();
+            int archivedOffset = offset + entries.size() - liveCount;
+            int limit = Math.min(RESULT_WINDOW - liveCount, archivedOffset + PAGE_SIZE - entries.size());
+            if (limit > archivedOffset) {
+                String[] prefixes = matchQuery.replace("*", "").split(" ");
+                for (int i = 0; i < prefixes.length; i++) prefixes[i] = fold(prefixes[i]);
+                List<LogEntry> archived = logArchive.search(eventTypeId, from, to,
+                        entry -> matchesAll(prefixes, names.get(entry.getEventTypeId()), entry.getNotes()), limit);
+                if (archived.size() > archivedOffset) {
+                    entries.addAll(archived.subList(archivedOffset, archived.size()));
+                }
+            }
+        }
+        return LogEntryRow.fromEntries(entries, names);
+    }
+
+    // Whether every prefix starts a word of the event name or the notes, like the MATCH query
+    static boolean matchesAll(String[] prefixes, String eventName, String notes) {
+        boolean[] found = new boolean[prefixes.length];
+        int missing = prefixes.length;
+        for (String text : new String[]{eventName, notes}) {
+            if (text == null) continue;
+            String folded = fold(text);
+            int end = 0;
+            while (end < folded.length()) {
+                int start = end;
+                while (end < folded.length() && Character.isLetterOrDigit(folded.charAt(end))) end++;
+                for (int i = 0; i < prefixes.length; i++) {
+                    if (!found[i] && end - start >= prefixes[i].length()
+                            && folded.regionMatches(start, prefixes[i], 0, prefixes[i].length())) {
+                        found[i] = true;
+                        if (--missing == 0) return true;
+                    }
+                }
+                if (end == start) end++; // Not a word character
+            }
+        }
+        return false;
+    }
+
+    // Case and diacritics folded away, as unicode61 does for the index
+    static String fold(String text) {
+        String decomposed = Normalizer.normalize(text, Normalizer.Form.NFD);
+        StringBuilder folded = new StringBuilder(decomposed.length());
+        for (int i = 0; i < decomposed.length(); i++) {
+            char c = decomposed.charAt(i);
+            if (Character.getType(c) != Character.NON_SPACING_MARK) folded.append(Character.toLowerCase(c));
+        }
+        return folded.toString();
+    }
+
+    // Turns what the user typed into an FTS query: every word must match, and the words are prefixes
+    // so results show up while a word is still being typed. FTS operators and punctuation are
+    // dropped rather than interpreted. Returns null when nothing searchable is left.
+    public static String toMatchQuery(String text) {
+        if (text == null) return null;
+        StringBuilder query = new StringBuilder();
+        StringBuilder word = new StringBuilder();
+        for (int i = 0; i <= text.length(); i++) {
+            char c = i < text.length() ? text.charAt(i) : ' ';
+            if (Character.isLetterOrDigit(c)) {
+                word.append(c);
+                continue;
+            }
+            if (word.length() > 0) {
+                String term = word.toString();
+                word.setLength(0);
+                // Bare operator words would otherwise be read as operators
+                if (term.equals("AND") || term.equals("OR") || term.equals("NOT") || term.equals("NEAR")) {
+                    term = term.toLowerCase(Locale.ROOT);
+                }
+                if (query.length() > 0) query.append(' ');
+                query.append(term).append('*');
+            }
+        }
+        return query.length() == 0 ? null : query.toString();
+    }
+}
@@ -0,0 +1,119 @@
+package com.example.librelog;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+// Write-behind buffer for log entry inserts. Entries enqueued within WINDOW_MS of the first waiting
+// one, up to MAX_BATCH_SIZE, are inserted together in one transaction on
+// AppDatabase.databaseWriteExecutor, so a burst of events costs one commit (one fsync) instead of
+// one per entry.
+// Durability: an entry is on disk once its listener has been called, not before. Entries still
+// waiting in the buffer are lost if the process dies, which is why MainActivity flushes it when the
+// app goes to the background; callers that must know an entry is stored call flush().
+public class LogEntryWriteBuffer {
+
+    private static final String TAG = "LogEntryWriteBuffer";
+
+    static final long WINDOW_MS = 50;
+    static final int MAX_BATCH_SIZE = 128;
+
+    public interface CommitListener {
+        // Called on the writer thread once the entry's batch is committed. rowId is -1 if the entry
+        // was not stored (an insert error, which is logged).
+        void onCommitted(long rowId);
+    }
+
+    private static volatile LogEntryWriteBuffer INSTANCE;
+
+    public static LogEntryWriteBuffer getInstance(Context context) {
+        if (INSTANCE == null) {
+            synchronized (LogEntryWriteBuffer.class) {
+                if (INSTANCE == null) {
+                    INSTANCE = new LogEntryWriteBuffer(AppDatabase.getDatabase(context));
+                }
+            }
+        }
+        return INSTANCE;
+    }
+
+    private final AppDatabase db;
+    private final Object lock = new Object();
+    private List<LogEntry> pendingEntries = new ArrayList<>();
+    private List<CommitListener> pendingListeners = new ArrayList<>();
+    private ScheduledFuture<?> scheduledCommit;
+
+    // Package-private for tests with their own database
+    LogEntryWriteBuffer(AppDatabase db) {
+        this.db = db;
+    }
+
+    public void enqueue(LogEntry entry, @Nullable CommitListener listener) {
+        synchronized (lock) {
+            pendingEntries.add(entry);
+            pendingListeners.add(listener);
+            if (pendingEntries.size() >= MAX_BATCH_SIZE) {
+                AppDatabase.databaseWriteExecutor.execute(this::commitPending);
+            } else if (scheduledCommit == null) {
+                scheduledCommit = AppDatabase.databaseWriteExecutor.schedule(this::commitPending, WINDOW_MS, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    // Commits everything enqueued so far and waits for it. Not for the main thread.
+    public void flush() {
+        AppDatabase.runOnWriteExecutor(this::commitPending);
+    }
+
+    // Starts committing everything enqueued so far without waiting for it
+    public void flushAsync() {
+        AppDatabase.databaseWriteExecutor.execute(this::commitPending);
+    }
+
+    // Runs on the writer thread
+    private void commitPending() {
+        List<LogEntry> entries;
+        List<CommitListener> listeners;
+        synchronized (lock) {
+            if (scheduledCommit != null) {
+                scheduledCommit.cancel(false);
+                scheduledCommit = null;
+            }
+            if (pendingEntries.isEmpty()) {
+                return;
+            }
+            entries = pendingEntries;
+            listeners = pendingListeners;
+            pendingEntries = new ArrayList<>();
+            pendingListeners = new ArrayList<>();
+        }
+
+        long[] rowIds;
+        try {
+            rowIds = db.runInTransaction(() -> db.logEntryDao().insertAll(entries));
+        } catch (RuntimeException e) {
+            // One bad entry (e.g. its event type was deleted meanwhile) must not lose the whole batch
+            Log.w(TAG, "Batch of " + entries.size() + " entries failed, inserting them one by one", e);
+            rowIds = new long[entries.size()];
+            for (int i = 0; i < entries.size(); i++) {
+                try {
+                    rowIds[i] = db.logEntryDao().insertAll(Collections.singletonList(entries.get(i)))[0];
+                } catch (RuntimeException entryError) {
+                    Log.e(TAG, "Could not insert log entry", entryError);
+                    rowIds[i] = -1;
+                }
+            }
+        }
+
+        for (int i = 0; i < listeners.size(); i++) {
+            if (listeners.get(i) != null) listeners.get(i).onCommitted(rowIds[i]);
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.librelog;
+
+// Largest-Triangle-Three-Buckets downsampling (Steinarsson, 2013): picks threshold points of a
+// series that keep its visual shape, including single spikes that averaging would flatten.
+// The first and last points are always kept. The others are split into threshold - 2 buckets, and
+// each bucket keeps the point that forms the largest triangle with the point kept before it and the
+// average of the next bucket.
+public final class Lttb {
+
+    private Lttb() {
+    }
+
+    // Downsamples the points (xs[i], ys[i]), i < length, sorted by x, into outX/outY (at least
+    // threshold long) and returns how many were written. Series no longer than threshold are copied.
+    public static int downsample(long[] xs, float[] ys, int length, int threshold, long[] outX, float[] outY) {
+        if (length <= threshold) {
+            System.arraycopy(xs, 0, outX, 0, length);
+            System.arraycopy(ys, 0, outY, 0, length);
+            return length;
+        }
+        if (threshold < 3) {
+            // Too few points for triangles: keep the ends
+            if (threshold <= 0) return 0;
+            outX[0] = xs[0];
+            outY[0] = ys[0];
+            if (threshold == 1) return 1;
+            outX[1] = xs[length - 1];
+            outY[1] = ys[length - 1];
+            return 2;
+        }
+
+        double bucketSize = (double) (length - 2) / (threshold - 2);
+        int kept = 0;
+        int previous = 0; // Index of the last kept point
+        outX[kept] = xs[0];
+        outY[kept++] = ys[0];
+
+        for (int bucket = 0; bucket < threshold - 2; bucket++) {
+            // Average of the next bucket (the last point for the final bucket)
+            int nextStart = (int) ((bucket + 1) * bucketSize) + 1;
+            int nextEnd = Math.min((int) ((bucket + 2) * bucketSize) + 1, length);
+            double averageX = 0;
+            double averageY = 0;
+            if (nextStart >= nextEnd) {
+                averageX = xs[length - 1];
+                averageY = ys[length - 1];
+            } else {
+                for (int i = nextStart; i < nextEnd; i++) {
+                    averageX += xs[i];
+                    averageY += ys[i];
+                }
+                averageX /= nextEnd - nextStart;
+                averageY /= nextEnd - nextStart;
+            }
+
+            // The point of this bucket with the largest triangle (twice its area; only compared).
+            // x is taken relative to the previous point so epoch millis keep their precision.
+            int start = (int) (bucket * bucketSize) + 1;
+            int end = (int) ((bucket + 1) * bucketSize) + 1;
+            double previousY = ys[previous];
+            double spanX = averageX - xs[previous];
+            double maxArea = -1;
+            int chosen = start;
+            for (int i = start; i < end; i++) {
+                double area = Math.abs(spanX * (ys[i] - previousY) - (xs[i] - xs[previous]) * (averageY - previousY));
+                if (area > maxArea) {
+                    maxArea = area;
+                    chosen = i;
+                }
+            }
+            outX[kept] = xs[chosen];
+            outY[kept++] = ys[chosen];
+            previous = chosen;
+        }
+
+        outX[kept] = xs[length - 1];
+        outY[kept++] = ys[length - 1];
+        return kept;
+    }
+}
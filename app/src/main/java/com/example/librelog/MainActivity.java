@@ -12,6 +12,7 @@ import com.example.librelog.ui.ImportFragment;
 import com.example.librelog.ui.SettingsFragment;
 import com.example.librelog.ui.HomeFragment;
 import com.example.librelog.ui.OutputFragment;
+import com.example.librelog.ui.SearchFragment;
 import com.google.android.material.bottomnavigation.BottomNavigationView;
 
 public class MainActivity extends AppCompatActivity {
@@ -23,6 +24,11 @@ public class MainActivity extends AppCompatActivity {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_main);
 
+        // Local-time buckets may be stale if the time zone changed while the app was not running
+        AppDatabase.backgroundJobExecutor.execute(() -> LocalTimeBuckets.rebucketIfNeeded(getApplicationContext()));
+        // Then entries that have aged past the archive setting move to the archive
+        AppDatabase.backgroundJobExecutor.execute(() -> LogArchive.archiveIfNeeded(getApplicationContext()));
+
         bottomNavigationView = findViewById(R.id.bottom_navigation);
 
         bottomNavigationView.setOnItemSelectedListener(item -> {
@@ -31,6 +37,8 @@ public class MainActivity extends AppCompatActivity {
 
             if (itemId == R.id.navigation_home) {
                 selectedFragment = new HomeFragment();
+            } else if (itemId == R.id.navigation_search) {
+                selectedFragment = new SearchFragment();
             } else if (itemId == R.id.navigation_import) {
                 selectedFragment = new ImportFragment();
             } else if (itemId == R.id.navigation_output) {
@@ -57,6 +65,13 @@ public class MainActivity extends AppCompatActivity {
         }
     }
 
+    @Override
+    protected void onStop() {
+        super.onStop();
+        // Buffered log entries are only in memory; write them out before the process can be killed
+        LogEntryWriteBuffer.getInstance(this).flushAsync();
+    }
+
     private void loadFragment(Fragment fragment) {
         if (fragment != null) {
             FragmentManager fragmentManager = getSupportFragmentManager();
@@ -0,0 +1,151 @@
+package com.example.librelog;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.room.InvalidationTracker;
+
+import java.util.Set;
+
+// A query that re-runs on AppDatabase.databaseReadExecutor whenever one of its tables changes
+// (Room's InvalidationTracker) and hands the result to a listener on the main thread.
+// Invalidations are coalesced: after a change the query waits COALESCE_MS for more, runs at most
+// once per window while changes keep coming (an import commits chunk after chunk), and never runs
+// twice at the same time. Only results of the latest run for the current parameters are delivered.
+// All methods must be called on the main thread.
+public class ObservableQuery<T> {
+
+    private static final String TAG = "ObservableQuery";
+    private static final long COALESCE_MS = 150;
+
+    public interface Query<T> {
+        T run(); // On a database read thread
+    }
+
+    public interface Listener<T> {
+        void onResult(T result); // On the main thread
+    }
+
+    public interface CachedResult<T> {
+        @Nullable
+        T get(); // On the main thread; a result still valid for the current parameters, if known
+    }
+
+    private final AppDatabase db;
+    private final String name;
+    private final Query<T> query;
+    private final Listener<T> listener;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final InvalidationTracker.Observer observer;
+    private final Runnable runQuery = this::runQuery;
+    private CachedResult<T> cachedResult;
+
+    private boolean started;
+    private boolean scheduled; // runQuery is posted
+    private boolean running; // A run is on the read executor
+    private boolean rerunWhenDone; // Tables changed or refresh() was called during a run
+    private int generation; // Bumped by refresh() and stop() so older runs are not delivered
+
+    public ObservableQuery(AppDatabase db, String name, Query<T> query, Listener<T> listener, String... tables) {
+        this.db = db;
+        this.name = name;
+        this.query = query;
+        this.listener = listener;
+        this.observer = new InvalidationTracker.Observer(tables) {
+            @Override
+            public void onInvalidated(@NonNull Set<String> changedTables) {
+                mainHandler.post(ObservableQuery.this::onTablesChanged);
+            }
+        };
+    }
+
+    // Lets refresh() deliver a known result in the same frame instead of running the query
+    public void setCachedResult(CachedResult<T> cachedResult) {
+        this.cachedResult = cachedResult;
+    }
+
+    // Starts observing the tables and runs the query right away
+    public void start() {
+        if (started) return;
+        started = true;
+        db.getInvalidationTracker().addObserver(observer);
+        refresh();
+    }
+
+    public void stop() {
+        if (!started) return;
+        started = false;
+        db.getInvalidationTracker().removeObserver(observer);
+        mainHandler.removeCallbacks(runQuery);
+        scheduled = false;
+        generation++;
+    }
+
+    // Runs the query again now, dropping any result still in flight. For parameter changes the
+    // tables know nothing about, such as a different selected event type.
+    public void refresh() {
+        if (!started) return;
+        generation++;
+        T cached = cachedResult != null ? cachedResult.get() : null;
+        if (cached != null) {
+            // A run in flight is for the old parameters and is dropped; table changes still re-run
+            listener.onResult(cached);
+            return;
+        }
+        if (running) {
+            rerunWhenDone = true;
+            return;
+        }
+        mainHandler.removeCallbacks(runQuery);
+        scheduled = false;
+        runQuery();
+    }
+
+    private void onTablesChanged() {
+        if (!started) return;
+        if (running) {
+            rerunWhenDone = true;
+        } else if (!scheduled) {
+            scheduled = true;
+            mainHandler.postDelayed(runQuery, COALESCE_MS);
+        }
+    }
+
+    private void runQuery() {
+        scheduled = false;
+        if (!started) return;
+        running = true;
+        rerunWhenDone = false;
+        final int runGeneration = generation;
+        AppDatabase.databaseReadExecutor.execute(() -> {
+            T result = null;
+            boolean succeeded = false;
+            try {
+                result = query.run();
+                succeeded = true;
+            } catch (RuntimeException e) {
+                Log.e(TAG, "Query " + name + " failed", e);
+            }
+
+            final T delivered = result;
+            final boolean deliver = succeeded;
+            mainHandler.post(() -> {
+                running = false;
+                if (deliver && started && runGeneration == generation) {
+                    listener.onResult(delivered);
+                }
+                if (rerunWhenDone && started) {
+                    rerunWhenDone = false;
+                    if (runGeneration != generation) {
+                        runQuery(); // refresh() was called: the user is waiting for this one
+                    } else {
+                        onTablesChanged();
+                    }
+                }
+            });
+        });
+    }
+}
@@ -0,0 +1,25 @@
+package com.example.librelog;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+
+// Re-buckets stored entries into the new local time when the device time zone changes.
+// MainActivity also checks on launch, which resumes the job if the process died mid-way.
+public class TimeZoneChangedReceiver extends BroadcastReceiver {
+    @Override
+    public void onReceive(Context context, Intent intent) {
+        if (!Intent.ACTION_TIMEZONE_CHANGED.equals(intent.getAction())) {
+            return;
+        }
+        final PendingResult pendingResult = goAsync();
+        final Context appContext = context.getApplicationContext();
+        AppDatabase.backgroundJobExecutor.execute(() -> {
+            try {
+                LocalTimeBuckets.rebucketIfNeeded(appContext);
+            } finally {
+                pendingResult.finish();
+            }
+        });
+    }
+}
@@ -0,0 +1,163 @@
+package com.example.librelog;
+
+import java.util.Calendar;
+import java.util.List;
+
+// Loads the counts of one event type over a time range at no more than the resolution a chart of
+// a given width can show, for the dashboard timeline. Spans of at least DAY_BUCKETS_MIN_SPAN read
+// the day rollups (one row per day with entries, so ten years cost a few thousand rows whatever the
+// number of entries); shorter spans count the range's entries per bucket in SQLite, with the bucket
+// width rounded up to a readable step so only about `points` rows come back. Empty buckets are
+// filled with zeros and the series is reduced to `points` with LTTB, which keeps single spikes.
+// Archived entries are in the day rollups; zoomed in, LogArchive adds them to the buckets.
+// Not thread-safe (one Calendar is reused); call off the main thread.
+public class TimelineLoader {
+
+    public static final long MINUTE_MILLIS = 60_000L;
+    public static final long HOUR_MILLIS = 60 * MINUTE_MILLIS;
+    public static final long DAY_MILLIS = 24 * HOUR_MILLIS;
+    public static final long MIN_SPAN_MILLIS = HOUR_MILLIS;
+    static final long DAY_BUCKETS_MIN_SPAN = 60 * DAY_MILLIS;
+
+    // Sub-day bucket widths; wider spans use days
+    private static final long[] BUCKET_STEPS = {
+            MINUTE_MILLIS, 5 * MINUTE_MILLIS, 15 * MINUTE_MILLIS, 30 * MINUTE_MILLIS,
+            HOUR_MILLIS, 3 * HOUR_MILLIS, 6 * HOUR_MILLIS, 12 * HOUR_MILLIS, DAY_MILLIS};
+
+    public static class Timeline {
+        public final long eventTypeId;
+        public final long from;
+        public final long to;
+        public final long historyStart; // Start of the type's first day with entries; -1 if it has none
+        public final long bucketMillis; // DAY_MILLIS for day rollups
+        public final long[] x; // Bucket starts, ascending
+        public final float[] y; // Entries per bucket
+        public final int size;
+        public final float maxY;
+
+        Timeline(long eventTypeId, long from, long to, long historyStart, long bucketMillis, long[] x, float[] y, int size) {
+            this.eventTypeId = eventTypeId;
+            this.from = from;
+            this.to = to;
+            this.historyStart = historyStart;
+            this.bucketMillis = bucketMillis;
+            this.x = x;
+            this.y = y;
+            this.size = size;
+            float max = 0;
+            for (int i = 0; i < size; i++) max = Math.max(max, y[i]);
+            this.maxY = max;
+        }
+    }
+
+    private final LogEntryDao logEntryDao;
+    private final LogArchive logArchive;
+    private final Calendar calendar = Calendar.getInstance();
+
+    public TimelineLoader(LogEntryDao logEntryDao, LogArchive logArchive) {
+        this.logEntryDao = logEntryDao;
+        this.logArchive = logArchive;
+    }
+
+    // The whole history of the type, up to now
+    public Timeline loadAll(long eventTypeId, int points) {
+        long historyStart = historyStart(eventTypeId);
+        long now = System.currentTimeMillis();
+        long from = historyStart < 0 ? now - MIN_SPAN_MILLIS : Math.min(historyStart, now - MIN_SPAN_MILLIS);
+        return load(eventTypeId, historyStart, from, now, points);
+    }
+
+    public Timeline load(long eventTypeId, long from, long to, int points) {
+        return load(eventTypeId, historyStart(eventTypeId), from, to, points);
+    }
+
+    private Timeline load(long eventTypeId, long historyStart, long from, long to, int points) {
+        points = Math.max(points, 3);
+        long span = Math.max(to - from, MIN_SPAN_MILLIS);
+        long bucketMillis = bucketMillis(span, points);
+        long[] xs;
+        float[] ys;
+        int length;
+        if (bucketMillis == DAY_MILLIS) {
+            // One point per local day from the day of `from` to the day of `to`
+            int fromKey = dayKey(from);
+            int toKey = dayKey(to);
+            List<LogEntryDao.DayCount> rows = logEntryDao.getDayCountsInRange(eventTypeId, fromKey, toKey);
+            startOfDay(from);
+            int days = (int) ((to - calendar.getTimeInMillis()) / DAY_MILLIS) + 2; // DST days may be 23 h
+            xs = new long[days];
+            ys = new float[days];
+            length = 0;
+            int row = 0;
+            while (length < days) {
+                int key = dayKey();
+                if (key > toKey) break;
+                xs[length] = calendar.getTimeInMillis();
+                while (row < rows.size() && rows.get(row).dayKey < key) row++;
+                ys[length++] = row < rows.size() && rows.get(row).dayKey == key ? rows.get(row).count : 0;
+                calendar.add(Calendar.DAY_OF_MONTH, 1);
+            }
+        } else {
+            // Buckets aligned to multiples of bucketMillis since the epoch
+            long firstBucket = Math.floorDiv(from, bucketMillis);
+            long lastBucket = Math.floorDiv(to - 1, bucketMillis);
+            List<LogEntryDao.BucketCount> rows = logEntryDao.getCountsPerBucket(eventTypeId,
+                    firstBucket * bucketMillis, (lastBucket + 1) * bucketMillis, bucketMillis);
+            length = (int) (lastBucket - firstBucket + 1);
+            xs = new long[length];
+            ys = new float[length];
+            for (int i = 0; i < length; i++) xs[i] = (firstBucket + i) * bucketMillis;
+            for (LogEntryDao.BucketCount row : rows) {
+                int index = (int) (row.bucket - firstBucket);
+                if (index >= 0 && index < length) ys[index] = row.count;
+            }
+            logArchive.addCountsPerBucket(eventTypeId, firstBucket * bucketMillis, (lastBucket + 1) * bucketMillis,
+                    bucketMillis, firstBucket, ys);
+        }
+
+        if (length <= points) {
+            return new Timeline(eventTypeId, from, to, historyStart, bucketMillis, xs, ys, length);
+        }
+        long[] outX = new long[points];
+        float[] outY = new float[points];
+        int size = Lttb.downsample(xs, ys, length, points, outX, outY);
+        return new Timeline(eventTypeId, from, to, historyStart, bucketMillis, outX, outY, size);
+    }
+
+    // The narrowest step that gives at most `points` buckets over the span
+    static long bucketMillis(long span, int points) {
+        if (span >= DAY_BUCKETS_MIN_SPAN) return DAY_MILLIS;
+        long needed = (span + points - 1) / points;
+        for (long step : BUCKET_STEPS) {
+            if (step >= needed) return step;
+        }
+        return DAY_MILLIS;
+    }
+
+    private long historyStart(long eventTypeId) {
+        Integer firstDayKey = logEntryDao.getFirstDayKey(eventTypeId);
+        if (firstDayKey == null) return -1;
+        calendar.clear();
+        calendar.set(firstDayKey / 10000, firstDayKey / 100 % 100 - 1, firstDayKey % 100);
+        return calendar.getTimeInMillis();
+    }
+
+    private void startOfDay(long millis) {
+        calendar.setTimeInMillis(millis);
+        calendar.set(Calendar.HOUR_OF_DAY, 0);
+        calendar.set(Calendar.MINUTE, 0);
+        calendar.set(Calendar.SECOND, 0);
+        calendar.set(Calendar.MILLISECOND, 0);
+    }
+
+    // Same keys as LocalTimeBuckets
+    private int dayKey(long millis) {
+        calendar.setTimeInMillis(millis);
+        return dayKey();
+    }
+
+    private int dayKey() {
+        return (calendar.get(Calendar.YEAR) * 100 + calendar.get(Calendar.MONTH) + 1) * 100
+                + calendar.get(Calendar.DAY_OF_MONTH);
+    }
+}
@@ -0,0 +1,259 @@
+package com.example.librelog.ui;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.os.SystemClock;
+import android.util.AttributeSet;
+import android.util.TypedValue;
+import android.view.MotionEvent;
+import android.view.View;
+import android.view.ViewTreeObserver;
+
+import androidx.annotation.Nullable;
+
+// A bar histogram of a few dozen fixed bins, drawn straight from an int[] of counts.
+// Everything a frame needs (bar labels, axis labels, grid steps, label spacing) is worked out when
+// the counts change, so onDraw only draws: no formatting and no allocation. Its one-time grow
+// animation starts the first time the view is on screen with data: a view inside the dashboard's
+// scroll view can be drawn while scrolled out of sight, so a frame only starts the animation when
+// part of the view is visible, and scrolling redraws the view until that happens.
+// Looks like the bar charts it replaces: cycling bar colours, counts above the bars (none for empty
+// bins), bin labels below, and integer grid lines on the left.
+public class HistogramView extends View {
+
+    // The palettes of the former chart library
+    public static final int[] MATERIAL_COLORS = {
+            Color.rgb(46, 204, 113), Color.rgb(241, 196, 15), Color.rgb(231, 76, 60), Color.rgb(52, 152, 219)};
+    public static final int[] PASTEL_COLORS = {
+            Color.rgb(64, 89, 128), Color.rgb(149, 165, 124), Color.rgb(217, 184, 162), Color.rgb(191, 134, 134), Color.rgb(179, 48, 80)};
+    public static final int[] COLORFUL_COLORS = {
+            Color.rgb(193, 37, 82), Color.rgb(255, 102, 0), Color.rgb(245, 199, 0), Color.rgb(106, 150, 31), Color.rgb(179, 100, 53)};
+
+    public interface BinLabeler {
+        String label(int bin); // Called when the counts change, not per frame
+    }
+
+    public interface OnBinClickListener {
+        void onBinClick(int bin, int count);
+    }
+
+    private static final long ANIMATION_MS = 1000;
+    private static final int MAX_GRID_LINES = 5;
+    private static final float BAR_WIDTH_FRACTION = 0.9f;
+
+    private final Paint barPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint valuePaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint axisLabelPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint gridPaint = new Paint();
+    private final Paint noDataPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final RectF barRect = new RectF();
+    private final Rect visibleRect = new Rect();
+    private final float density;
+
+    private int[] colors = MATERIAL_COLORS;
+    private BinLabeler binLabeler = bin -> String.valueOf(bin);
+    private OnBinClickListener onBinClickListener;
+    private String noDataText = "No data";
+
+    // Set by setCounts()
+    private int[] counts = new int[0];
+    private int binCount;
+    private int maxCount;
+    private String[] valueLabels = new String[0];
+    private String[] binLabels = new String[0];
+    private int gridStep = 1;
+    private int gridTop = 1; // Top of the value axis, a multiple of gridStep
+    private String[] gridLabels = new String[0];
+    private float widestBinLabel;
+    private float widestGridLabel;
+
+    private long animationStart = -1; // -1: not started; 0 after it ran
+    private boolean animated;
+
+    // Redraws the view once it scrolls into sight, so a pending animation starts there
+    private final ViewTreeObserver.OnScrollChangedListener scrollListener = () -> {
+        if (animationStart < 0 && maxCount > 0 && getLocalVisibleRect(visibleRect)) invalidate();
+    };
+
+    public HistogramView(Context context) {
+        this(context, null);
+    }
+
+    public HistogramView(Context context, @Nullable AttributeSet attrs) {
+        super(context, attrs);
+        density = getResources().getDisplayMetrics().density;
+        valuePaint.setColor(Color.BLACK);
+        valuePaint.setTextSize(sp(10));
+        valuePaint.setTextAlign(Paint.Align.CENTER);
+        axisLabelPaint.setColor(Color.DKGRAY);
+        axisLabelPaint.setTextSize(sp(10));
+        gridPaint.setColor(Color.LTGRAY);
+        gridPaint.setStrokeWidth(dp(1) / 2);
+        noDataPaint.setColor(Color.rgb(247, 189, 51)); // The former library's no-data colour
+        noDataPaint.setTextSize(sp(12));
+        noDataPaint.setTextAlign(Paint.Align.CENTER);
+    }
+
+    public void setColors(int[] colors) {
+        this.colors = colors;
+        invalidate();
+    }
+
+    public void setBinLabeler(BinLabeler binLabeler) {
+        this.binLabeler = binLabeler;
+    }
+
+    public void setNoDataText(String noDataText) {
+        this.noDataText = noDataText;
+        invalidate();
+    }
+
+    public void setOnBinClickListener(@Nullable OnBinClickListener listener) {
+        this.onBinClickListener = listener;
+        setClickable(listener != null);
+    }
+
+    // Shows counts[0..length); all zero shows the no-data text. The counts are copied.
+    public void setCounts(int[] newCounts, int length) {
+        if (counts.length < length) {
+            counts = new int[length];
+            valueLabels = new String[length];
+            binLabels = new String[length];
+        }
+        binCount = length;
+        maxCount = 0;
+        widestBinLabel = 0;
+        for (int i = 0; i < length; i++) {
+            counts[i] = newCounts[i];
+            maxCount = Math.max(maxCount, counts[i]);
+            valueLabels[i] = counts[i] == 0 ? null : String.valueOf(counts[i]);
+            binLabels[i] = binLabeler.label(i);
+            widestBinLabel = Math.max(widestBinLabel, axisLabelPaint.measureText(binLabels[i]));
+        }
+
+        // Integer grid lines at a step that gives at most MAX_GRID_LINES of them
+        gridStep = Math.max(1, (int) Math.ceil((double) maxCount / MAX_GRID_LINES));
+        gridTop = Math.max(gridStep, (maxCount + gridStep - 1) / gridStep * gridStep);
+        int lines = gridTop / gridStep + 1;
+        if (gridLabels.length < lines) gridLabels = new String[lines];
+        widestGridLabel = 0;
+        for (int i = 0; i < lines; i++) {
+            gridLabels[i] = String.valueOf(i * gridStep);
+            widestGridLabel = Math.max(widestGridLabel, axisLabelPaint.measureText(gridLabels[i]));
+        }
+
+        if (maxCount > 0 && !animated) {
+            animated = true;
+            animationStart = -1; // Starts on the first frame that is actually drawn
+        }
+        invalidate();
+    }
+
+    public void clear() {
+        setCounts(counts, 0);
+    }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        getViewTreeObserver().addOnScrollChangedListener(scrollListener);
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        getViewTreeObserver().removeOnScrollChangedListener(scrollListener);
+        super.onDetachedFromWindow();
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        super.onDraw(canvas);
+        if (maxCount == 0) {
+            canvas.drawText(noDataText, getWidth() / 2f, getHeight() / 2f, noDataPaint);
+            return;
+        }
+
+        float progress = 1f;
+        if (animationStart < 0 && !getLocalVisibleRect(visibleRect)) {
+            progress = 0f; // Off screen: hold the bars at the start until the view is seen
+        } else if (animationStart != 0) {
+            long now = SystemClock.uptimeMillis();
+            if (animationStart < 0) animationStart = now;
+            progress = Math.min(1f, (now - animationStart) / (float) ANIMATION_MS);
+            if (progress < 1f) {
+                postInvalidateOnAnimation();
+            } else {
+                animationStart = 0;
+            }
+        }
+
+        float labelHeight = axisLabelPaint.getTextSize();
+        float left = getPaddingLeft() + widestGridLabel + dp(6);
+        float right = getWidth() - getPaddingRight();
+        float top = getPaddingTop() + valuePaint.getTextSize() + dp(2);
+        float bottom = getHeight() - getPaddingBottom() - labelHeight - dp(6);
+        float plotHeight = bottom - top;
+
+        // Grid lines and their labels
+        axisLabelPaint.setTextAlign(Paint.Align.RIGHT);
+        int lines = gridTop / gridStep + 1;
+        for (int i = 0; i < lines; i++) {
+            float y = bottom - plotHeight * i / (lines - 1);
+            canvas.drawLine(left, y, right, y, gridPaint);
+            canvas.drawText(gridLabels[i], left - dp(4), y + labelHeight / 3, axisLabelPaint);
+        }
+
+        // Bars, their counts, and as many bin labels as fit without overlapping
+        float slot = (right - left) / binCount;
+        int labelEvery = Math.max(1, (int) Math.ceil((widestBinLabel + dp(4)) / slot));
+        axisLabelPaint.setTextAlign(Paint.Align.CENTER);
+        for (int i = 0; i < binCount; i++) {
+            float centerX = left + slot * (i + 0.5f);
+            float barHeight = plotHeight * counts[i] / gridTop * progress;
+            barRect.set(centerX - slot * BAR_WIDTH_FRACTION / 2, bottom - barHeight,
+                    centerX + slot * BAR_WIDTH_FRACTION / 2, bottom);
+            barPaint.setColor(colors[i % colors.length]);
+            canvas.drawRect(barRect, barPaint);
+            if (valueLabels[i] != null) {
+                canvas.drawText(valueLabels[i], centerX, barRect.top - dp(2), valuePaint);
+            }
+            if (i % labelEvery == 0) {
+                canvas.drawText(binLabels[i], centerX, bottom + labelHeight + dp(3), axisLabelPaint);
+            }
+        }
+    }
+
+    @Override
+    public boolean onTouchEvent(MotionEvent event) {
+        if (onBinClickListener == null || binCount == 0) {
+            return super.onTouchEvent(event);
+        }
+        if (event.getAction() == MotionEvent.ACTION_UP) {
+            float left = getPaddingLeft() + widestGridLabel + dp(6);
+            float right = getWidth() - getPaddingRight();
+            int bin = (int) ((event.getX() - left) / ((right - left) / binCount));
+            if (bin >= 0 && bin < binCount) {
+                onBinClickListener.onBinClick(bin, counts[bin]);
+            }
+            performClick();
+        }
+        return true;
+    }
+
+    @Override
+    public boolean performClick() {
+        return super.performClick();
+    }
+
+    private float dp(float value) {
+        return value * density;
+    }
+
+    private float sp(float value) {
+        return TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_SP, value, getResources().getDisplayMetrics());
+    }
+}
@@ -1,6 +1,5 @@
 package com.example.librelog.ui;
 
-import android.graphics.Color;
 import android.os.Bundle;
 import android.text.TextUtils;
 import android.view.LayoutInflater;
@@ -8,7 +7,6 @@ import android.view.View;
 import android.view.ViewGroup;
 import android.widget.ArrayAdapter;
 import android.widget.AutoCompleteTextView;
-import android.widget.Button;
 import android.widget.Spinner;
 import android.widget.TextView;
 import android.widget.Toast;
@@ -21,20 +19,22 @@ import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.example.librelog.AppDatabase;
+import com.example.librelog.DashboardCache;
+import com.example.librelog.EventAnalytics;
 import com.example.librelog.EventType;
 import com.example.librelog.EventTypeDao;
+import com.example.librelog.EventTypeNames;
+import com.example.librelog.LocalTimeBuckets;
+import com.example.librelog.LogArchive;
 import com.example.librelog.LogEntry;
 import com.example.librelog.LogEntryAdapter;
 import com.example.librelog.LogEntryDao;
+import com.example.librelog.LogEntryPager;
+import com.example.librelog.LogEntryRow;
+import com.example.librelog.LogEntryWriteBuffer;
+import com.example.librelog.ObservableQuery;
+import com.example.librelog.TimelineLoader;
 import io.github.billpottle.librelog.R;
-import com.github.mikephil.charting.charts.BarChart;
-import com.github.mikephil.charting.components.XAxis;
-import com.github.mikephil.charting.components.YAxis;
-import com.github.mikephil.charting.data.BarData;
-import com.github.mikephil.charting.data.BarDataSet;
-import com.github.mikephil.charting.data.BarEntry;
-import com.github.mikephil.charting.formatter.ValueFormatter;
-import com.github.mikephil.charting.utils.ColorTemplate;
 
 import com.google.android.material.floatingactionbutton.FloatingActionButton;
 import com.google.android.material.textfield.TextInputEditText;
@@ -52,6 +52,7 @@ import java.util.stream.Collectors;
 public class HomeFragment extends Fragment {
 
     private LogEntryDao logEntryDao;
+    private LogArchive logArchive;
     private EventTypeDao eventTypeDao;
     private LogEntryAdapter logEntryAdapter;
     private RecyclerView recyclerViewLogEntries;
@@ -59,24 +60,39 @@ public class HomeFragment extends Fragment {
     private FloatingActionButton fabAddLogEntry;
     private AppDatabase db;
 
-    private BarChart barChartHourlyEvents;
-    private BarChart barChartDailyEvents;
-    private BarChart barChartMonthOfYearEvents;
-    private BarChart barChartTimeBetweenEvents;
+    private HistogramView hourlyChart;
+    private HistogramView dailyChart;
+    private HistogramView monthOfYearChart;
+    private HistogramView timeBetweenEventsChart;
+    private EventAnalytics.Result intervalAnalytics;
+    private final int[] intervalChartCounts = new int[EventAnalytics.INTERVAL_BIN_COUNT];
+    private TextView textViewIntervalPercentiles;
     private AutoCompleteTextView dropdownEventTypesAutocomplete;
 
+    // Timeline: loads the range the user panned or zoomed to, once the gesture pauses
+    private static final long TIMELINE_RELOAD_DELAY_MS = 100;
+    private static final int DEFAULT_TIMELINE_POINTS = 500; // Until the view is laid out
+    private TimelineView timelineView;
+    private volatile long[] timelineRange; // {from, to}; null for the whole history
+    private volatile int timelinePoints = DEFAULT_TIMELINE_POINTS; // One point per pixel
+    private long displayedTimelineTypeId = -1L;
+    private final Runnable reloadTimeline = () -> timelineQuery.refresh();
+
     private List<EventType> availableEventTypes = new ArrayList<>();
     private Map<String, Long> eventTypeNameToIdMap = new HashMap<>();
-    private long selectedEventTypeId = 1L;
+    private volatile long selectedEventTypeId = 1L; // Also read by the observed queries on the read pool
+
+    private ObservableQuery<List<EventType>> eventTypesQuery;
+    private ObservableQuery<RecentEntries> recentEntriesQuery;
+    private ObservableQuery<EventAnalytics.Result> analyticsQuery;
+    private ObservableQuery<TimelineLoader.Timeline> timelineQuery;
 
-    // Pagination for Recent Events
-    private static final int ITEMS_PER_PAGE = 5;
-    private int currentPage = 1;
-    private int totalPages = 0;
+    // Recent Events: a list that loads pages as it is scrolled
+    private LogEntryPager logEntryPager;
+    private LinearLayoutManager logEntriesLayoutManager;
+    private long displayedEventTypeId = -1L; // Type of the entries in the list
     private long totalItems = 0;
-    private Button buttonPreviousPage;
-    private Button buttonNextPage;
-    private TextView textViewPageInfo;
+    private TextView textViewEntryCount;
 
 
     @Override
@@ -84,7 +100,9 @@ public class HomeFragment extends Fragment {
         super.onCreate(savedInstanceState);
         db = AppDatabase.getDatabase(requireContext().getApplicationContext());
         logEntryDao = db.logEntryDao();
+        logArchive = new LogArchive(db);
         eventTypeDao = db.eventTypeDao();
+        setupObservers();
     }
 
     @Nullable
@@ -96,70 +114,134 @@ public class HomeFragment extends Fragment {
         textViewNoEntries = view.findViewById(R.id.text_view_no_entries);
         fabAddLogEntry = view.findViewById(R.id.fab_add_log_entry);
 
-        barChartHourlyEvents = view.findViewById(R.id.bar_chart_hourly_events);
-        barChartDailyEvents = view.findViewById(R.id.bar_chart_monthly_events);
-        barChartMonthOfYearEvents = view.findViewById(R.id.bar_chart_month_of_year);
-        barChartTimeBetweenEvents = view.findViewById(R.id.bar_chart_time_between_events);
         dropdownEventTypesAutocomplete = view.findViewById(R.id.dropdown_event_types_autocomplete);
 
-        // Pagination UI
-        buttonPreviousPage = view.findViewById(R.id.button_previous_page);
-        buttonNextPage = view.findViewById(R.id.button_next_page);
-        textViewPageInfo = view.findViewById(R.id.text_view_page_info);
+        textViewEntryCount = view.findViewById(R.id.text_view_entry_count);
 
+        setupCharts(view);
         setupRecyclerView();
-        setupPaginationListeners();
         fabAddLogEntry.setOnClickListener(v -> showAddLogEntryDialog());
 
-        fetchEventTypesAndSetupDropdown();
-
         return view;
     }
 
-    private void setupPaginationListeners() {
-        if (buttonPreviousPage != null) {
-            buttonPreviousPage.setOnClickListener(v -> {
-                if (currentPage > 1) {
-                    currentPage--;
-                    loadLogEntriesForCurrentPage();
-                }
-            });
+    @Override
+    public void onStart() {
+        super.onStart();
+        // Sections re-query by themselves while visible, whoever changed the data (dialog, import, settings)
+        eventTypesQuery.start();
+        recentEntriesQuery.start();
+        analyticsQuery.start();
+        timelineQuery.start();
+    }
+
+    @Override
+    public void onStop() {
+        super.onStop();
+        eventTypesQuery.stop();
+        recentEntriesQuery.stop();
+        analyticsQuery.stop();
+        timelineQuery.stop();
+        if (timelineView != null) timelineView.removeCallbacks(reloadTimeline);
+    }
+
+    // Each section observes only the tables it reads, so e.g. renaming a type does not re-run the
+    // analytics scan. The data queries read selectedEventTypeId when they run, and keep their results
+    // in the DashboardCache so switching back to a type renders without querying again.
+    private void setupObservers() {
+        DashboardCache dashboardCache = db.dashboardCache();
+        EventTypeNames eventTypeNames = db.eventTypeNames();
+        eventTypesQuery = new ObservableQuery<>(db, "eventTypes",
+                eventTypeDao::getAllEventTypes, this::onEventTypesLoaded, "event_types");
+        recentEntriesQuery = new ObservableQuery<>(db, "recentEntries", () -> {
+            long eventTypeId = selectedEventTypeId;
+            long version = dashboardCache.version();
+            List<LogEntryRow> firstPage = LogEntryRow.fromEntries(
+                    logArchive.getFirstLogEntriesPage(eventTypeId, LogEntryPager.PAGE_SIZE), eventTypeNames.get());
+            RecentEntries recentEntries = new RecentEntries(eventTypeId, logEntryDao.getCountFromRollups(eventTypeId), firstPage);
+            dashboardCache.put(DashboardCache.RECENT_ENTRIES, eventTypeId, version, recentEntries,
+                    DashboardCache.estimateBytes(firstPage));
+            return recentEntries;
+        }, this::onRecentEntriesLoaded, "log_entries", "event_types"); // Rows show the type's name
+        recentEntriesQuery.setCachedResult(() -> dashboardCache.get(DashboardCache.RECENT_ENTRIES, selectedEventTypeId));
+        // All four charts come from one EventAnalytics pass
+        EventAnalytics eventAnalytics = new EventAnalytics(logEntryDao);
+        analyticsQuery = new ObservableQuery<>(db, "analytics", () -> {
+            long eventTypeId = selectedEventTypeId;
+            long version = dashboardCache.version();
+            EventAnalytics.Result result = eventAnalytics.compute(eventTypeId);
+            dashboardCache.put(DashboardCache.ANALYTICS, eventTypeId, version, result,
+                    DashboardCache.estimateBytes(result));
+            return result;
+        }, this::onAnalyticsLoaded, "event_rollups", "interval_buckets");
+        analyticsQuery.setCachedResult(() -> dashboardCache.get(DashboardCache.ANALYTICS, selectedEventTypeId));
+        // Not cached: every pan or zoom asks for a different range
+        TimelineLoader timelineLoader = new TimelineLoader(logEntryDao, logArchive);
+        timelineQuery = new ObservableQuery<>(db, "timeline", () -> {
+            long[] range = timelineRange;
+            if (range == null) return timelineLoader.loadAll(selectedEventTypeId, timelinePoints);
+            return timelineLoader.load(selectedEventTypeId, range[0], range[1], timelinePoints);
+        }, this::onTimelineLoaded, "event_rollups", "log_entries");
+    }
+
+    private void onEventTypesLoaded(List<EventType> eventTypes) {
+        availableEventTypes = eventTypes;
+        eventTypeNameToIdMap.clear();
+        if (availableEventTypes != null) {
+            for (EventType type : availableEventTypes) {
+                eventTypeNameToIdMap.put(type.getEventName(), (long) type.getEventTypeId());
+            }
         }
-        if (buttonNextPage != null) {
-            buttonNextPage.setOnClickListener(v -> {
-                if (currentPage < totalPages) {
-                    currentPage++;
-                    loadLogEntriesForCurrentPage();
-                }
-            });
+
+        long previousSelection = selectedEventTypeId;
+        setupEventTypeDropdown(); // Falls back to the first type if the selected one is gone
+        if (eventTypeNameToIdMap.isEmpty()) {
+            clearAllUIData();
+            Toast.makeText(getContext(), "No event types available to filter by.", Toast.LENGTH_LONG).show();
+        } else if (selectedEventTypeId != previousSelection) {
+            onSelectedEventTypeChanged();
         }
     }
 
+    private void onSelectedEventTypeChanged() {
+        recentEntriesQuery.refresh();
+        analyticsQuery.refresh();
+        timelineRange = null; // A new type starts with its whole history
+        timelineQuery.refresh();
+    }
 
-    @Override
-    public void onResume() {
-        super.onResume();
-        // Refresh data if needed, fetchEventTypesAndSetupDropdown handles initial load.
-        // If coming back to the fragment and data might be stale, consider an explicit refresh.
+    private void onRecentEntriesLoaded(RecentEntries recentEntries) {
+        totalItems = recentEntries.count;
+        updateEntryCount();
+        if (logEntryPager == null) return;
+
+        // A user scrolled down into older entries keeps their place; entries added meanwhile are
+        // loaded when they scroll back to the top
+        boolean atTop = logEntriesLayoutManager.findFirstVisibleItemPosition() <= 0;
+        if (recentEntries.eventTypeId != displayedEventTypeId || atTop) {
+            displayedEventTypeId = recentEntries.eventTypeId;
+            updateRecentEventsUI(recentEntries.firstPage);
+            logEntriesLayoutManager.scrollToPosition(0);
+            logEntryPager.reset(recentEntries.eventTypeId, recentEntries.firstPage);
+        } else {
+            logEntryPager.onNewerEntriesMayExist();
+        }
     }
 
-    private void fetchEventTypesAndSetupDropdown() {
-        AppDatabase.databaseWriteExecutor.execute(() -> {
-            availableEventTypes = eventTypeDao.getAllEventTypes();
-            eventTypeNameToIdMap.clear();
-            if (availableEventTypes != null) {
-                for (EventType type : availableEventTypes) {
-                    eventTypeNameToIdMap.put(type.getEventName(), (long) type.getEventTypeId());
-                }
-            }
+    private void onAnalyticsLoaded(EventAnalytics.Result analytics) {
+        if (hourlyChart == null) return;
+        hourlyChart.setCounts(analytics.hourly, 24);
+        // Only the days of the current month
+        dailyChart.setCounts(analytics.dayOfMonth, Calendar.getInstance().getActualMaximum(Calendar.DAY_OF_MONTH));
+        monthOfYearChart.setCounts(analytics.monthOfYear, 12);
+        updateTimeBetweenEventsChart(analytics);
+    }
 
-            if (getActivity() != null) {
-                getActivity().runOnUiThread(() -> {
-                    setupEventTypeDropdown();
-                    refreshAllDataAndResetPage(); // This will load data for the selected type and page 1
-                });
-            }
-        });
+    private void onTimelineLoaded(TimelineLoader.Timeline timeline) {
+        if (timelineView == null) return;
+        boolean newType = timeline.eventTypeId != displayedTimelineTypeId;
+        displayedTimelineTypeId = timeline.eventTypeId;
+        timelineView.setTimeline(timeline, newType);
     }
 
     private void setupEventTypeDropdown() {
@@ -201,122 +283,20 @@ public class HomeFragment extends Fragment {
 
             if (newSelectedId != -1L && newSelectedId != selectedEventTypeId) {
                 selectedEventTypeId = newSelectedId;
-                refreshAllDataAndResetPage();
+                onSelectedEventTypeChanged();
             } else if (newSelectedId == -1L) {
                 Toast.makeText(getContext(), "Could not find ID for selected event type.", Toast.LENGTH_SHORT).show();
             }
         });
     }
 
-    private void refreshAllDataAndResetPage() {
-        currentPage = 1; // Reset to first page when event type changes or on initial full refresh
-        refreshAllEventData();
-    }
-
-    private void refreshAllEventData() {
-        if (selectedEventTypeId == -1L && !eventTypeNameToIdMap.isEmpty()) {
-            Optional<String> firstName = eventTypeNameToIdMap.keySet().stream().findFirst();
-            if(firstName.isPresent()){
-                selectedEventTypeId = eventTypeNameToIdMap.get(firstName.get());
-            } else {
-                if (getActivity() != null) {
-                    getActivity().runOnUiThread(() -> {
-                        clearAllUIData();
-                        Toast.makeText(getContext(), "No event types available to filter by.", Toast.LENGTH_LONG).show();
-                    });
-                }
-                return;
-            }
-        } else if (eventTypeNameToIdMap.isEmpty()) {
-            if (getActivity() != null) {
-                getActivity().runOnUiThread(this::clearAllUIData);
-            }
-            return;
-        }
-
-        AppDatabase.databaseWriteExecutor.execute(() -> {
-            // Fetch total items for pagination for recent events
-            totalItems = logEntryDao.getCountLogEntries(selectedEventTypeId);
-            totalPages = (int) Math.ceil((double) totalItems / ITEMS_PER_PAGE);
-            if (totalPages == 0) totalPages = 1; // Ensure at least 1 page even if no items
-
-            // Adjust currentPage if it's out of new bounds
-            if (currentPage > totalPages) {
-                currentPage = totalPages;
-            }
-            if (currentPage < 1) {
-                currentPage = 1;
-            }
-
-            int offset = (currentPage - 1) * ITEMS_PER_PAGE;
-            List<LogEntry> recentLogEntries = logEntryDao.getRecentLogEntries(selectedEventTypeId, ITEMS_PER_PAGE, offset);
-
-            List<LogEntryDao.EventCountByHour> hourlyData = logEntryDao.getEventCountByHour(selectedEventTypeId);
-            List<LogEntryDao.EventCountByDay> dailyData = logEntryDao.getEventCountByDay(selectedEventTypeId);
-            List<LogEntryDao.EventCountByMonth> monthOfYearData = logEntryDao.getEventCountByMonthLast12(selectedEventTypeId);
-            List<Long> timestampsAsc = logEntryDao.getTimestampsForEventType(selectedEventTypeId);
-
-            if (getActivity() != null) {
-                getActivity().runOnUiThread(() -> {
-                    updateRecentEventsUI(recentLogEntries);
-                    updatePaginationControls();
-                    updateHourlyEventsChart(hourlyData);
-                    updateDailyEventsChart(dailyData);
-                    updateMonthOfYearEventsChart(monthOfYearData);
-                    updateTimeBetweenEventsChart(timestampsAsc);
-                });
-            }
-        });
-    }
-
-    private void loadLogEntriesForCurrentPage() {
-        if (selectedEventTypeId == -1L) {
-            if (getActivity() != null) {
-                getActivity().runOnUiThread(() -> {
-                    clearAllUIData(); // Or at least clear recent events part
-                    Toast.makeText(getContext(), "Please select an event type.", Toast.LENGTH_SHORT).show();
-                });
-            }
-            return;
-        }
-        AppDatabase.databaseWriteExecutor.execute(() -> {
-            int offset = (currentPage - 1) * ITEMS_PER_PAGE;
-            List<LogEntry> recentLogEntries = logEntryDao.getRecentLogEntries(selectedEventTypeId, ITEMS_PER_PAGE, offset);
-            if (getActivity() != null) {
-                getActivity().runOnUiThread(() -> {
-                    updateRecentEventsUI(recentLogEntries);
-                    updatePaginationControls();
-                });
-            }
-        });
-    }
-
-    private void updatePaginationControls() {
-        if (textViewPageInfo != null) {
-            if (totalItems == 0) {
-                textViewPageInfo.setText("No entries");
-            } else {
-                textViewPageInfo.setText(String.format(Locale.US, "Page %d of %d", currentPage, totalPages));
-            }
-        }
-        if (buttonPreviousPage != null) {
-            buttonPreviousPage.setEnabled(currentPage > 1);
-        }
-        if (buttonNextPage != null) {
-            buttonNextPage.setEnabled(currentPage < totalPages);
-        }
-
-        // Hide pagination if there's only one page or no items.
-        boolean showPagination = totalPages > 1;
-        if (buttonPreviousPage != null) buttonPreviousPage.setVisibility(showPagination ? View.VISIBLE : View.GONE);
-        if (buttonNextPage != null) buttonNextPage.setVisibility(showPagination ? View.VISIBLE : View.GONE);
-        if (textViewPageInfo != null && totalItems == 0) { // If no items, even "Page 1 of 1" might be confusing.
-            if (textViewPageInfo != null) textViewPageInfo.setVisibility(View.VISIBLE); // Keep it visible for "No entries"
-        } else if (textViewPageInfo != null) {
-            textViewPageInfo.setVisibility(View.VISIBLE);
+    private void updateEntryCount() {
+        if (textViewEntryCount == null) return;
+        if (totalItems == 0) {
+            textViewEntryCount.setText("No entries");
+        } else {
+            textViewEntryCount.setText(String.format(Locale.getDefault(), "%,d entries", totalItems));
         }
-
-
     }
 
     private void clearAllUIData() {
@@ -326,445 +306,134 @@ public class HomeFragment extends Fragment {
             textViewNoEntries.setVisibility(View.VISIBLE);
         }
         if (recyclerViewLogEntries != null) recyclerViewLogEntries.setVisibility(View.GONE);
-        if (barChartHourlyEvents != null) {
-            barChartHourlyEvents.clear();
-            barChartHourlyEvents.invalidate();
-        }
-        if (barChartDailyEvents != null) {
-            barChartDailyEvents.clear();
-            barChartDailyEvents.invalidate();
-        }
-        if (barChartMonthOfYearEvents != null) {
-            barChartMonthOfYearEvents.clear();
-            barChartMonthOfYearEvents.invalidate();
-        }
-        if (barChartTimeBetweenEvents != null) {
-            barChartTimeBetweenEvents.clear();
-            barChartTimeBetweenEvents.invalidate();
-        }
-        // Also clear pagination
-        currentPage = 1;
-        totalPages = 0;
+        if (hourlyChart != null) {
+            hourlyChart.clear();
+            dailyChart.clear();
+            monthOfYearChart.clear();
+            timeBetweenEventsChart.clear();
+            textViewIntervalPercentiles.setText("");
+        }
+        if (timelineView != null) timelineView.clear();
+        displayedTimelineTypeId = -1L;
+        // Also clear the list's pages and count
+        displayedEventTypeId = -1L;
+        if (logEntryPager != null) logEntryPager.reset(-1L, new ArrayList<>());
         totalItems = 0;
-        if (getActivity() != null) {
-            getActivity().runOnUiThread(this::updatePaginationControls);
-        }
+        updateEntryCount();
     }
 
     private void setupRecyclerView() {
         if (recyclerViewLogEntries == null) return;
-        recyclerViewLogEntries.setLayoutManager(new LinearLayoutManager(getContext()));
+        logEntriesLayoutManager = new LinearLayoutManager(getContext());
+        recyclerViewLogEntries.setLayoutManager(logEntriesLayoutManager);
         logEntryAdapter = new LogEntryAdapter(new ArrayList<>());
         recyclerViewLogEntries.setAdapter(logEntryAdapter);
-    }
-
-    private void updateRecentEventsUI(List<LogEntry> logEntries) {
-        if (logEntryAdapter == null) return;
-
-        if (logEntries != null && !logEntries.isEmpty()) {
-            logEntryAdapter.setLogEntries(logEntries);
-            if (recyclerViewLogEntries != null) recyclerViewLogEntries.setVisibility(View.VISIBLE);
-            if (textViewNoEntries != null) textViewNoEntries.setVisibility(View.GONE);
-        } else {
-            logEntryAdapter.setLogEntries(new ArrayList<>()); // Clear adapter
-            if (recyclerViewLogEntries != null && totalItems > 0) { // Still hide recycler if current page has no items but others might
-                recyclerViewLogEntries.setVisibility(View.GONE);
-                if(textViewNoEntries != null) {
-                    textViewNoEntries.setText("No entries on this page.");
-                    textViewNoEntries.setVisibility(View.VISIBLE);
-                }
-            } else if (recyclerViewLogEntries != null) { // No items at all for this filter
-                recyclerViewLogEntries.setVisibility(View.GONE);
-                if(textViewNoEntries != null) {
-                    textViewNoEntries.setText("No recent log entries for this event type.");
-                    textViewNoEntries.setVisibility(View.VISIBLE);
-                }
-            }
-        }
-    }
-
-    private void updateHourlyEventsChart(List<LogEntryDao.EventCountByHour> hourlyData) {
-        if (barChartHourlyEvents == null) return;
-
-        if (hourlyData == null || hourlyData.isEmpty()) {
-            barChartHourlyEvents.clear();
-            barChartHourlyEvents.setNoDataText("No hourly data for this event type.");
-            barChartHourlyEvents.invalidate();
-            return;
-        }
-
-        ArrayList<BarEntry> barEntries = new ArrayList<>();
-        for (int i = 0; i < 24; i++) {
-            String hourString = String.format(Locale.US, "%02d", i);
-            int count = 0;
-            for(LogEntryDao.EventCountByHour item : hourlyData){
-                if(item.hour.equals(hourString)){
-                    count = item.count;
-                    break;
-                }
-            }
-            barEntries.add(new BarEntry(i, count));
-        }
 
-        BarDataSet dataSet = new BarDataSet(barEntries, "Events per Hour");
-        dataSet.setColors(ColorTemplate.MATERIAL_COLORS);
-        dataSet.setValueTextColor(Color.BLACK);
-        dataSet.setValueTextSize(10f);
-        dataSet.setValueFormatter(new ValueFormatter() {
+        logEntryPager = new LogEntryPager(logArchive, db.eventTypeNames(), new LogEntryPager.Callback() {
             @Override
-            public String getFormattedValue(float value) {
-                return value == 0 ? "" : String.valueOf((int) value);
+            public void onPageAppended(List<LogEntryRow> page) {
+                logEntryAdapter.appendLogEntries(page);
             }
-        });
 
-        BarData barData = new BarData(dataSet);
-        barData.setBarWidth(0.9f);
-
-        barChartHourlyEvents.getDescription().setEnabled(false);
-        barChartHourlyEvents.setDrawGridBackground(false);
-        barChartHourlyEvents.setFitBars(true);
-        barChartHourlyEvents.setData(barData);
-        barChartHourlyEvents.setDrawBorders(false);
-        barChartHourlyEvents.getLegend().setEnabled(false);
-
-        XAxis xAxis = barChartHourlyEvents.getXAxis();
-        xAxis.setPosition(XAxis.XAxisPosition.BOTTOM);
-        xAxis.setGranularity(1f);
-        xAxis.setLabelCount(24, false);
-        xAxis.setValueFormatter(new ValueFormatter() {
             @Override
-            public String getFormattedValue(float value) {
-                return String.format(Locale.US, "%02d", (int)value);
+            public void onPagePrepended(List<LogEntryRow> page) {
+                logEntryAdapter.prependLogEntries(page);
             }
-        });
-        xAxis.setDrawGridLines(false);
 
-        YAxis leftAxis = barChartHourlyEvents.getAxisLeft();
-        leftAxis.setAxisMinimum(0f);
-        leftAxis.setGranularity(1f);
-        leftAxis.setGranularityEnabled(true);
-        leftAxis.setValueFormatter(new ValueFormatter() {
             @Override
-            public String getFormattedValue(float value) {
-                return String.valueOf((int) value);
+            public void onItemsDropped(boolean fromStart, int count) {
+                logEntryAdapter.removeLogEntries(fromStart, count);
             }
         });
-        leftAxis.setDrawGridLines(true);
-
-        barChartHourlyEvents.getAxisRight().setEnabled(false);
-        barChartHourlyEvents.animateY(1000);
-        barChartHourlyEvents.invalidate();
-    }
-
-    private void updateDailyEventsChart(List<LogEntryDao.EventCountByDay> dailyData) {
-        if (barChartDailyEvents == null) return;
-
-        if (dailyData == null || dailyData.isEmpty()) {
-            barChartDailyEvents.clear();
-            barChartDailyEvents.setNoDataText("No daily data for this event type.");
-            barChartDailyEvents.invalidate();
-            return;
-        }
-
-        ArrayList<BarEntry> barEntries = new ArrayList<>();
-        Map<Integer, Integer> dayCountsMap = new HashMap<>();
-        for (LogEntryDao.EventCountByDay item : dailyData) {
-            try {
-                dayCountsMap.put(Integer.parseInt(item.day), item.count);
-            } catch (NumberFormatException e) {
-                // Skip
-            }
-        }
-
-        int maxDay = Calendar.getInstance().getActualMaximum(Calendar.DAY_OF_MONTH);
-
-        for (int i = 1; i <= maxDay; i++) {
-            barEntries.add(new BarEntry(i, dayCountsMap.getOrDefault(i, 0)));
-        }
-
-        BarDataSet dataSet = new BarDataSet(barEntries, "Events per Day");
-        dataSet.setColors(ColorTemplate.PASTEL_COLORS);
-        dataSet.setValueTextColor(Color.BLACK);
-        dataSet.setValueTextSize(10f);
-        dataSet.setValueFormatter(new ValueFormatter() {
+        recyclerViewLogEntries.addOnScrollListener(new RecyclerView.OnScrollListener() {
             @Override
-            public String getFormattedValue(float value) {
-                return value == 0 ? "" : String.valueOf((int) value);
+            public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+                logEntryPager.onVisibleRange(logEntriesLayoutManager.findFirstVisibleItemPosition(),
+                        logEntriesLayoutManager.findLastVisibleItemPosition());
             }
         });
-
-        BarData barData = new BarData(dataSet);
-        barData.setBarWidth(0.9f);
-
-        barChartDailyEvents.getDescription().setEnabled(false);
-        barChartDailyEvents.setDrawGridBackground(false);
-        barChartDailyEvents.setFitBars(true);
-        barChartDailyEvents.setData(barData);
-        barChartDailyEvents.setDrawBorders(false);
-        barChartDailyEvents.getLegend().setEnabled(false);
-
-        XAxis xAxis = barChartDailyEvents.getXAxis();
-        xAxis.setPosition(XAxis.XAxisPosition.BOTTOM);
-        xAxis.setGranularity(1f);
-        xAxis.setValueFormatter(new ValueFormatter() {
-            @Override
-            public String getFormattedValue(float value) {
-                return String.valueOf((int) value);
-            }
-        });
-        xAxis.setDrawGridLines(false);
-
-        YAxis leftAxis = barChartDailyEvents.getAxisLeft();
-        leftAxis.setAxisMinimum(0f);
-        leftAxis.setGranularity(1f);
-        leftAxis.setGranularityEnabled(true);
-        leftAxis.setValueFormatter(new ValueFormatter() {
-            @Override
-            public String getFormattedValue(float value) {
-                return String.valueOf((int) value);
-            }
-        });
-        leftAxis.setDrawGridLines(true);
-
-        barChartDailyEvents.getAxisRight().setEnabled(false);
-        barChartDailyEvents.animateY(1000);
-        barChartDailyEvents.invalidate();
     }
 
-    private void updateMonthOfYearEventsChart(List<LogEntryDao.EventCountByMonth> monthData) {
-        if (barChartMonthOfYearEvents == null) return;
-
-        if (monthData == null || monthData.isEmpty()) {
-            barChartMonthOfYearEvents.clear();
-            barChartMonthOfYearEvents.setNoDataText("No monthly data for this event type.");
-            barChartMonthOfYearEvents.invalidate();
-            return;
-        }
+    private void updateRecentEventsUI(List<LogEntryRow> logEntries) {
+        if (logEntryAdapter == null) return;
 
-        ArrayList<BarEntry> barEntries = new ArrayList<>();
-        Map<Integer, Integer> monthCountsMap = new HashMap<>();
-        for (LogEntryDao.EventCountByMonth item : monthData) {
-            try {
-                monthCountsMap.put(Integer.parseInt(item.month), item.count);
-            } catch (NumberFormatException e) {
-                // Skip malformed month
+        if (logEntries != null && !logEntries.isEmpty()) {
+            logEntryAdapter.setLogEntries(logEntries);
+            if (recyclerViewLogEntries != null) recyclerViewLogEntries.setVisibility(View.VISIBLE);
+            if (textViewNoEntries != null) textViewNoEntries.setVisibility(View.GONE);
+        } else {
+            logEntryAdapter.setLogEntries(new ArrayList<>()); // Clear adapter
+            if (recyclerViewLogEntries != null) recyclerViewLogEntries.setVisibility(View.GONE);
+            if (textViewNoEntries != null) {
+                textViewNoEntries.setText("No recent log entries for this event type.");
+                textViewNoEntries.setVisibility(View.VISIBLE);
             }
         }
+    }
 
-        for (int m = 1; m <= 12; m++) {
-            barEntries.add(new BarEntry(m, monthCountsMap.getOrDefault(m, 0)));
-        }
-
-        BarDataSet dataSet = new BarDataSet(barEntries, "Events per Month (Last 12 Months)");
-        dataSet.setColors(ColorTemplate.COLORFUL_COLORS);
-        dataSet.setValueTextColor(Color.BLACK);
-        dataSet.setValueTextSize(10f);
-        dataSet.setValueFormatter(new ValueFormatter() {
-            @Override
-            public String getFormattedValue(float value) {
-                return value == 0 ? "" : String.valueOf((int) value);
-            }
-        });
-
-        BarData barData = new BarData(dataSet);
-        barData.setBarWidth(0.9f);
-
-        barChartMonthOfYearEvents.getDescription().setEnabled(false);
-        barChartMonthOfYearEvents.setDrawGridBackground(false);
-        barChartMonthOfYearEvents.setFitBars(true);
-        barChartMonthOfYearEvents.setData(barData);
-        barChartMonthOfYearEvents.setDrawBorders(false);
-        barChartMonthOfYearEvents.getLegend().setEnabled(false);
-
-        XAxis xAxis = barChartMonthOfYearEvents.getXAxis();
-        xAxis.setPosition(XAxis.XAxisPosition.BOTTOM);
-        xAxis.setGranularity(1f);
-        xAxis.setLabelCount(12, false);
-        xAxis.setValueFormatter(new ValueFormatter() {
-            @Override
-            public String getFormattedValue(float value) {
-                return String.valueOf((int) value);
-            }
+    private void setupCharts(View view) {
+        hourlyChart = view.findViewById(R.id.bar_chart_hourly_events);
+        hourlyChart.setColors(HistogramView.MATERIAL_COLORS);
+        hourlyChart.setBinLabeler(hour -> String.format(Locale.US, "%02d", hour));
+        hourlyChart.setNoDataText("No hourly data for this event type.");
+
+        dailyChart = view.findViewById(R.id.bar_chart_monthly_events);
+        dailyChart.setColors(HistogramView.PASTEL_COLORS);
+        dailyChart.setBinLabeler(bin -> String.valueOf(bin + 1));
+        dailyChart.setNoDataText("No daily data for this event type.");
+
+        monthOfYearChart = view.findViewById(R.id.bar_chart_month_of_year);
+        monthOfYearChart.setColors(HistogramView.COLORFUL_COLORS);
+        monthOfYearChart.setBinLabeler(bin -> String.valueOf(bin + 1));
+        monthOfYearChart.setNoDataText("No monthly data for this event type.");
+
+        timeBetweenEventsChart = view.findViewById(R.id.bar_chart_time_between_events);
+        timeBetweenEventsChart.setColors(HistogramView.MATERIAL_COLORS);
+        timeBetweenEventsChart.setBinLabeler(this::intervalBinLabel);
+        timeBetweenEventsChart.setNoDataText("Not enough data to compute intervals.");
+        textViewIntervalPercentiles = view.findViewById(R.id.text_view_interval_percentiles);
+
+        HistogramView.OnBinClickListener showCount = (bin, count) ->
+                Toast.makeText(getContext(), count + (count == 1 ? " event" : " events"), Toast.LENGTH_SHORT).show();
+        hourlyChart.setOnBinClickListener(showCount);
+        dailyChart.setOnBinClickListener(showCount);
+        monthOfYearChart.setOnBinClickListener(showCount);
+        timeBetweenEventsChart.setOnBinClickListener(showCount);
+
+        timelineView = view.findViewById(R.id.timeline_events);
+        timelineView.setNoDataText("No entries to show over time.");
+        timelineView.addOnLayoutChangeListener((v, left, top, right, bottom, oldLeft, oldTop, oldRight, oldBottom) -> {
+            if (right - left > 0) timelinePoints = right - left;
         });
-        xAxis.setDrawGridLines(false);
-
-        YAxis leftAxis = barChartMonthOfYearEvents.getAxisLeft();
-        leftAxis.setAxisMinimum(0f);
-        leftAxis.setGranularity(1f);
-        leftAxis.setGranularityEnabled(true);
-        leftAxis.setValueFormatter(new ValueFormatter() {
-            @Override
-            public String getFormattedValue(float value) {
-                return String.valueOf((int) value);
-            }
+        timelineView.setOnRangeChangeListener((from, to) -> {
+            timelineRange = new long[]{from, to};
+            timelineView.removeCallbacks(reloadTimeline);
+            timelineView.postDelayed(reloadTimeline, TIMELINE_RELOAD_DELAY_MS);
         });
-        leftAxis.setDrawGridLines(true);
-
-        barChartMonthOfYearEvents.getAxisRight().setEnabled(false);
-        barChartMonthOfYearEvents.animateY(1000);
-        barChartMonthOfYearEvents.invalidate();
     }
 
-    private void updateTimeBetweenEventsChart(List<Long> timestampsAsc) {
-        if (barChartTimeBetweenEvents == null) return;
-
-        if (timestampsAsc == null || timestampsAsc.size() < 2) {
-            barChartTimeBetweenEvents.clear();
-            barChartTimeBetweenEvents.setNoDataText("Not enough data to compute intervals.");
-            barChartTimeBetweenEvents.invalidate();
-            return;
-        }
-
-        List<Long> deltas = new ArrayList<>();
-        for (int i = 1; i < timestampsAsc.size(); i++) {
-            long delta = timestampsAsc.get(i) - timestampsAsc.get(i - 1);
-            if (delta > 0) {
-                deltas.add(delta);
-            }
-        }
-
-        if (deltas.isEmpty()) {
-            barChartTimeBetweenEvents.clear();
-            barChartTimeBetweenEvents.setNoDataText("Not enough data to compute intervals.");
-            barChartTimeBetweenEvents.invalidate();
+    private void updateTimeBetweenEventsChart(EventAnalytics.Result analytics) {
+        intervalAnalytics = analytics; // Read by intervalBinLabel while the counts are set
+        if (analytics.intervalCount == 0) {
+            timeBetweenEventsChart.clear();
+            textViewIntervalPercentiles.setText("");
             return;
         }
+        // Log-scale bins from the shortest gap's bin to the longest's, filled by EventAnalytics
+        int first = analytics.firstIntervalBin;
+        int length = analytics.lastIntervalBin - first + 1;
+        System.arraycopy(analytics.intervalBins, first, intervalChartCounts, 0, length);
+        timeBetweenEventsChart.setCounts(intervalChartCounts, length);
+        textViewIntervalPercentiles.setText(String.format(Locale.getDefault(), "Median %s · 90%% within %s · 99%% within %s",
+                formatDuration(analytics.medianInterval), formatDuration(analytics.p90Interval),
+                formatDuration(analytics.p99Interval)));
+    }
 
-        long min = Long.MAX_VALUE;
-        long max = Long.MIN_VALUE;
-        for (long d : deltas) {
-            if (d < min) min = d;
-            if (d > max) max = d;
-        }
-
-        if (min == max) {
-            // All intervals equal: put them in the center bin
-            ArrayList<BarEntry> singleBin = new ArrayList<>();
-            singleBin.add(new BarEntry(1, deltas.size()));
-            BarDataSet singleSet = new BarDataSet(singleBin, "Time Between Events (8 bins)");
-            singleSet.setColors(ColorTemplate.MATERIAL_COLORS);
-            singleSet.setValueTextColor(Color.BLACK);
-            singleSet.setValueTextSize(10f);
-            singleSet.setValueFormatter(new ValueFormatter() {
-                @Override
-                public String getFormattedValue(float value) {
-                    return value == 0 ? "" : String.valueOf((int) value);
-                }
-            });
-            BarData sd = new BarData(singleSet);
-            sd.setBarWidth(0.9f);
-            barChartTimeBetweenEvents.getDescription().setEnabled(false);
-            barChartTimeBetweenEvents.setDrawGridBackground(false);
-            barChartTimeBetweenEvents.setFitBars(true);
-            barChartTimeBetweenEvents.setData(sd);
-            barChartTimeBetweenEvents.setDrawBorders(false);
-            barChartTimeBetweenEvents.getLegend().setEnabled(false);
-            XAxis x = barChartTimeBetweenEvents.getXAxis();
-            x.setPosition(XAxis.XAxisPosition.BOTTOM);
-            x.setGranularity(1f);
-            x.setLabelCount(1, true);
-            x.setValueFormatter(new ValueFormatter() {
-                @Override
-                public String getFormattedValue(float value) {
-                    return "All";
-                }
-            });
-            x.setDrawGridLines(false);
-            YAxis ly = barChartTimeBetweenEvents.getAxisLeft();
-            ly.setAxisMinimum(0f);
-            ly.setGranularity(1f);
-            ly.setGranularityEnabled(true);
-            ly.setValueFormatter(new ValueFormatter() {
-                @Override
-                public String getFormattedValue(float value) {
-                    return String.valueOf((int) value);
-                }
-            });
-            ly.setDrawGridLines(true);
-            barChartTimeBetweenEvents.getAxisRight().setEnabled(false);
-            barChartTimeBetweenEvents.animateY(800);
-            barChartTimeBetweenEvents.invalidate();
-            return;
-        }
-
-        // Create 8 even-width bins from 0..max (inclusive of max in last bin)
-        final int binCount = 8;
-        double binSize = (double) max / binCount;
-        int[] counts = new int[binCount];
-        for (long d : deltas) {
-            int idx;
-            if (d == max) {
-                idx = binCount - 1;
-            } else {
-                idx = (int) Math.floor(d / binSize);
-                if (idx < 0) idx = 0;
-                if (idx >= binCount) idx = binCount - 1;
-            }
-            counts[idx]++;
-        }
-
-        ArrayList<BarEntry> barEntries = new ArrayList<>();
-        for (int i = 0; i < binCount; i++) {
-            barEntries.add(new BarEntry(i + 1, counts[i]));
-        }
-
-        BarDataSet dataSet = new BarDataSet(barEntries, "Time Between Events (8 bins)");
-        dataSet.setColors(ColorTemplate.MATERIAL_COLORS);
-        dataSet.setValueTextColor(Color.BLACK);
-        dataSet.setValueTextSize(10f);
-        dataSet.setValueFormatter(new ValueFormatter() {
-            @Override
-            public String getFormattedValue(float value) {
-                return value == 0 ? "" : String.valueOf((int) value);
-            }
-        });
-
-        BarData barData = new BarData(dataSet);
-        barData.setBarWidth(0.9f);
-
-        barChartTimeBetweenEvents.getDescription().setEnabled(false);
-        barChartTimeBetweenEvents.setDrawGridBackground(false);
-        barChartTimeBetweenEvents.setFitBars(true);
-        barChartTimeBetweenEvents.setData(barData);
-        barChartTimeBetweenEvents.setDrawBorders(false);
-        barChartTimeBetweenEvents.getLegend().setEnabled(false);
-
-        XAxis xAxis = barChartTimeBetweenEvents.getXAxis();
-        xAxis.setPosition(XAxis.XAxisPosition.BOTTOM);
-        xAxis.setGranularity(1f);
-        xAxis.setLabelCount(binCount, true);
-        final long maxBound = max;
-        final double binSizeConst = binSize;
-        xAxis.setValueFormatter(new ValueFormatter() {
-            @Override
-            public String getFormattedValue(float value) {
-                int idx = (int) value - 1;
-                if (idx < 0 || idx >= binCount) return "";
-                double start = idx * binSizeConst;
-                double end = (idx == binCount - 1) ? maxBound : ((idx + 1) * binSizeConst);
-                return formatDuration((long) start) + "-" + formatDuration((long) end);
-            }
-        });
-        xAxis.setDrawGridLines(false);
-
-        YAxis leftAxis = barChartTimeBetweenEvents.getAxisLeft();
-        leftAxis.setAxisMinimum(0f);
-        leftAxis.setGranularity(1f);
-        leftAxis.setGranularityEnabled(true);
-        leftAxis.setValueFormatter(new ValueFormatter() {
-            @Override
-            public String getFormattedValue(float value) {
-                return String.valueOf((int) value);
-            }
-        });
-        leftAxis.setDrawGridLines(true);
-
-        barChartTimeBetweenEvents.getAxisRight().setEnabled(false);
-        barChartTimeBetweenEvents.animateY(1000);
-        barChartTimeBetweenEvents.invalidate();
+    private String intervalBinLabel(int bin) {
+        return EventAnalytics.INTERVAL_BIN_LABELS[intervalAnalytics.firstIntervalBin + bin];
     }
 
-    private String formatDuration(long millis) {
+    private static String formatDuration(long millis) {
         long seconds = millis / 1000;
         if (seconds < 60) return seconds + "s";
         long minutes = seconds / 60;
@@ -775,8 +444,6 @@ public class HomeFragment extends Fragment {
         return days + "d";
     }
 
-    
-
     private void showAddLogEntryDialog() {
         AlertDialog.Builder builder = new AlertDialog.Builder(requireContext());
         LayoutInflater inflater = requireActivity().getLayoutInflater();
@@ -822,18 +489,15 @@ public class HomeFragment extends Fragment {
                 LogEntry newLogEntry = new LogEntry();
                 newLogEntry.setTimestamp(new Date().getTime());
                 newLogEntry.setEventTypeId(selectedEventTypeForDialog.getEventTypeId());
-                newLogEntry.setEvent(selectedEventTypeForDialog.getEventName());
                 newLogEntry.setNotes(notes);
+                LocalTimeBuckets.fill(newLogEntry);
 
-                AppDatabase.databaseWriteExecutor.execute(() -> {
-                    logEntryDao.insert(newLogEntry);
+                // Batched with any other entries logged in the same moment; the callback runs once it is stored
+                LogEntryWriteBuffer.getInstance(requireContext()).enqueue(newLogEntry, rowId -> {
                     if (getActivity() != null) {
+                        // The observed queries pick up the new row themselves
                         getActivity().runOnUiThread(() -> {
-                            // If the new entry's type matches the currently selected filter, refresh all data (including count for pagination)
-                            if (selectedEventTypeForDialog.getEventTypeId() == selectedEventTypeId) {
-                                refreshAllDataAndResetPage(); // This will re-query count and go to page 1
-                            }
-                            Toast.makeText(getContext(), "Log entry added.", Toast.LENGTH_SHORT).show();
+                            Toast.makeText(getContext(), rowId != -1 ? "Log entry added." : "Log entry was not saved.", Toast.LENGTH_SHORT).show();
                         });
                     }
                 });
@@ -842,4 +506,17 @@ public class HomeFragment extends Fragment {
         });
         dialog.show();
     }
+
+    // Result of the recent entries query, built on the read pool
+    private static class RecentEntries {
+        final long eventTypeId;
+        final long count;
+        final List<LogEntryRow> firstPage;
+
+        RecentEntries(long eventTypeId, long count, List<LogEntryRow> firstPage) {
+            this.eventTypeId = eventTypeId;
+            this.count = count;
+            this.firstPage = firstPage;
+        }
+    }
 }
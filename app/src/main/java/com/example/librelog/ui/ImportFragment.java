@@ -1,6 +1,7 @@
 package com.example.librelog.ui;
 
 import android.app.Activity;
+import android.content.Context;
 import android.content.Intent;
 import android.database.Cursor;
 import android.net.Uri;
@@ -21,18 +22,11 @@ import androidx.annotation.Nullable;
 import androidx.fragment.app.Fragment;
 
 import com.example.librelog.AppDatabase;
-import com.example.librelog.LogEntry;
+import com.example.librelog.CsvImporter;
 import io.github.billpottle.librelog.R;
 
-import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
-import java.util.ArrayList;
-import java.util.Date;
-import java.util.List;
 import java.util.Locale;
 
 public class ImportFragment extends Fragment {
@@ -43,9 +37,6 @@ public class ImportFragment extends Fragment {
     private Button buttonSelectImportFile;
     private TextView textImportStatus;
 
-    // Defines the CSV format: ID,Timestamp (yyyy-MM-dd HH:mm:ss),Event,Notes
-    private final SimpleDateFormat csvDateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.getDefault());
-
 
     private final ActivityResultLauncher<Intent> filePickerLauncher =
             registerForActivityResult(new ActivityResultContracts.StartActivityForResult(), result -> {
@@ -170,86 +161,32 @@ public class ImportFragment extends Fragment {
         }
 
 
-        AppDatabase.databaseWriteExecutor.execute(() -> {
-            List<LogEntry> logEntriesToImport = new ArrayList<>();
-            int successfullyImportedCount = 0;
-            int failedLinesCount = 0;
-            StringBuilder errors = new StringBuilder();
-            String finalImportResultMessage;
-
-            try (InputStream inputStream = requireContext().getContentResolver().openInputStream(fileUri);
-                 BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream))) {
+        final Context appContext = requireContext().getApplicationContext();
+        final long totalBytes = getFileSize(fileUri);
 
-                String line;
-                int lineNumber = 0;
-                boolean isHeader = true; // To skip the header row if your CSV export includes one
+        AppDatabase.backgroundJobExecutor.execute(() -> {
+            String finalImportResultMessage;
 
-                while ((line = reader.readLine()) != null) {
-                    lineNumber++;
-                    if (isHeader) { // Assuming the CSV export format includes headers
-                        isHeader = false;
-                        // You might want to validate headers here if necessary
-                        Log.d(TAG, "Skipping header line: " + line);
-                        continue;
-                    }
+            try (InputStream inputStream = appContext.getContentResolver().openInputStream(fileUri)) {
+                if (inputStream == null) throw new IOException("Could not open the selected file.");
 
-                    // CSV format: ID,Timestamp (yyyy-MM-dd HH:mm:ss),Event,Notes
-                    String[] tokens = line.split(",", -1); // -1 to keep trailing empty strings
-
-                    if (tokens.length >= 4) { // Expect at least ID, timestamp, event, notes
-                        try {
-                            // We don't necessarily need to use the imported ID if the DB auto-generates it
-                            // int id = Integer.parseInt(tokens[0].trim());
-                            String timestampStr = tokens[1].trim();
-                            String event = unquoteCsvString(tokens[2].trim());
-                            String notes = unquoteCsvString(tokens[3].trim());
-
-                            Date timestampDate = csvDateFormat.parse(timestampStr);
-                            if (timestampDate == null) throw new ParseException("Parsed date was null", 0);
-
-                            LogEntry entry = new LogEntry();
-                            // entry.setId(id); // If you want to preserve original IDs, ensure your LogEntry allows it and DAO handles conflicts
-                            entry.setTimestamp(timestampDate.getTime());
-                            entry.setEvent(event);
-                            entry.setNotes(notes);
-
-                            logEntriesToImport.add(entry);
-                            // successfullyImportedCount++; // Count will be size of list
-                        } catch (NumberFormatException e) {
-                            Log.w(TAG, "Skipping line " + lineNumber + " due to ID parsing error: " + line, e);
-                            errors.append("Line ").append(lineNumber).append(": Invalid ID format.\n");
-                            failedLinesCount++;
-                        } catch (ParseException e) {
-                            Log.w(TAG, "Skipping line " + lineNumber + " due to timestamp parsing error: " + line, e);
-                            errors.append("Line ").append(lineNumber).append(": Invalid timestamp format (expected yyyy-MM-dd HH:mm:ss).\n");
-                            failedLinesCount++;
-                        } catch (Exception e) { // Catch other unexpected parsing issues
-                            Log.w(TAG, "Skipping line " + lineNumber + " due to unexpected error: " + line, e);
-                            errors.append("Line ").append(lineNumber).append(": ").append(e.getMessage()).append("\n");
-                            failedLinesCount++;
-                        }
-                    } else if (!line.trim().isEmpty()) { // Don't count empty lines as errors
-                        Log.w(TAG, "Skipping line " + lineNumber + " due to incorrect column count: " + line);
-                        errors.append("Line ").append(lineNumber).append(": Incorrect column count (expected 4, got ").append(tokens.length).append(").\n");
-                        failedLinesCount++;
-                    }
-                }
-
-                if (!logEntriesToImport.isEmpty()) {
-                    // Using OnConflictStrategy.REPLACE. Change if needed.
-                    db.logEntryDao().insertAll(logEntriesToImport.toArray(new LogEntry[0]));
-                    successfullyImportedCount = logEntriesToImport.size();
-                }
+                CsvImporter.Result result = new CsvImporter(db, CsvImporter.DEFAULT_CHUNK_SIZE)
+                        .importFrom(inputStream, totalBytes, this::postProgress);
+                long successfullyImportedCount = result.importedCount;
+                long failedLinesCount = result.failedLinesCount;
+                String duplicatesNote = result.duplicateCount > 0
+                        ? " " + result.duplicateCount + " entries were already in the log and were skipped."
+                        : "";
 
                 if (failedLinesCount == 0 && successfullyImportedCount > 0) {
-                    finalImportResultMessage = "Successfully imported " + successfullyImportedCount + " entries.";
+                    finalImportResultMessage = "Successfully imported " + successfullyImportedCount + " new entries." + duplicatesNote;
                 } else if (successfullyImportedCount > 0) {
-                    finalImportResultMessage = "Imported " + successfullyImportedCount + " entries. " +
-                            failedLinesCount + " lines had errors.\nDetails:\n" + errors.toString();
+                    finalImportResultMessage = "Imported " + successfullyImportedCount + " new entries." + duplicatesNote + " " +
+                            failedLinesCount + " lines had errors.\nDetails:\n" + result.errors.toString();
                 } else if (failedLinesCount > 0) {
-                    finalImportResultMessage = "Import failed. " + failedLinesCount + " lines had errors.\nFile might be empty or in wrong format.\nDetails:\n" + errors.toString();
+                    finalImportResultMessage = "Import failed. " + failedLinesCount + " lines had errors.\nFile might be empty or in wrong format.\nDetails:\n" + result.errors.toString();
                 } else {
-                    finalImportResultMessage = "No new entries found or imported from the file.";
+                    finalImportResultMessage = "No new entries found or imported from the file." + duplicatesNote;
                 }
 
 
@@ -279,16 +216,27 @@ public class ImportFragment extends Fragment {
         });
     }
 
-    // Helper function to remove surrounding quotes and unescape double quotes from CSV fields
-    private String unquoteCsvString(String data) {
-        if (data == null) return "";
-        String trimmedData = data.trim();
-        if (trimmedData.startsWith("\"") && trimmedData.endsWith("\"")) {
-            // Remove surrounding quotes
-            trimmedData = trimmedData.substring(1, trimmedData.length() - 1);
-            // Replace "" with "
-            return trimmedData.replaceAll("\"\"", "\"");
+    // Called after every committed chunk of the import
+    private void postProgress(long rowsImported, long bytesRead, long totalBytes) {
+        if (!isAdded() || getActivity() == null) return;
+        final String message = totalBytes > 0
+                ? String.format(Locale.US, "Importing... %,d entries (%d%%)", rowsImported, bytesRead * 100 / totalBytes)
+                : String.format(Locale.US, "Importing... %,d entries", rowsImported);
+        getActivity().runOnUiThread(() -> {
+            if (textImportStatus != null) textImportStatus.setText(message);
+        });
+    }
+
+    // Size of the selected document in bytes, or -1 if the provider does not report it
+    private long getFileSize(Uri uri) {
+        if (getContext() == null || !"content".equals(uri.getScheme())) return -1;
+        try (Cursor cursor = getContext().getContentResolver().query(uri, new String[]{OpenableColumns.SIZE}, null, null, null)) {
+            if (cursor != null && cursor.moveToFirst() && !cursor.isNull(0)) {
+                return cursor.getLong(0);
+            }
+        } catch (Exception e) {
+            Log.w(TAG, "Could not determine file size", e);
         }
-        return trimmedData; // Return as is if not quoted
+        return -1;
     }
 }
@@ -1,11 +1,13 @@
 package com.example.librelog.ui;
 
 import android.app.Activity;
+import android.content.Context;
 import android.content.Intent;
 import android.database.Cursor;
 import android.net.Uri;
 import android.os.Bundle;
 import android.provider.OpenableColumns;
+import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -20,22 +22,23 @@ import androidx.annotation.Nullable;
 import androidx.fragment.app.Fragment;
 
 import com.example.librelog.AppDatabase;
-import com.example.librelog.LogEntry;
+import com.example.librelog.CsvExporter;
 import io.github.billpottle.librelog.R;
 
 import java.io.IOException;
 import java.io.OutputStream;
-import java.io.OutputStreamWriter;
 import java.text.SimpleDateFormat;
 import java.util.Date;
-import java.util.List;
 import java.util.Locale;
 
 public class OutputFragment extends Fragment {
 
+    private static final String TAG = "OutputFragment";
+
     private AppDatabase db;
     private Button exportButton;
     private TextView exportNotesTextView;
+    private TextView exportProgressTextView;
 
     private final ActivityResultLauncher<Intent> createFileLauncher =
             registerForActivityResult(new ActivityResultContracts.StartActivityForResult(), result -> {
@@ -57,6 +60,7 @@ public class OutputFragment extends Fragment {
         db = AppDatabase.getDatabase(requireContext().getApplicationContext());
         exportButton = view.findViewById(R.id.button_export_csv);
         exportNotesTextView = view.findViewById(R.id.text_export_notes); // Although not directly used in logic, good to have reference if needed
+        exportProgressTextView = view.findViewById(R.id.text_export_progress);
 
         exportButton.setOnClickListener(v -> launchCreateFileIntent());
 
@@ -75,56 +79,51 @@ public class OutputFragment extends Fragment {
     }
 
     private void exportDataToUri(Uri uri) {
-        AppDatabase.databaseWriteExecutor.execute(() -> {
-            List<LogEntry> logEntries = db.logEntryDao().getAllLogEntriesNoFilter(); // Assuming this method exists and fetches all data
+        if (getContext() == null) return;
+        final Context appContext = requireContext().getApplicationContext();
+        exportButton.setEnabled(false);
+        exportProgressTextView.setText("Exporting...");
+        exportProgressTextView.setVisibility(View.VISIBLE);
+
+        AppDatabase.backgroundJobExecutor.execute(() -> {
+            String resultMessage;
+            long rowsExported = 0;
+            try (OutputStream outputStream = appContext.getContentResolver().openOutputStream(uri)) {
+                if (outputStream == null) throw new IOException("Could not open the selected file.");
+                rowsExported = new CsvExporter(db).export(outputStream, (rowsWritten, totalRows, rowsPerSecond) ->
+                        postProgress(String.format(Locale.US, "Exported %,d of %,d entries (%,.0f rows/s)",
+                                rowsWritten, totalRows, rowsPerSecond)));
+                resultMessage = rowsExported == 0
+                        ? "No data to export."
+                        : "Data exported successfully to " + getFileName(appContext, uri);
+            } catch (IOException | RuntimeException e) {
+                Log.e(TAG, "Error exporting data", e);
+                resultMessage = "Error exporting data: " + e.getMessage();
+            }
 
+            final String messageForUi = resultMessage;
             if (getActivity() == null) return;
-
             getActivity().runOnUiThread(() -> {
-                if (logEntries == null || logEntries.isEmpty()) {
-                    Toast.makeText(getContext(), "No data to export.", Toast.LENGTH_SHORT).show();
-                    return;
-                }
-
-                try (OutputStream outputStream = requireContext().getContentResolver().openOutputStream(uri);
-                     OutputStreamWriter writer = new OutputStreamWriter(outputStream)) {
-
-                    // CSV Header
-                    writer.append("ID,Timestamp,Event,Notes\n");
-
-                    // CSV Data
-                    SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.getDefault());
-                    for (LogEntry entry : logEntries) {
-                        writer.append(String.valueOf(entry.getId()));
-                        writer.append(",");
-                        writer.append(dateFormat.format(new Date(entry.getTimestamp())));
-                        writer.append(",");
-                        writer.append("\"").append(escapeCsvString(entry.getEvent())).append("\"");
-                        writer.append(",");
-                        writer.append("\"").append(escapeCsvString(entry.getNotes())).append("\"");
-                        writer.append("\n");
-                    }
-                    writer.flush();
-                    Toast.makeText(getContext(), "Data exported successfully to " + getFileName(uri), Toast.LENGTH_LONG).show();
-                } catch (IOException e) {
-                    Toast.makeText(getContext(), "Error exporting data: " + e.getMessage(), Toast.LENGTH_LONG).show();
+                if (exportButton != null) exportButton.setEnabled(true);
+                if (getContext() != null) {
+                    Toast.makeText(getContext(), messageForUi, Toast.LENGTH_LONG).show();
                 }
             });
         });
     }
 
-    // Helper to escape strings for CSV (handles commas and quotes within fields)
-    private String escapeCsvString(String data) {
-        if (data == null) return "";
-        String escapedData = data.replaceAll("\"", "\"\""); // Escape double quotes
-        return escapedData;
+    private void postProgress(String message) {
+        if (getActivity() == null) return;
+        getActivity().runOnUiThread(() -> {
+            if (exportProgressTextView != null) exportProgressTextView.setText(message);
+        });
     }
 
     // Helper method to get the file name from URI (optional, for display in Toast)
-    private String getFileName(Uri uri) {
+    private String getFileName(Context context, Uri uri) {
         String fileName = null;
-        if (uri.getScheme().equals("content")) {
-            try (Cursor cursor = requireContext().getContentResolver().query(uri, null, null, null, null)) {
+        if ("content".equals(uri.getScheme())) {
+            try (Cursor cursor = context.getContentResolver().query(uri, null, null, null, null)) {
                 if (cursor != null && cursor.moveToFirst()) {
                     int nameIndex = cursor.getColumnIndex(OpenableColumns.DISPLAY_NAME);
                     if (nameIndex != -1) {
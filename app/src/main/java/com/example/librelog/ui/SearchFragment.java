@@ -0,0 +1,246 @@
+package com.example.librelog.ui;
+
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.text.Editable;
+import android.text.TextWatcher;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.view.inputmethod.EditorInfo;
+import android.widget.AdapterView;
+import android.widget.ArrayAdapter;
+import android.widget.Spinner;
+import android.widget.TextView;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.fragment.app.Fragment;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.example.librelog.AppDatabase;
+import com.example.librelog.EventType;
+import com.example.librelog.LogArchive;
+import com.example.librelog.LogEntryAdapter;
+import com.example.librelog.LogEntryRow;
+import com.example.librelog.LogEntrySearch;
+import com.example.librelog.ObservableQuery;
+import io.github.billpottle.librelog.R;
+
+import com.google.android.material.textfield.TextInputEditText;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+// Full-text search over log entries (LogEntrySearch), filtered by event type and time range.
+// Searches run when typing pauses; pages of results load as the list is scrolled.
+public class SearchFragment extends Fragment {
+
+    private static final long SEARCH_DELAY_MS = 250; // Typing pause before a search runs
+    private static final int PREFETCH_DISTANCE = 20; // Rows left below the screen when the next page loads
+    private static final long DAY_MILLIS = 24 * 60 * 60 * 1000L;
+    private static final String[] TIME_RANGE_LABELS = {"All time", "Last 24 hours", "Last 7 days", "Last 30 days", "Last year"};
+    private static final long[] TIME_RANGE_MILLIS = {0, DAY_MILLIS, 7 * DAY_MILLIS, 30 * DAY_MILLIS, 365 * DAY_MILLIS};
+
+    private AppDatabase db;
+    private LogEntrySearch logEntrySearch;
+    private ObservableQuery<List<EventType>> eventTypesQuery;
+    private final List<Long> eventTypeIds = new ArrayList<>(); // Parallel to the type spinner's items
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Runnable startSearch = this::startSearch;
+
+    private TextInputEditText editTextSearch;
+    private Spinner spinnerEventType;
+    private Spinner spinnerTimeRange;
+    private TextView textViewStatus;
+    private LogEntryAdapter searchResultsAdapter;
+    private LinearLayoutManager searchResultsLayoutManager;
+
+    // The current search; pages of earlier searches still in flight are dropped
+    private int generation;
+    private String searchText = "";
+    private long searchEventTypeId = LogEntrySearch.ALL_EVENT_TYPES;
+    private int searchRange;
+    private long searchFrom;
+    private int nextPage;
+    private boolean loading;
+    private boolean exhausted = true;
+    private int resultCount;
+
+    @Override
+    public void onCreate(@Nullable Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        db = AppDatabase.getDatabase(requireContext().getApplicationContext());
+        logEntrySearch = new LogEntrySearch(db.logEntryDao(), new LogArchive(db), db.eventTypeNames());
+        eventTypesQuery = new ObservableQuery<>(db, "searchEventTypes",
+                db.eventTypeDao()::getAllEventTypes, this::onEventTypesLoaded, "event_types");
+    }
+
+    @Nullable
+    @Override
+    public View onCreateView(@NonNull LayoutInflater inflater, @Nullable ViewGroup container, @Nullable Bundle savedInstanceState) {
+        View view = inflater.inflate(R.layout.fragment_search, container, false);
+        editTextSearch = view.findViewById(R.id.edit_text_search);
+        spinnerEventType = view.findViewById(R.id.spinner_search_event_type);
+        spinnerTimeRange = view.findViewById(R.id.spinner_search_time_range);
+        textViewStatus = view.findViewById(R.id.text_view_search_status);
+        RecyclerView recyclerView = view.findViewById(R.id.recycler_view_search_results);
+
+        searchResultsLayoutManager = new LinearLayoutManager(getContext());
+        recyclerView.setLayoutManager(searchResultsLayoutManager);
+        searchResultsAdapter = new LogEntryAdapter(new ArrayList<>());
+        recyclerView.setAdapter(searchResultsAdapter);
+        recyclerView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+                int lastVisible = searchResultsLayoutManager.findLastVisibleItemPosition();
+                if (lastVisible >= searchResultsAdapter.getItemCount() - PREFETCH_DISTANCE) {
+                    loadNextPage();
+                }
+            }
+        });
+
+        editTextSearch.addTextChangedListener(new TextWatcher() {
+            @Override
+            public void beforeTextChanged(CharSequence s, int start, int count, int after) {
+            }
+
+            @Override
+            public void onTextChanged(CharSequence s, int start, int before, int count) {
+            }
+
+            @Override
+            public void afterTextChanged(Editable s) {
+                mainHandler.removeCallbacks(startSearch);
+                mainHandler.postDelayed(startSearch, SEARCH_DELAY_MS);
+            }
+        });
+        editTextSearch.setOnEditorActionListener((v, actionId, event) -> {
+            if (actionId != EditorInfo.IME_ACTION_SEARCH) return false;
+            mainHandler.removeCallbacks(startSearch);
+            startSearch();
+            return true;
+        });
+
+        ArrayAdapter<String> timeRangeAdapter = new ArrayAdapter<>(requireContext(),
+                android.R.layout.simple_spinner_item, TIME_RANGE_LABELS);
+        timeRangeAdapter.setDropDownViewResource(android.R.layout.simple_spinner_dropdown_item);
+        spinnerTimeRange.setAdapter(timeRangeAdapter);
+        AdapterView.OnItemSelectedListener filterChanged = new AdapterView.OnItemSelectedListener() {
+            @Override
+            public void onItemSelected(AdapterView<?> parent, View view, int position, long id) {
+                startSearchIfChanged();
+            }
+
+            @Override
+            public void onNothingSelected(AdapterView<?> parent) {
+            }
+        };
+        spinnerTimeRange.setOnItemSelectedListener(filterChanged);
+        spinnerEventType.setOnItemSelectedListener(filterChanged);
+        return view;
+    }
+
+    @Override
+    public void onStart() {
+        super.onStart();
+        eventTypesQuery.start();
+    }
+
+    @Override
+    public void onStop() {
+        super.onStop();
+        eventTypesQuery.stop();
+        mainHandler.removeCallbacks(startSearch);
+    }
+
+    private void onEventTypesLoaded(List<EventType> eventTypes) {
+        if (spinnerEventType == null) return;
+        long selected = selectedEventTypeId();
+        List<String> names = new ArrayList<>();
+        eventTypeIds.clear();
+        names.add("All event types");
+        eventTypeIds.add(LogEntrySearch.ALL_EVENT_TYPES);
+        for (EventType type : eventTypes) {
+            names.add(type.getEventName());
+            eventTypeIds.add((long) type.getEventTypeId());
+        }
+        ArrayAdapter<String> adapter = new ArrayAdapter<>(requireContext(),
+                android.R.layout.simple_spinner_item, names);
+        adapter.setDropDownViewResource(android.R.layout.simple_spinner_dropdown_item);
+        spinnerEventType.setAdapter(adapter);
+        spinnerEventType.setSelection(Math.max(0, eventTypeIds.indexOf(selected)), false);
+    }
+
+    private long selectedEventTypeId() {
+        int position = spinnerEventType.getSelectedItemPosition();
+        return position >= 0 && position < eventTypeIds.size() ? eventTypeIds.get(position) : LogEntrySearch.ALL_EVENT_TYPES;
+    }
+
+    // Spinners report their selection again whenever their adapter is set
+    private void startSearchIfChanged() {
+        if (selectedEventTypeId() != searchEventTypeId || Math.max(0, spinnerTimeRange.getSelectedItemPosition()) != searchRange) {
+            startSearch();
+        }
+    }
+
+    private void startSearch() {
+        if (editTextSearch == null) return;
+        generation++;
+        searchText = editTextSearch.getText() != null ? editTextSearch.getText().toString() : "";
+        searchEventTypeId = selectedEventTypeId();
+        searchRange = Math.max(0, spinnerTimeRange.getSelectedItemPosition());
+        searchFrom = TIME_RANGE_MILLIS[searchRange] == 0 ? 0 : System.currentTimeMillis() - TIME_RANGE_MILLIS[searchRange];
+        nextPage = 0;
+        resultCount = 0;
+        loading = false;
+        exhausted = LogEntrySearch.toMatchQuery(searchText) == null;
+        if (exhausted) {
+            searchResultsAdapter.setLogEntries(new ArrayList<>());
+            textViewStatus.setText("Type to search your log entries.");
+            return;
+        }
+        textViewStatus.setText("Searching…");
+        loadNextPage();
+    }
+
+    private void loadNextPage() {
+        if (loading || exhausted) return;
+        loading = true;
+        final int searchGeneration = generation;
+        final int page = nextPage;
+        final String text = searchText;
+        final long eventTypeId = searchEventTypeId;
+        final long from = searchFrom;
+        AppDatabase.databaseReadExecutor.execute(() -> {
+            List<LogEntryRow> rows = logEntrySearch.search(text, eventTypeId, from, Long.MAX_VALUE, page);
+            mainHandler.post(() -> onPageLoaded(searchGeneration, page, rows));
+        });
+    }
+
+    private void onPageLoaded(int searchGeneration, int page, List<LogEntryRow> rows) {
+        if (searchGeneration != generation || searchResultsAdapter == null) return;
+        loading = false;
+        if (page == 0) {
+            searchResultsAdapter.setLogEntries(rows);
+            searchResultsLayoutManager.scrollToPosition(0);
+        } else {
+            searchResultsAdapter.appendLogEntries(rows);
+        }
+        resultCount += rows.size();
+        nextPage = page + 1;
+        exhausted = rows.size() < LogEntrySearch.PAGE_SIZE || resultCount >= LogEntrySearch.RESULT_WINDOW;
+
+        if (resultCount == 0) {
+            textViewStatus.setText("No matching entries.");
+        } else if (resultCount >= LogEntrySearch.RESULT_WINDOW) {
+            textViewStatus.setText(String.format(Locale.getDefault(),
+                    "Best %,d of the most recent matches. Add words or filters to narrow the search.", resultCount));
+        } else {
+            textViewStatus.setText(String.format(Locale.getDefault(), exhausted ? "%,d matches" : "%,d+ matches", resultCount));
+        }
+    }
+}
@@ -1,12 +1,16 @@
 package com.example.librelog.ui;
 
+import android.content.Context;
 import android.content.DialogInterface;
 import android.os.Bundle;
 import android.text.TextUtils;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
+import android.widget.AdapterView;
+import android.widget.ArrayAdapter;
 import android.widget.EditText;
+import android.widget.Spinner;
 import android.widget.TextView;
 import android.widget.Toast;
 
@@ -18,15 +22,18 @@ import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.example.librelog.AppDatabase;
+import com.example.librelog.ArchiveBlockDao;
 import com.example.librelog.EventType;
 import com.example.librelog.EventTypeAdapter;
 import com.example.librelog.EventTypeDao;
+import com.example.librelog.LogArchive;
 import io.github.billpottle.librelog.R;
 import com.google.android.material.floatingactionbutton.FloatingActionButton;
 import com.google.android.material.textfield.TextInputEditText;
 import com.google.android.material.textfield.TextInputLayout;
 
 import java.util.List;
+import java.util.Locale;
 
 public class SettingsFragment extends Fragment {
 
@@ -34,8 +41,14 @@ public class SettingsFragment extends Fragment {
     private EventTypeAdapter adapter;
     private RecyclerView recyclerViewEventTypes;
     private TextView textViewNoEventTypes;
+    private TextView textViewCacheStats;
+    private TextView textViewArchiveStats;
     private AppDatabase db;
 
+    // Choices of the archive spinner, in months; NEVER keeps everything in log_entries
+    private static final int[] ARCHIVE_AFTER_MONTHS = {LogArchive.NEVER, 6, 12, 24, 60};
+    private static final String[] ARCHIVE_AFTER_LABELS = {"Never", "6 months", "1 year", "2 years", "5 years"};
+
     private static final int DEFAULT_EVENT_TYPE_ID = 1; // Assuming 'Default Event' created by callback gets ID 1
 
     @Override
@@ -52,6 +65,9 @@ public class SettingsFragment extends Fragment {
 
         recyclerViewEventTypes = view.findViewById(R.id.recycler_view_event_types);
         textViewNoEventTypes = view.findViewById(R.id.text_view_no_event_types);
+        textViewCacheStats = view.findViewById(R.id.text_view_cache_stats);
+        textViewArchiveStats = view.findViewById(R.id.text_view_archive_stats);
+        setupArchiveSpinner(view.findViewById(R.id.spinner_archive_after));
         FloatingActionButton fabAddEventType = view.findViewById(R.id.fab_add_event_type);
 
         recyclerViewEventTypes.setLayoutManager(new LinearLayoutManager(getContext()));
@@ -78,8 +94,56 @@ public class SettingsFragment extends Fragment {
         return view;
     }
 
+    @Override
+    public void onResume() {
+        super.onResume();
+        textViewCacheStats.setText(db.dashboardCache().describeStats());
+        loadArchiveStats();
+    }
+
+    private void setupArchiveSpinner(Spinner spinner) {
+        ArrayAdapter<String> archiveAdapter = new ArrayAdapter<>(requireContext(),
+                android.R.layout.simple_spinner_item, ARCHIVE_AFTER_LABELS);
+        archiveAdapter.setDropDownViewResource(android.R.layout.simple_spinner_dropdown_item);
+        spinner.setAdapter(archiveAdapter);
+        int current = LogArchive.getArchiveAfterMonths(requireContext());
+        for (int i = 0; i < ARCHIVE_AFTER_MONTHS.length; i++) {
+            if (ARCHIVE_AFTER_MONTHS[i] == current) spinner.setSelection(i, false);
+        }
+        spinner.setOnItemSelectedListener(new AdapterView.OnItemSelectedListener() {
+            @Override
+            public void onItemSelected(AdapterView<?> parent, View view, int position, long id) {
+                int months = ARCHIVE_AFTER_MONTHS[position];
+                if (months == LogArchive.getArchiveAfterMonths(requireContext())) return; // Set again with the adapter
+                LogArchive.setArchiveAfterMonths(requireContext(), months);
+                // A shorter age archives more now; a longer one only stops archiving, entries stay archived
+                Context appContext = requireContext().getApplicationContext();
+                AppDatabase.backgroundJobExecutor.execute(() -> {
+                    LogArchive.archiveIfNeeded(appContext);
+                    loadArchiveStats();
+                });
+            }
+
+            @Override
+            public void onNothingSelected(AdapterView<?> parent) {
+            }
+        });
+    }
+
+    private void loadArchiveStats() {
+        AppDatabase.databaseReadExecutor.execute(() -> {
+            ArchiveBlockDao.Stats stats = db.archiveBlockDao().getStats();
+            String text = stats.blocks == 0 ? "Archive: empty"
+                    : String.format(Locale.getDefault(), "Archive: %,d entries in %,d monthly blocks, %,d KB",
+                    stats.entries, stats.blocks, (stats.bytes + 1023) / 1024);
+            if (getActivity() != null) {
+                getActivity().runOnUiThread(() -> textViewArchiveStats.setText(text));
+            }
+        });
+    }
+
     private void loadEventTypes() {
-        AppDatabase.databaseWriteExecutor.execute(() -> {
+        AppDatabase.databaseReadExecutor.execute(() -> {
             List<EventType> eventTypes = eventTypeDao.getAllEventTypes();
             if (getActivity() != null) {
                 getActivity().runOnUiThread(() -> {
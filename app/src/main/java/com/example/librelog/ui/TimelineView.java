@@ -0,0 +1,328 @@
+package com.example.librelog.ui;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.util.AttributeSet;
+import android.util.TypedValue;
+import android.view.GestureDetector;
+import android.view.MotionEvent;
+import android.view.ScaleGestureDetector;
+import android.view.View;
+import android.view.ViewConfiguration;
+
+import androidx.annotation.Nullable;
+
+import com.example.librelog.TimelineLoader;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+
+// A line chart of entries over time (TimelineLoader.Timeline) that can be panned with one finger,
+// zoomed with two and reset to the whole history with a double tap. Gestures only move the visible
+// range and redraw the points already loaded; the listener is told about the new range so the owner
+// can load it at the matching resolution. The range is kept between MIN_SPAN_MILLIS and the type's
+// history up to now. Labels are formatted when the range or data change, never per frame.
+public class TimelineView extends View {
+
+    public interface OnRangeChangeListener {
+        void onVisibleRangeChanged(long from, long to); // Once per gesture step; debounce before loading
+    }
+
+    private final Paint linePaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint fillPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint axisLabelPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint gridPaint = new Paint();
+    private final Paint noDataPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Path linePath = new Path();
+    private final Path fillPath = new Path();
+    private final GestureDetector gestureDetector;
+    private final ScaleGestureDetector scaleGestureDetector;
+    private final SimpleDateFormat dayFormat = new SimpleDateFormat("yyyy-MM-dd", Locale.getDefault());
+    private final SimpleDateFormat timeFormat = new SimpleDateFormat("MM-dd HH:mm", Locale.getDefault());
+    private final Date labelDate = new Date();
+    private final float density;
+    private final int touchSlop;
+
+    private OnRangeChangeListener listener;
+    private String noDataText = "No data";
+
+    private TimelineLoader.Timeline timeline;
+    private long from;
+    private long to;
+
+    // Set when the range or data change
+    private String fromLabel = "";
+    private String toLabel = "";
+    private String peakLabel = ""; // e.g. "12 per day"
+
+    // The gesture in progress, claimed from the dashboard's scroll view once it is a horizontal
+    // drag or a pinch; vertical drags are left to the scroll view
+    private float downX;
+    private float downY;
+    private boolean gestureClaimed;
+
+    public TimelineView(Context context) {
+        this(context, null);
+    }
+
+    public TimelineView(Context context, @Nullable AttributeSet attrs) {
+        super(context, attrs);
+        density = getResources().getDisplayMetrics().density;
+        touchSlop = ViewConfiguration.get(context).getScaledTouchSlop();
+        linePaint.setColor(Color.rgb(52, 152, 219));
+        linePaint.setStyle(Paint.Style.STROKE);
+        linePaint.setStrokeWidth(dp(1.5f));
+        linePaint.setStrokeJoin(Paint.Join.ROUND);
+        fillPaint.setColor(Color.argb(48, 52, 152, 219));
+        fillPaint.setStyle(Paint.Style.FILL);
+        axisLabelPaint.setColor(Color.DKGRAY);
+        axisLabelPaint.setTextSize(sp(10));
+        gridPaint.setColor(Color.LTGRAY);
+        gridPaint.setStrokeWidth(dp(1) / 2);
+        noDataPaint.setColor(Color.rgb(247, 189, 51)); // Same as HistogramView
+        noDataPaint.setTextSize(sp(12));
+        noDataPaint.setTextAlign(Paint.Align.CENTER);
+
+        gestureDetector = new GestureDetector(context, new GestureDetector.SimpleOnGestureListener() {
+            @Override
+            public boolean onDown(MotionEvent e) {
+                return true;
+            }
+
+            @Override
+            public boolean onScroll(@Nullable MotionEvent e1, MotionEvent e2, float distanceX, float distanceY) {
+                float width = plotRight() - plotLeft();
+                if (width <= 0 || !gestureClaimed) return false;
+                long shift = (long) ((double) distanceX / width * (to - from));
+                setRangeFromGesture(from + shift, to + shift);
+                return true;
+            }
+
+            @Override
+            public boolean onDoubleTap(MotionEvent e) {
+                if (timeline == null || timeline.historyStart < 0) return false;
+                setRangeFromGesture(timeline.historyStart, System.currentTimeMillis());
+                return true;
+            }
+        });
+        scaleGestureDetector = new ScaleGestureDetector(context, new ScaleGestureDetector.SimpleOnScaleGestureListener() {
+            @Override
+            public boolean onScaleBegin(ScaleGestureDetector detector) {
+                claimGesture();
+                return true;
+            }
+
+            @Override
+            public boolean onScale(ScaleGestureDetector detector) {
+                float width = plotRight() - plotLeft();
+                if (width <= 0 || detector.getScaleFactor() <= 0) return false;
+                // Zoom around the time under the fingers
+                double focus = Math.min(1, Math.max(0, (detector.getFocusX() - plotLeft()) / width));
+                long span = to - from;
+                long newSpan = clampSpan((long) (span / detector.getScaleFactor()));
+                long focusTime = from + (long) (focus * span);
+                long newFrom = focusTime - (long) (focus * newSpan);
+                setRangeFromGesture(newFrom, newFrom + newSpan);
+                return true;
+            }
+        });
+    }
+
+    public void setOnRangeChangeListener(@Nullable OnRangeChangeListener listener) {
+        this.listener = listener;
+    }
+
+    public void setNoDataText(String noDataText) {
+        this.noDataText = noDataText;
+        invalidate();
+    }
+
+    public long getFrom() {
+        return from;
+    }
+
+    public long getTo() {
+        return to;
+    }
+
+    // Shows the loaded points; with adoptRange the visible range becomes the timeline's own
+    // (a new type), otherwise the current range is kept and the points are drawn where they fall.
+    public void setTimeline(@Nullable TimelineLoader.Timeline timeline, boolean adoptRange) {
+        this.timeline = timeline;
+        if (timeline != null) {
+            if (adoptRange || to <= from) {
+                from = timeline.from;
+                to = timeline.to;
+            }
+            peakLabel = formatCount(timeline.maxY) + " per " + formatBucket(timeline.bucketMillis);
+        }
+        updateRangeLabels();
+        invalidate();
+    }
+
+    public void clear() {
+        setTimeline(null, true);
+    }
+
+    private void setRangeFromGesture(long newFrom, long newTo) {
+        long now = System.currentTimeMillis();
+        long earliest = timeline != null && timeline.historyStart >= 0 ? timeline.historyStart : now - TimelineLoader.MIN_SPAN_MILLIS;
+        long span = clampSpan(newTo - newFrom);
+        // Slide back inside [earliest, now] without changing the span
+        newFrom = Math.max(earliest, Math.min(newFrom, now - span));
+        newTo = Math.min(now, newFrom + span);
+        if (newFrom == from && newTo == to) return;
+        from = newFrom;
+        to = newTo;
+        updateRangeLabels();
+        invalidate();
+        if (listener != null) listener.onVisibleRangeChanged(from, to);
+    }
+
+    private long clampSpan(long span) {
+        long now = System.currentTimeMillis();
+        long maxSpan = TimelineLoader.MIN_SPAN_MILLIS;
+        if (timeline != null && timeline.historyStart >= 0) {
+            maxSpan = Math.max(maxSpan, now - timeline.historyStart);
+        }
+        return Math.max(TimelineLoader.MIN_SPAN_MILLIS, Math.min(span, maxSpan));
+    }
+
+    private void updateRangeLabels() {
+        if (to <= from) {
+            fromLabel = "";
+            toLabel = "";
+            return;
+        }
+        SimpleDateFormat format = to - from > 2 * TimelineLoader.DAY_MILLIS ? dayFormat : timeFormat;
+        labelDate.setTime(from);
+        fromLabel = format.format(labelDate);
+        labelDate.setTime(to);
+        toLabel = format.format(labelDate);
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        super.onDraw(canvas);
+        TimelineLoader.Timeline timeline = this.timeline;
+        if (timeline == null || timeline.maxY == 0 || to <= from) {
+            canvas.drawText(noDataText, getWidth() / 2f, getHeight() / 2f, noDataPaint);
+            return;
+        }
+
+        float labelHeight = axisLabelPaint.getTextSize();
+        float left = plotLeft();
+        float right = plotRight();
+        float top = getPaddingTop() + labelHeight + dp(4);
+        float bottom = getHeight() - getPaddingBottom() - labelHeight - dp(6);
+        float plotWidth = right - left;
+        float plotHeight = bottom - top;
+
+        // Top and bottom grid lines with the peak count and the bucket width
+        canvas.drawLine(left, top, right, top, gridPaint);
+        canvas.drawLine(left, bottom, right, bottom, gridPaint);
+        axisLabelPaint.setTextAlign(Paint.Align.LEFT);
+        canvas.drawText(peakLabel, left, top - dp(3), axisLabelPaint);
+        canvas.drawText(fromLabel, left, bottom + labelHeight + dp(3), axisLabelPaint);
+        axisLabelPaint.setTextAlign(Paint.Align.RIGHT);
+        canvas.drawText(toLabel, right, bottom + labelHeight + dp(3), axisLabelPaint);
+
+        // The points in view plus one on each side, so the line runs to the edges
+        int first = 0;
+        while (first + 1 < timeline.size && timeline.x[first + 1] < from) first++;
+        int last = timeline.size - 1;
+        while (last - 1 > first && timeline.x[last - 1] > to) last--;
+        if (last < first) return;
+
+        double pixelsPerMilli = plotWidth / (double) (to - from);
+        linePath.rewind();
+        fillPath.rewind();
+        float firstX = 0;
+        float x = 0;
+        for (int i = first; i <= last; i++) {
+            x = left + (float) ((timeline.x[i] - from) * pixelsPerMilli);
+            float y = bottom - plotHeight * timeline.y[i] / timeline.maxY;
+            if (i == first) {
+                firstX = x;
+                linePath.moveTo(x, y);
+                fillPath.moveTo(x, bottom);
+            } else {
+                linePath.lineTo(x, y);
+            }
+            fillPath.lineTo(x, y);
+        }
+        fillPath.lineTo(x, bottom);
+        fillPath.lineTo(firstX, bottom);
+        fillPath.close();
+
+        canvas.save();
+        canvas.clipRect(left, top - dp(1), right, bottom);
+        canvas.drawPath(fillPath, fillPaint);
+        canvas.drawPath(linePath, linePaint);
+        canvas.restore();
+    }
+
+    @Override
+    public boolean onTouchEvent(MotionEvent event) {
+        if (timeline == null || timeline.historyStart < 0) {
+            return super.onTouchEvent(event);
+        }
+        switch (event.getActionMasked()) {
+            case MotionEvent.ACTION_DOWN:
+                downX = event.getX();
+                downY = event.getY();
+                gestureClaimed = false;
+                break;
+            case MotionEvent.ACTION_MOVE:
+                float dx = Math.abs(event.getX() - downX);
+                if (!gestureClaimed && dx > touchSlop && dx > Math.abs(event.getY() - downY)) {
+                    claimGesture(); // Horizontal drags pan the chart, not the dashboard
+                }
+                break;
+        }
+        boolean handled = scaleGestureDetector.onTouchEvent(event);
+        if (!scaleGestureDetector.isInProgress()) {
+            handled |= gestureDetector.onTouchEvent(event);
+        }
+        if (event.getActionMasked() == MotionEvent.ACTION_UP) {
+            performClick();
+        }
+        return handled || super.onTouchEvent(event);
+    }
+
+    private void claimGesture() {
+        gestureClaimed = true;
+        if (getParent() != null) getParent().requestDisallowInterceptTouchEvent(true);
+    }
+
+    @Override
+    public boolean performClick() {
+        return super.performClick();
+    }
+
+    private float plotLeft() {
+        return getPaddingLeft();
+    }
+
+    private float plotRight() {
+        return getWidth() - getPaddingRight();
+    }
+
+    private static String formatCount(float count) {
+        return count == (long) count ? String.valueOf((long) count) : String.format(Locale.getDefault(), "%.1f", count);
+    }
+
+    private static String formatBucket(long bucketMillis) {
+        if (bucketMillis >= TimelineLoader.DAY_MILLIS) return "day";
+        if (bucketMillis >= TimelineLoader.HOUR_MILLIS) {
+            long hours = bucketMillis / TimelineLoader.HOUR_MILLIS;
+            return hours == 1 ? "hour" : hours + " h";
+        }
+        long minutes = bucketMillis / TimelineLoader.MINUTE_MILLIS;
+        return minutes == 1 ? "minute" : minutes + " min";
+    }
+}
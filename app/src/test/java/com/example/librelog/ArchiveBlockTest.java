@@ -0,0 +1,88 @@
+package com.example.librelog;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ArchiveBlockTest {
+
+    private static LogEntry entry(int id, long timestamp, String notes) {
+        LogEntry entry = new LogEntry();
+        entry.setId(id);
+        entry.setTimestamp(timestamp);
+        entry.setEventTypeId(3);
+        entry.setNotes(notes);
+        return entry;
+    }
+
+    @Test
+    public void roundTripsEntriesInTimestampOrder() {
+        long base = 1_700_000_000_000L;
+        List<LogEntry> entries = Arrays.asList(
+                entry(12, base + 3_600_000, "later"),
+                entry(5, base, null),
+                entry(40, base, "same second, higher id"),
+                entry(7, base + 86_400_000, ""),
+                entry(9, base + 60_000, "ünïcödé \"quoted\"\nline"));
+
+        ArchiveBlock block = ArchiveBlock.encode(3, 202311, "Europe/Paris", entries);
+        assertEquals(5, block.getCount());
+        assertEquals(base, block.getFirstTimestamp());
+        assertEquals(base + 86_400_000, block.getLastTimestamp());
+        assertEquals("Europe/Paris", block.getTimeZone());
+
+        List<LogEntry> decoded = block.decode();
+        int[] ids = new int[decoded.size()];
+        for (int i = 0; i < ids.length; i++) ids[i] = decoded.get(i).getId();
+        assertArrayEquals(new int[]{5, 40, 9, 12, 7}, ids);
+        assertNull(decoded.get(0).getNotes());
+        assertEquals("same second, higher id", decoded.get(1).getNotes());
+        assertEquals("ünïcödé \"quoted\"\nline", decoded.get(2).getNotes());
+        assertEquals("", decoded.get(4).getNotes()); // Empty is not null
+        for (LogEntry entry : decoded) {
+            assertEquals(Integer.valueOf(3), entry.getEventTypeId());
+            assertEquals(LogEntry.hashNotes(entry.getNotes()), entry.getNotesHash());
+        }
+        assertArrayEquals(new long[]{base, base, base + 60_000, base + 3_600_000, base + 86_400_000},
+                block.decodeTimestamps());
+    }
+
+    @Test
+    public void keepsMillisecondsAndPacksSeconds() {
+        List<LogEntry> seconds = new ArrayList<>();
+        List<LogEntry> millis = new ArrayList<>();
+        long timestamp = 1_700_000_000_000L;
+        for (int i = 0; i < 1000; i++) {
+            timestamp += 3_600_000 + i * 1000L; // About an hour apart, whole seconds
+            seconds.add(entry(i + 1, timestamp, "walk"));
+            millis.add(entry(i + 1, timestamp + i % 7, "walk"));
+        }
+
+        ArchiveBlock secondBlock = ArchiveBlock.encode(3, 202311, "UTC", seconds);
+        ArchiveBlock milliBlock = ArchiveBlock.encode(3, 202311, "UTC", millis);
+        // One unit varint, then 2-3 bytes per gap and 1 per id step
+        assertTrue(secondBlock.getKeys().length < 1000 * 4);
+        assertTrue(secondBlock.getNotes().length < 100); // The same note compresses to almost nothing
+        long[] secondTimestamps = secondBlock.decodeTimestamps();
+        long[] milliTimestamps = milliBlock.decodeTimestamps();
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(seconds.get(i).getTimestamp(), secondTimestamps[i]);
+            assertEquals(millis.get(i).getTimestamp(), milliTimestamps[i]);
+        }
+    }
+
+    @Test
+    public void utcMonthArithmetic() {
+        assertEquals(202312, LogArchive.monthKey(LogArchive.monthStart(202401) - 1));
+        assertEquals(202401, LogArchive.monthKey(LogArchive.monthStart(202401)));
+        assertEquals(202401, LogArchive.nextMonthKey(202312));
+        assertEquals(202312, LogArchive.previousMonthKey(202401));
+        assertEquals(202206, LogArchive.addMonths(202412, -30));
+        assertEquals(202501, LogArchive.addMonths(202412, 1));
+        assertEquals(1_704_067_200_000L, LogArchive.monthStart(202401)); // 2024-01-01T00:00Z
+    }
+}
@@ -0,0 +1,97 @@
+package com.example.librelog;
+
+import org.junit.Test;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+
+import static org.junit.Assert.*;
+
+public class CsvReaderTest {
+
+    @Test
+    public void readsPlainAndQuotedFields() throws Exception {
+        CsvReader reader = new CsvReader(new StringReader("1, 2024-01-02 03:04:05 ,\"Event\",\"Notes\"\n"));
+        assertTrue(reader.readRecord());
+        assertEquals(4, reader.getFieldCount());
+        assertEquals("1", reader.getField(0));
+        assertEquals("2024-01-02 03:04:05", reader.getField(1)); // Unquoted fields are trimmed
+        assertEquals("Event", reader.getField(2));
+        assertEquals("Notes", reader.getField(3));
+        assertFalse(reader.readRecord());
+    }
+
+    @Test
+    public void handlesCommasNewlinesAndEscapedQuotesInQuotedFields() throws Exception {
+        CsvReader reader = new CsvReader(new StringReader(
+                "ID,Timestamp,Event,Notes\r\n" +
+                "7,2024-01-02 03:04:05,\"a, b\",\"said \"\"hi\"\"\nand left\"\r\n" +
+                "8,2024-01-02 03:04:06,\"\",\"\"\n"));
+        assertTrue(reader.readRecord());
+        assertEquals(1, reader.getRecordLineNumber());
+
+        assertTrue(reader.readRecord());
+        assertEquals(2, reader.getRecordLineNumber());
+        assertEquals("a, b", reader.getField(2));
+        assertEquals("said \"hi\"\nand left", reader.getField(3));
+
+        assertTrue(reader.readRecord());
+        assertEquals(4, reader.getRecordLineNumber()); // The embedded newline took up line 3
+        assertEquals(4, reader.getFieldCount());
+        assertEquals("", reader.getField(2));
+        assertEquals(0, reader.getFieldLength(3));
+        assertFalse(reader.readRecord());
+    }
+
+    @Test
+    public void blankLinesAndMissingTrailingNewline() throws Exception {
+        CsvReader reader = new CsvReader(new StringReader("a,b\n\nc,\"d"), 10);
+        assertTrue(reader.readRecord());
+        assertEquals(10, reader.getRecordLineNumber());
+        assertTrue(reader.readRecord());
+        assertTrue(reader.isEmptyRecord());
+        assertTrue(reader.readRecord());
+        assertEquals(12, reader.getRecordLineNumber());
+        assertEquals("d", reader.getField(1)); // Unterminated quote keeps what was read
+        assertFalse(reader.readRecord());
+    }
+
+    @Test
+    public void roundTripsExporterQuoting() throws Exception {
+        String[] values = {"plain", "with, comma", "\"quoted\"", "multi\nline\r\nnotes", "", "  padded  "};
+        StringWriter csv = new StringWriter();
+        for (String value : values) {
+            csv.write("1,2024-01-02 03:04:05,");
+            CsvExporter.appendQuoted(csv, "Event");
+            csv.write(',');
+            CsvExporter.appendQuoted(csv, value);
+            csv.write('\n');
+        }
+
+        CsvReader reader = new CsvReader(new StringReader(csv.toString()));
+        for (String value : values) {
+            assertTrue(reader.readRecord());
+            assertEquals(4, reader.getFieldCount());
+            assertEquals(value, reader.getField(3));
+        }
+        assertFalse(reader.readRecord());
+    }
+
+    @Test
+    public void recordsLongerThanTheInitialBuffersGrow() throws Exception {
+        StringBuilder line = new StringBuilder();
+        for (int i = 0; i < 40; i++) {
+            if (i > 0) line.append(',');
+            line.append("field").append(i);
+        }
+        StringBuilder longNote = new StringBuilder();
+        for (int i = 0; i < 100000; i++) longNote.append('x');
+        line.append(",\"").append(longNote).append("\"\n");
+
+        CsvReader reader = new CsvReader(new StringReader(line.toString()));
+        assertTrue(reader.readRecord());
+        assertEquals(41, reader.getFieldCount());
+        assertEquals("field39", reader.getField(39));
+        assertEquals(100000, reader.getFieldLength(40));
+    }
+}
@@ -1,7 +1,10 @@
 package com.example.librelog;
 
+import android.view.View;
+
 import androidx.arch.core.executor.testing.InstantTaskExecutorRule;
 import androidx.room.Room;
+import androidx.sqlite.db.SupportSQLiteDatabase;
 import androidx.test.core.app.ApplicationProvider;
 import androidx.test.ext.junit.runners.AndroidJUnit4;
 
@@ -13,8 +16,19 @@ import org.junit.runner.RunWith;
 
 import static org.junit.Assert.*;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
 import java.util.Date;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.TreeSet;
 
 @RunWith(AndroidJUnit4.class) // Needed for ApplicationProvider.getApplicationContext()
 public class LogEntryDaoTest {
@@ -34,6 +48,7 @@ public class LogEntryDaoTest {
                         AppDatabase.class)
                 // Allowing main thread queries, just for testing.
                 .allowMainThreadQueries()
+                .addCallback(AppDatabase.schemaCallback)
                 .build();
         logEntryDao = db.logEntryDao();
         eventTypeDao = db.eventTypeDao();
@@ -56,19 +71,19 @@ public class LogEntryDaoTest {
     @Test
     public void insertAndGetLogEntry() throws Exception {
         LogEntry logEntry = new LogEntry();
-        logEntry.setEvent("Test Event");
+        logEntry.setNotes("Test Event");
         logEntry.setTimestamp(new Date().getTime());
         logEntry.setEventTypeId(1); // Use long if EventTypeId is long
         logEntryDao.insert(logEntry);
 
         List<LogEntry> allEntries = logEntryDao.getRecentLogEntries(1L, 10, 0); // Assuming ID 1 is Long
-        assertEquals(allEntries.get(0).getEvent(), "Test Event");
+        assertEquals(allEntries.get(0).getNotes(), "Test Event");
     }
 
     @Test
     public void getLogEntriesByEventTypeId() throws Exception {
         LogEntry logEntry1 = new LogEntry();
-        logEntry1.setEvent("Event Type 1 Entry 1");
+        logEntry1.setNotes("Event Type 1 Entry 1");
         logEntry1.setTimestamp(new Date().getTime());
         logEntry1.setEventTypeId(1);
         logEntryDao.insert(logEntry1);
@@ -76,7 +91,7 @@ public class LogEntryDaoTest {
         Thread.sleep(10); // Ensure different timestamps
 
         LogEntry logEntry2 = new LogEntry();
-        logEntry2.setEvent("Event Type 2 Entry 1");
+        logEntry2.setNotes("Event Type 2 Entry 1");
         logEntry2.setTimestamp(new Date().getTime());
         logEntry2.setEventTypeId(2);
         logEntryDao.insert(logEntry2);
@@ -84,18 +99,18 @@ public class LogEntryDaoTest {
         Thread.sleep(10);
 
         LogEntry logEntry3 = new LogEntry();
-        logEntry3.setEvent("Event Type 1 Entry 2");
+        logEntry3.setNotes("Event Type 1 Entry 2");
         logEntry3.setTimestamp(new Date().getTime());
         logEntry3.setEventTypeId(1);
         logEntryDao.insert(logEntry3);
 
         List<LogEntry> type1Entries = logEntryDao.getRecentLogEntries(1L, 10, 0);
         assertEquals(2, type1Entries.size());
-        assertEquals("Event Type 1 Entry 2", type1Entries.get(0).getEvent()); // Most recent first
+        assertEquals("Event Type 1 Entry 2", type1Entries.get(0).getNotes()); // Most recent first
 
         List<LogEntry> type2Entries = logEntryDao.getRecentLogEntries(2L, 10, 0);
         assertEquals(1, type2Entries.size());
-        assertEquals("Event Type 2 Entry 1", type2Entries.get(0).getEvent());
+        assertEquals("Event Type 2 Entry 1", type2Entries.get(0).getNotes());
     }
 
     @Test
@@ -120,6 +135,11 @@ public class LogEntryDaoTest {
 
         long countType3 = logEntryDao.getCountLogEntries(3L); // Non-existent type
         assertEquals(0, countType3);
+
+        // The rollup sum the dashboard shows agrees with the row count
+        assertEquals(2, logEntryDao.getCountFromRollups(1L));
+        assertEquals(1, logEntryDao.getCountFromRollups(2L));
+        assertEquals(0, logEntryDao.getCountFromRollups(3L));
     }
 
      @Test
@@ -127,7 +147,7 @@ public class LogEntryDaoTest {
         // Insert 7 entries for event type 1
         for (int i = 0; i < 7; i++) {
             LogEntry entry = new LogEntry();
-            entry.setEvent("Event " + i);
+            entry.setNotes("Event " + i);
             entry.setTimestamp(new Date().getTime() + i * 100); // ensure order
             entry.setEventTypeId(1);
             logEntryDao.insert(entry);
@@ -136,11 +156,778 @@ public class LogEntryDaoTest {
         // Page 1, 5 items
         List<LogEntry> page1 = logEntryDao.getRecentLogEntries(1L, 5, 0);
         assertEquals(5, page1.size());
-        assertEquals("Event 6", page1.get(0).getEvent()); // Most recent is "Event 6"
+        assertEquals("Event 6", page1.get(0).getNotes()); // Most recent is "Event 6"
 
         // Page 2, 5 items (should get remaining 2)
         List<LogEntry> page2 = logEntryDao.getRecentLogEntries(1L, 5, 5); // offset = 5
         assertEquals(2, page2.size());
-        assertEquals("Event 1", page2.get(0).getEvent()); // Event 1 is the 6th entry in reverse chronological
+        assertEquals("Event 1", page2.get(0).getNotes()); // Event 1 is the 6th entry in reverse chronological
+    }
+
+    @Test
+    public void getLogEntriesWithKeysetPagination() throws Exception {
+        long baseTime = new Date().getTime();
+        // Two entries share a timestamp so the id tie-breaker is exercised at the page boundary
+        for (int i = 0; i < 7; i++) {
+            LogEntry entry = new LogEntry();
+            entry.setTimestamp(baseTime + (i < 5 ? i : 4) * 100);
+            entry.setNotes("Note " + i);
+            entry.setEventTypeId(1);
+            logEntryDao.insert(entry);
+        }
+
+        List<LogEntry> page1 = logEntryDao.getFirstLogEntriesPage(1L, 3);
+        assertEquals(3, page1.size());
+        assertEquals("Note 6", page1.get(0).getNotes()); // Same timestamp as 4 and 5, highest id
+
+        LogEntry last = page1.get(2);
+        List<LogEntry> page2 = logEntryDao.getLogEntriesPageAfter(1L, last.getTimestamp(), last.getId(), 3);
+        assertEquals(3, page2.size());
+        assertEquals("Note 3", page2.get(0).getNotes());
+
+        last = page2.get(2);
+        List<LogEntry> page3 = logEntryDao.getLogEntriesPageAfter(1L, last.getTimestamp(), last.getId(), 3);
+        assertEquals(1, page3.size());
+        assertEquals("Note 0", page3.get(0).getNotes());
+
+        // Seeking back from the first row of page 2 returns page 1 (oldest first)
+        LogEntry first = page2.get(0);
+        List<LogEntry> back = logEntryDao.getLogEntriesPageBefore(1L, first.getTimestamp(), first.getId(), 3);
+        assertEquals(3, back.size());
+        assertEquals("Note 6", back.get(2).getNotes());
+    }
+
+    @Test
+    public void rollupsFollowInsertUpdateAndDelete() throws Exception {
+        long now = new Date().getTime();
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTimeInMillis(now);
+        int hour = calendar.get(Calendar.HOUR_OF_DAY);
+
+        for (int i = 0; i < 3; i++) {
+            LogEntry entry = new LogEntry();
+            entry.setTimestamp(now);
+            entry.setEventTypeId(1);
+            logEntryDao.insert(entry);
+        }
+
+        List<LogEntryDao.EventCountByHour> hourly = logEntryDao.getEventCountByHour(1L);
+        assertEquals(1, hourly.size());
+        assertEquals(hour, hourly.get(0).hour);
+        assertEquals(3, hourly.get(0).count);
+
+        List<LogEntryDao.EventCountByDay> daily = logEntryDao.getEventCountByDay(1L);
+        assertEquals(1, daily.size());
+        assertEquals(calendar.get(Calendar.DAY_OF_MONTH), daily.get(0).day);
+        assertEquals(3, daily.get(0).count);
+
+        // Moving an entry to another type moves its rollup counts with it
+        LogEntry moved = logEntryDao.getFirstLogEntriesPage(1L, 1).get(0);
+        // Buckets of entries inserted without LocalTimeBuckets are filled in by SQLite
+        assertEquals(Integer.valueOf(hour), moved.getLocalHour());
+        moved.setEventTypeId(2);
+        logEntryDao.update(moved);
+        assertEquals(2, logEntryDao.getEventCountByHour(1L).get(0).count);
+        assertEquals(1, logEntryDao.getEventCountByMonthLast12(2L).get(0).count);
+
+        logEntryDao.delete(moved);
+        assertTrue(logEntryDao.getEventCountByHour(2L).isEmpty());
+    }
+
+    @Test
+    public void localTimeBucketsMatchCalendar() throws Exception {
+        Calendar calendar = Calendar.getInstance();
+        calendar.set(2024, Calendar.FEBRUARY, 29, 23, 59, 30);
+        LogEntry entry = new LogEntry();
+        entry.setTimestamp(calendar.getTimeInMillis());
+        entry.setEventTypeId(1);
+        LocalTimeBuckets.fill(entry);
+        assertEquals(Integer.valueOf(23), entry.getLocalHour());
+        assertEquals(Integer.valueOf(20240229), entry.getLocalDayKey());
+        assertEquals(Integer.valueOf(202402), entry.getLocalMonthKey());
+
+        logEntryDao.insert(entry);
+        List<LogEntryDao.EventCountByHour> hourly = logEntryDao.getEventCountByHour(1L);
+        assertEquals(23, hourly.get(0).hour);
+    }
+
+    @Test
+    public void parallelImportReportsFileLineNumbers() throws Exception {
+        // Enough rows for several blocks, with quoted line breaks that shift the line numbers
+        StringBuilder csv = new StringBuilder(CsvExporter.HEADER);
+        for (int i = 0; i < 20000; i++) {
+            if (i == 15000) {
+                csv.append("not a record\n");
+            } else if (i % 1000 == 0) {
+                csv.append(i).append(",2024-01-02 03:04:05,\"Event\",\"two\nlines ").append(i).append("\"\n");
+            } else {
+                csv.append(i).append(",2024-01-02 03:04:05,\"Event\",\"note ").append(i).append("\"\n");
+            }
+        }
+        byte[] bytes = csv.toString().getBytes(StandardCharsets.UTF_8);
+
+        CsvImporter.Result result = new CsvImporter(db, 1000, 4)
+                .importFrom(new ByteArrayInputStream(bytes), bytes.length, null);
+
+        assertEquals(19999, result.importedCount);
+        assertEquals(1, result.failedLinesCount);
+        // Header + 15000 earlier records + 15 extra lines from the quoted line breaks
+        assertTrue(result.errors.toString(), result.errors.toString().startsWith("Line 15017:"));
+        assertEquals(19999, logEntryDao.getCountAllLogEntries());
+    }
+
+    @Test
+    public void importRejectsRowsWithoutNumericId() throws Exception {
+        String csv = CsvExporter.HEADER
+                + "1,2024-01-02 03:04:05,\"Walk\",\"\"\n"
+                + "x,2024-01-02 03:04:06,\"Walk\",\"\"\n"
+                + ",2024-01-02 03:04:07,\"Walk\",\"\"\n";
+        byte[] bytes = csv.getBytes(StandardCharsets.UTF_8);
+        CsvImporter.Result result = new CsvImporter(db, 2, 2)
+                .importFrom(new ByteArrayInputStream(bytes), bytes.length, null);
+
+        assertEquals(1, result.importedCount);
+        assertEquals(2, result.failedLinesCount);
+        assertTrue(result.errors.toString(), result.errors.toString().startsWith("Line 3: Invalid ID format."));
+    }
+
+    @Test
+    public void importResolvesEventTypesByName() throws Exception {
+        eventTypeDao.insert(new EventType("Walk"));
+        String csv = CsvExporter.HEADER
+                + "1,2024-01-02 03:04:05,\"Walk\",\"\"\n"
+                + "2,2024-01-02 03:04:06,\"Run\",\"\"\n"
+                + "3,2024-01-02 03:04:07,\"Run\",\"\"\n"
+                + "4,2024-01-02 03:04:08,\"\",\"\"\n";
+        byte[] bytes = csv.getBytes(StandardCharsets.UTF_8);
+
+        new CsvImporter(db, 2, 2).importFrom(new ByteArrayInputStream(bytes), bytes.length, null);
+
+        EventType walk = eventTypeDao.findByName("Walk");
+        EventType run = eventTypeDao.findByName("Run");
+        EventType defaultType = eventTypeDao.findByName(EventType.DEFAULT_EVENT_NAME);
+        assertNotNull(run);
+        assertNotNull(defaultType);
+        assertEquals(1, logEntryDao.getCountLogEntries(walk.getEventTypeId()));
+        assertEquals(2, logEntryDao.getCountLogEntries(run.getEventTypeId()));
+        assertEquals(1, logEntryDao.getCountLogEntries(defaultType.getEventTypeId()));
+    }
+
+    @Test
+    public void reimportSkipsNaturalKeyDuplicates() throws Exception {
+        String csv = CsvExporter.HEADER
+                + "1,2024-01-02 03:04:05,\"Walk\",\"\"\n"
+                + "2,2024-01-02 03:04:05,\"Walk\",\"with notes\"\n"
+                + "3,2024-01-02 03:04:06,\"Walk\",\"\"\n";
+        byte[] bytes = csv.getBytes(StandardCharsets.UTF_8);
+
+        CsvImporter.Result first = new CsvImporter(db, 2, 1).importFrom(new ByteArrayInputStream(bytes), bytes.length, null);
+        assertEquals(3, first.importedCount);
+        assertEquals(0, first.duplicateCount);
+
+        CsvImporter.Result second = new CsvImporter(db, 2, 1).importFrom(new ByteArrayInputStream(bytes), bytes.length, null);
+        assertEquals(0, second.importedCount);
+        assertEquals(3, second.duplicateCount);
+        assertEquals(3, logEntryDao.getCountAllLogEntries());
+
+        // Entries logged in the app are never deduplicated and keep their milliseconds
+        int walk = eventTypeDao.findByName("Walk").getEventTypeId();
+        long logged = logEntryDao.getFirstLogEntriesPage(walk, 1).get(0).getTimestamp() + 1999; // 03:04:07.999
+        for (int i = 0; i < 2; i++) {
+            LogEntry entry = new LogEntry();
+            entry.setEventTypeId(walk);
+            entry.setTimestamp(logged);
+            logEntryDao.insert(entry);
+        }
+        assertEquals(5, logEntryDao.getCountAllLogEntries());
+        assertEquals(logged, logEntryDao.getFirstLogEntriesPage(walk, 1).get(0).getTimestamp());
+
+        // Their export has whole seconds and still matches them on re-import. Null notes export as ""
+        // and must match them too.
+        bytes = (CsvExporter.HEADER + "1,2024-01-02 03:04:07,\"Walk\",\"\"\n").getBytes(StandardCharsets.UTF_8);
+        CsvImporter.Result third = new CsvImporter(db, 2, 1).importFrom(new ByteArrayInputStream(bytes), bytes.length, null);
+        assertEquals(0, third.importedCount);
+        assertEquals(1, third.duplicateCount);
+        assertEquals(5, logEntryDao.getCountAllLogEntries());
+    }
+
+    @Test
+    public void writeBufferCommitsEnqueuedEntriesInBatches() throws Exception {
+        LogEntryWriteBuffer buffer = new LogEntryWriteBuffer(db);
+        long[] committed = new long[1];
+        for (int i = 0; i < LogEntryWriteBuffer.MAX_BATCH_SIZE + 10; i++) {
+            LogEntry entry = new LogEntry();
+            entry.setTimestamp(i * 1000L);
+            entry.setEventTypeId(1);
+            buffer.enqueue(entry, rowId -> {
+                if (rowId != -1) committed[0]++; // Listeners run on the single writer thread
+            });
+        }
+        // An entry that cannot be stored (no such event type) is reported as such; the rest of its
+        // batch is still committed
+        LogEntry orphan = new LogEntry();
+        orphan.setEventTypeId(999);
+        long[] orphanRowId = new long[1];
+        buffer.enqueue(orphan, rowId -> orphanRowId[0] = rowId);
+
+        buffer.flush();
+        assertEquals(LogEntryWriteBuffer.MAX_BATCH_SIZE + 10, committed[0]);
+        assertEquals(-1, orphanRowId[0]);
+        assertEquals(LogEntryWriteBuffer.MAX_BATCH_SIZE + 10, logEntryDao.getCountAllLogEntries());
+    }
+
+    @Test
+    public void analyticsComputesAllChartsInOnePass() throws Exception {
+        long base = new Date().getTime();
+        base -= base % 1000;
+        long[] offsets = {0, 1000, 2000, 5000, 5000}; // The duplicate timestamp gives no interval
+        for (int i = 0; i < offsets.length; i++) {
+            LogEntry entry = new LogEntry();
+            entry.setTimestamp(base + offsets[i]);
+            entry.setEventTypeId(1);
+            LocalTimeBuckets.fill(entry);
+            logEntryDao.insert(entry);
+        }
+
+        EventAnalytics.Result result = new EventAnalytics(logEntryDao).compute(1L);
+        int hourlyTotal = 0;
+        for (int count : result.hourly) hourlyTotal += count;
+        assertEquals(5, hourlyTotal);
+        assertEquals(3, result.intervalCount);
+        assertEquals(1050, result.medianInterval); // The middle of bucket [1000, 1100)
+        assertEquals(3050, result.p99Interval);
+        assertEquals(2, result.intervalBins[1]); // 1s..2s
+        assertEquals(1, result.intervalBins[2]); // 2s..5s
+        assertEquals(1, result.firstIntervalBin);
+        assertEquals(2, result.lastIntervalBin);
+    }
+
+    @Test
+    public void intervalBucketsFollowInsertsDeletesAndUpdates() throws Exception {
+        long[] timestamps = {10_000, 70_000, 40_000, 40_000, 3_600_000, 20_000};
+        LogEntry[] entries = new LogEntry[timestamps.length];
+        for (int i = 0; i < timestamps.length; i++) {
+            entries[i] = new LogEntry();
+            entries[i].setTimestamp(timestamps[i]);
+            entries[i].setEventTypeId(1);
+            entries[i].setId((int) logEntryDao.insertAll(Arrays.asList(entries[i]))[0]);
+        }
+        // Distinct timestamps 10s, 20s, 40s, 70s, 1h: gaps 10s, 20s, 30s, 3530s
+        assertIntervals(10_000, 20_000, 30_000, 3_530_000);
+
+        logEntryDao.delete(entries[2]); // The other 40s entry keeps the gaps as they are
+        assertIntervals(10_000, 20_000, 30_000, 3_530_000);
+        logEntryDao.delete(entries[1]); // 40s -> 1h joins 30s and 3530s
+        assertIntervals(10_000, 20_000, 3_560_000);
+
+        entries[4].setTimestamp(50_000); // Moving an entry takes its gaps with it
+        logEntryDao.update(entries[4]);
+        assertIntervals(10_000, 10_000, 20_000);
+        entries[4].setEventTypeId(2);
+        logEntryDao.update(entries[4]);
+        assertIntervals(10_000, 20_000);
+        assertTrue(logEntryDao.getIntervalBuckets(2L).isEmpty()); // A single entry has no gap
+
+        // Bucket geometry: two significant digits, in gap order
+        assertEquals(734, IntervalBucket.bucketOf(3_456_000));
+        assertEquals(3_400_000, IntervalBucket.lowerBound(734));
+        assertEquals(3_500_000, IntervalBucket.upperBound(734));
+        assertEquals(107, IntervalBucket.bucketOf(7));
+        assertTrue(IntervalBucket.bucketOf(99) < IntervalBucket.bucketOf(100));
+    }
+
+    // Gaps expected for type 1, each compared by bucket
+    private void assertIntervals(long... gaps) {
+        List<IntervalBucket> buckets = logEntryDao.getIntervalBuckets(1L);
+        int[] expected = new int[gaps.length];
+        for (int i = 0; i < gaps.length; i++) expected[i] = IntervalBucket.bucketOf(gaps[i]);
+        int[] actual = new int[gaps.length];
+        int index = 0;
+        for (IntervalBucket bucket : buckets) {
+            for (int i = 0; i < bucket.getCount(); i++) {
+                assertTrue(index < gaps.length);
+                actual[index++] = bucket.getBucket();
+            }
+        }
+        assertEquals(gaps.length, index);
+        assertArrayEquals(expected, actual);
+    }
+
+    @Test
+    public void dashboardCacheMissesAfterWrites() throws Exception {
+        DashboardCache cache = db.dashboardCache();
+        long version = cache.version();
+        List<LogEntryRow> page = LogEntryRow.fromEntries(logEntryDao.getFirstLogEntriesPage(1L, 5), db.eventTypeNames().get());
+        cache.put(DashboardCache.RECENT_ENTRIES, 1L, version, page, DashboardCache.estimateBytes(page));
+        assertSame(page, cache.get(DashboardCache.RECENT_ENTRIES, 1L));
+        assertNull(cache.get(DashboardCache.RECENT_ENTRIES, 2L));
+
+        // Any write to log_entries makes the stored page stale, and a result read before it is not stored
+        LogEntry entry = new LogEntry();
+        entry.setEventTypeId(1);
+        logEntryDao.insert(entry);
+        assertNotEquals(version, cache.version());
+        assertNull(cache.get(DashboardCache.RECENT_ENTRIES, 1L));
+        cache.put(DashboardCache.RECENT_ENTRIES, 1L, version, page, DashboardCache.estimateBytes(page));
+        assertNull(cache.get(DashboardCache.RECENT_ENTRIES, 1L));
+        assertTrue(cache.describeStats().startsWith("Dashboard cache: 1 hits, 3 misses"));
+    }
+
+    @Test
+    public void rowsArePreformattedForBinding() throws Exception {
+        StringBuilder longNotes = new StringBuilder();
+        for (int i = 0; i < LogEntryRow.MAX_NOTES_LENGTH + 50; i++) longNotes.append('x');
+        LogEntry withNotes = new LogEntry();
+        withNotes.setTimestamp(2000);
+        withNotes.setEventTypeId(1);
+        withNotes.setNotes(longNotes.toString());
+        LogEntry withoutNotes = new LogEntry();
+        withoutNotes.setTimestamp(1000);
+
+        List<LogEntryRow> rows = LogEntryRow.fromEntries(Arrays.asList(withNotes, withoutNotes), db.eventTypeNames().get());
+        assertEquals("Test Event Type 1", rows.get(0).event);
+        assertEquals(LogEntryRow.MAX_NOTES_LENGTH + 1, rows.get(0).notes.length()); // Cut, plus the ellipsis
+        assertEquals(View.VISIBLE, rows.get(0).notesVisibility);
+        assertEquals("", rows.get(1).notes);
+        assertEquals("", rows.get(1).event); // No event type
+        assertEquals(View.GONE, rows.get(1).notesVisibility);
+        assertFalse(rows.get(0).formattedTimestamp.isEmpty());
+    }
+
+    @Test
+    public void timelineZeroFillsDaysAndBucketsShortSpans() throws Exception {
+        Calendar calendar = Calendar.getInstance();
+        calendar.clear();
+        calendar.set(2020, Calendar.JANUARY, 1, 12, 0, 0);
+        long firstDay = calendar.getTimeInMillis();
+        // Two entries on the first day, one 99 days later
+        for (long timestamp : new long[]{firstDay, firstDay + 60_000, firstDay + 99 * TimelineLoader.DAY_MILLIS}) {
+            LogEntry entry = new LogEntry();
+            entry.setTimestamp(timestamp);
+            entry.setEventTypeId(1);
+            LocalTimeBuckets.fill(entry);
+            logEntryDao.insert(entry);
+        }
+        TimelineLoader loader = new TimelineLoader(logEntryDao, new LogArchive(db));
+
+        // 100 days from the day rollups, one point each
+        TimelineLoader.Timeline days = loader.load(1L, firstDay, firstDay + 99 * TimelineLoader.DAY_MILLIS, 1000);
+        assertEquals(TimelineLoader.DAY_MILLIS, days.bucketMillis);
+        assertEquals(100, days.size);
+        assertEquals(2f, days.y[0], 0f);
+        assertEquals(0f, days.y[50], 0f);
+        assertEquals(1f, days.y[99], 0f);
+        assertEquals(2f, days.maxY, 0f);
+        assertEquals(firstDay - 12 * TimelineLoader.HOUR_MILLIS, days.historyStart);
+
+        // Fewer points than days: LTTB keeps the ends and the peak
+        TimelineLoader.Timeline reduced = loader.load(1L, firstDay, firstDay + 99 * TimelineLoader.DAY_MILLIS, 10);
+        assertEquals(10, reduced.size);
+        assertEquals(2f, reduced.maxY, 0f);
+
+        // Two hours at 60 points: two-minute buckets would be needed, so five-minute ones are used
+        TimelineLoader.Timeline hours = loader.load(1L, firstDay, firstDay + 2 * TimelineLoader.HOUR_MILLIS, 60);
+        assertEquals(5 * TimelineLoader.MINUTE_MILLIS, hours.bucketMillis);
+        assertEquals(24, hours.size);
+        assertEquals(2f, hours.y[0], 0f);
+    }
+
+    @Test
+    public void searchRanksPrefixMatchesAndAppliesFilters() throws Exception {
+        String[] notes = {"Coffee with milk", "coffee, coffee and more COFFEE", "Walked the dog", "Café au lait", "Milk"};
+        long[] eventTypeIds = {1, 1, 1, 2, 1};
+        for (int i = 0; i < notes.length; i++) {
+            LogEntry entry = new LogEntry();
+            entry.setNotes(notes[i]);
+            entry.setTimestamp(1_000_000L * (i + 1));
+            entry.setEventTypeId((int) eventTypeIds[i]);
+            logEntryDao.insert(entry);
+        }
+        LogEntrySearch search = new LogEntrySearch(logEntryDao, new LogArchive(db), db.eventTypeNames());
+
+        // Prefix match, most hits first, ignoring case
+        List<LogEntryRow> rows = search.search("cof", LogEntrySearch.ALL_EVENT_TYPES, 0, Long.MAX_VALUE, 0);
+        assertEquals(2, rows.size());
+        assertEquals("coffee, coffee and more COFFEE", rows.get(0).notes);
+        assertEquals("Coffee with milk", rows.get(1).notes);
+        assertEquals("Test Event Type 1", rows.get(0).event);
+
+        // Diacritics are folded
+        rows = search.search("cafe", LogEntrySearch.ALL_EVENT_TYPES, 0, Long.MAX_VALUE, 0);
+        assertEquals(1, rows.size());
+        assertEquals("Test Event Type 2", rows.get(0).event);
+
+        // Type and time filters
+        assertTrue(search.search("cafe", 1L, 0, Long.MAX_VALUE, 0).isEmpty());
+        rows = search.search("milk", 1L, 0, 4_000_000L, 0);
+        assertEquals(1, rows.size());
+        rows = search.search("milk", 1L, 0, Long.MAX_VALUE, 0);
+        assertEquals(2, rows.size());
+        assertEquals(5_000_000L, rows.get(0).timestamp); // Equal hits: newest first
+
+        // Edits and deletes reach the index
+        List<LogEntry> typeEntries = logEntryDao.getRecentLogEntries(1L, 10, 0);
+        LogEntry dogEntry = null;
+        for (LogEntry entry : typeEntries) {
+            if ("Walked the dog".equals(entry.getNotes())) dogEntry = entry;
+        }
+        assertNotNull(dogEntry);
+        dogEntry.setNotes("Walked the cat");
+        logEntryDao.update(dogEntry);
+        assertTrue(search.search("dog", LogEntrySearch.ALL_EVENT_TYPES, 0, Long.MAX_VALUE, 0).isEmpty());
+        assertEquals(1, search.search("walk cat", LogEntrySearch.ALL_EVENT_TYPES, 0, Long.MAX_VALUE, 0).size());
+        logEntryDao.delete(dogEntry);
+        assertTrue(search.search("cat", LogEntrySearch.ALL_EVENT_TYPES, 0, Long.MAX_VALUE, 0).isEmpty());
+
+        // Event names are indexed with the notes, and follow a rename
+        rows = search.search("type 2", LogEntrySearch.ALL_EVENT_TYPES, 0, Long.MAX_VALUE, 0);
+        assertEquals(1, rows.size());
+        assertEquals("Café au lait", rows.get(0).notes);
+        assertEquals(3, search.search("type 1", LogEntrySearch.ALL_EVENT_TYPES, 0, Long.MAX_VALUE, 0).size());
+        EventType type2 = eventTypeDao.findById(2);
+        type2.setEventName("Breakfast");
+        eventTypeDao.update(type2);
+        assertTrue(search.search("type 2", LogEntrySearch.ALL_EVENT_TYPES, 0, Long.MAX_VALUE, 0).isEmpty());
+        rows = search.search("breakf lait", LogEntrySearch.ALL_EVENT_TYPES, 0, Long.MAX_VALUE, 0);
+        assertEquals(1, rows.size());
+        assertEquals("Breakfast", rows.get(0).event);
+        eventTypeDao.delete(type2); // Its entries stay, without a type
+        assertTrue(search.search("breakf", LogEntrySearch.ALL_EVENT_TYPES, 0, Long.MAX_VALUE, 0).isEmpty());
+        assertEquals(1, search.search("lait", LogEntrySearch.ALL_EVENT_TYPES, 0, Long.MAX_VALUE, 0).size());
+
+        // Past the result window nothing more is read
+        assertTrue(search.search("milk", LogEntrySearch.ALL_EVENT_TYPES, 0, Long.MAX_VALUE,
+                LogEntrySearch.RESULT_WINDOW / LogEntrySearch.PAGE_SIZE).isEmpty());
+    }
+
+    @Test
+    public void eventNamesFollowRenamesInRowsAndExport() throws Exception {
+        LogEntry entry = new LogEntry();
+        entry.setTimestamp(1000);
+        entry.setEventTypeId(1);
+        entry.setNotes("Say \"hi\"");
+        logEntryDao.insert(entry);
+        LogEntry orphan = new LogEntry(); // Its type was deleted
+        orphan.setTimestamp(2000);
+        logEntryDao.insert(orphan);
+
+        EventTypeNames eventTypeNames = db.eventTypeNames();
+        Map<Integer, String> names = eventTypeNames.get();
+        assertSame(names, eventTypeNames.get()); // Read once until event_types changes
+        assertEquals("Test Event Type 1", names.get(1));
+
+        EventType type1 = eventTypeDao.findById(1);
+        type1.setEventName("Renamed");
+        eventTypeDao.update(type1);
+        List<LogEntryRow> rows = LogEntryRow.fromEntries(logEntryDao.getFirstLogEntriesPage(1L, 5), eventTypeNames.get());
+        assertEquals("Renamed", rows.get(0).event);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertEquals(2, new CsvExporter(db).export(out, null));
+        String[] lines = out.toString("UTF-8").split("\n");
+        assertTrue(lines[1], lines[1].endsWith(",\"Renamed\",\"Say \"\"hi\"\"\""));
+        assertTrue(lines[2], lines[2].endsWith(",\"\",\"\""));
+    }
+
+    @Test
+    public void archivingKeepsRollupsIntervalsPagesAndExport() throws Exception {
+        LogArchive archive = new LogArchive(db);
+        List<Long> timestamps = new ArrayList<>();
+        long start = LogArchive.monthStart(202001) + 7 * TimelineLoader.HOUR_MILLIS;
+        for (int i = 0; i < 30; i++) {
+            timestamps.add(start + i * 9 * TimelineLoader.DAY_MILLIS + i * 61_000L); // Jan to Sep 2020
+        }
+        timestamps.add(timestamps.get(3)); // Shares a timestamp: no gap
+        long now = (System.currentTimeMillis() / 1000) * 1000;
+        timestamps.add(now - 60_000);
+        timestamps.add(now);
+        for (int i = 0; i < timestamps.size(); i++) insertAt(timestamps.get(i), "note " + i);
+
+        List<LogEntryDao.EventCountByHour> hourly = logEntryDao.getEventCountByHour(1L);
+        List<LogEntry> everything = logEntryDao.getAllLogEntries(1L);
+        assertIntervals(gaps(timestamps));
+
+        int archived = archive.archiveOlderThan(LogArchive.monthStart(202006), TimeZone.getDefault().getID());
+        assertEquals(18, archived); // Jan to May: entries 0-16 and the duplicate timestamp
+        assertEquals(timestamps.size() - 18, logEntryDao.getCountLogEntries(1L));
+        assertEquals(timestamps.size(), logEntryDao.getCountFromRollups(1L));
+        assertEquals(hourly.size(), logEntryDao.getEventCountByHour(1L).size());
+        for (int i = 0; i < hourly.size(); i++) {
+            assertEquals(hourly.get(i).count, logEntryDao.getEventCountByHour(1L).get(i).count);
+        }
+        assertIntervals(gaps(timestamps));
+        assertEquals(0, archive.archiveOlderThan(LogArchive.monthStart(202006), TimeZone.getDefault().getID()));
+
+        // Pages run from live entries into archived ones and back, in (timestamp, id) order
+        List<Integer> ids = new ArrayList<>();
+        List<LogEntry> page = archive.getFirstLogEntriesPage(1L, 4);
+        while (!page.isEmpty()) {
+            for (LogEntry entry : page) ids.add(entry.getId());
+            LogEntry last = page.get(page.size() - 1);
+            page = archive.getLogEntriesPageAfter(1L, last.getTimestamp(), last.getId(), 4);
+        }
+        assertEquals(everything.size(), ids.size());
+        for (int i = 1; i < ids.size(); i++) {
+            LogEntry previous = findEntry(everything, ids.get(i - 1));
+            LogEntry current = findEntry(everything, ids.get(i));
+            assertTrue(previous.getTimestamp() > current.getTimestamp()
+                    || (previous.getTimestamp() == current.getTimestamp() && previous.getId() > current.getId()));
+        }
+        LogEntry oldest = findEntry(everything, ids.get(ids.size() - 1));
+        List<LogEntry> newer = archive.getLogEntriesPageBefore(1L, oldest.getTimestamp(), oldest.getId(), 20);
+        assertEquals(20, newer.size()); // Oldest first, across the archive's end
+        assertEquals(ids.get(ids.size() - 2), Integer.valueOf(newer.get(0).getId()));
+        assertEquals(ids.get(ids.size() - 21), Integer.valueOf(newer.get(19).getId()));
+
+        // Live writes next to the archive keep the histogram exact
+        insertAt(timestamps.get(17) - 1000, "just after the archive"); // Entry 17 is the oldest live one
+        timestamps.add(timestamps.get(17) - 1000);
+        assertIntervals(gaps(timestamps));
+        for (int i = 0; i < 2; i++) { // The new entry, then the oldest of the original live ones
+            LogEntry liveOldest = logEntryDao.getLogEntriesInRange(1L, 0, Long.MAX_VALUE).get(0);
+            logEntryDao.delete(liveOldest);
+            timestamps.remove(Long.valueOf(liveOldest.getTimestamp()));
+            assertIntervals(gaps(timestamps));
+        }
+
+        // Zoomed-in timeline counts archived entries
+        TimelineLoader.Timeline hours = new TimelineLoader(logEntryDao, archive)
+                .load(1L, start, start + 2 * TimelineLoader.HOUR_MILLIS, 60);
+        assertEquals(1f, hours.y[0], 0f);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertEquals(timestamps.size(), new CsvExporter(db).export(out, null));
+        assertTrue(out.toString("UTF-8").contains(",\"Test Event Type 1\",\"note 0\"\n"));
+    }
+
+    @Test
+    public void importSkipsArchivedEntriesAndFoldsNewOnes() throws Exception {
+        long start = LogArchive.monthStart(202003);
+        List<Long> timestamps = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            timestamps.add(start + i * 2 * TimelineLoader.DAY_MILLIS);
+            insertAt(start + i * 2 * TimelineLoader.DAY_MILLIS, i % 2 == 0 ? null : "odd " + i);
+        }
+        LogArchive archive = new LogArchive(db);
+        assertEquals(10, archive.archiveOlderThan(LogArchive.monthStart(202101), TimeZone.getDefault().getID()));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new CsvExporter(db).export(out, null);
+        byte[] bytes = out.toByteArray();
+
+        CsvImporter.Result again = new CsvImporter(db, 4, 2).importFrom(new ByteArrayInputStream(bytes), bytes.length, null);
+        assertEquals(0, again.importedCount);
+        assertEquals(10, again.duplicateCount);
+        assertEquals(0, logEntryDao.getCountAllLogEntries());
+
+        // A new entry among archived ones is moved into its block and the gaps are recounted
+        long between = start + 3 * TimelineLoader.DAY_MILLIS;
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.getDefault());
+        String csv = CsvExporter.HEADER + "1," + format.format(new Date(between)) + ",\"Test Event Type 1\",\"new\"\n";
+        bytes = csv.getBytes(StandardCharsets.UTF_8);
+        CsvImporter.Result added = new CsvImporter(db, 4, 1).importFrom(new ByteArrayInputStream(bytes), bytes.length, null);
+        assertEquals(1, added.importedCount);
+        timestamps.add(between);
+        assertEquals(0, logEntryDao.getCountAllLogEntries());
+        assertEquals(11, db.archiveBlockDao().getStats().entries);
+        assertEquals(11, logEntryDao.getCountFromRollups(1L));
+        assertIntervals(gaps(timestamps));
+    }
+
+    @Test
+    public void rebucketMovesArchivedRollups() throws Exception {
+        long start = LogArchive.monthStart(202104);
+        long[] timestamps = {start + TimelineLoader.HOUR_MILLIS, start + 5 * TimelineLoader.HOUR_MILLIS,
+                start + 30 * TimelineLoader.HOUR_MILLIS};
+        for (long timestamp : timestamps) insertAt(timestamp, null);
+        LogArchive archive = new LogArchive(db);
+        assertEquals(3, archive.archiveOlderThan(LogArchive.monthStart(202105), TimeZone.getDefault().getID()));
+
+        String zone = TimeZone.getDefault().getID().equals("Pacific/Kiritimati") ? "America/Adak" : "Pacific/Kiritimati";
+        assertEquals(3, archive.rebucket(zone));
+        assertEquals(0, archive.rebucket(zone)); // The blocks now record the zone
+
+        int[] expected = new int[24];
+        Calendar calendar = Calendar.getInstance(TimeZone.getTimeZone(zone));
+        for (long timestamp : timestamps) {
+            calendar.setTimeInMillis(timestamp);
+            expected[calendar.get(Calendar.HOUR_OF_DAY)]++;
+        }
+        int[] actual = new int[24];
+        for (LogEntryDao.EventCountByHour row : logEntryDao.getEventCountByHour(1L)) actual[row.hour] = row.count;
+        assertArrayEquals(expected, actual);
+        assertEquals(3, logEntryDao.getCountFromRollups(1L));
+    }
+
+    @Test
+    public void rebuildRollupsRecountsLiveAndArchivedEntries() throws Exception {
+        // Entries over the last six months, the older ones archived and re-bucketed to another zone
+        long now = (System.currentTimeMillis() / 1000) * 1000;
+        for (int i = 0; i < 40; i++) {
+            insertAt(now - i * 4 * TimelineLoader.DAY_MILLIS - i * 3_700_000L, null);
+        }
+        LogArchive archive = new LogArchive(db);
+        int cutoffMonth = LogArchive.addMonths(LogArchive.monthKey(now), -2);
+        assertTrue(archive.archiveOlderThan(LogArchive.monthStart(cutoffMonth), TimeZone.getDefault().getID()) > 0);
+        String zone = TimeZone.getDefault().getID().equals("Pacific/Kiritimati") ? "America/Adak" : "Pacific/Kiritimati";
+        assertTrue(archive.rebucket(zone) > 0);
+        String charts = charts(1L);
+
+        SupportSQLiteDatabase sql = db.getOpenHelper().getWritableDatabase();
+        sql.execSQL("UPDATE event_rollups SET count = count + 5 WHERE bucket_kind = " + EventRollup.KIND_HOUR);
+        sql.execSQL("DELETE FROM event_rollups WHERE bucket_kind = " + EventRollup.KIND_MONTH);
+        assertNotEquals(charts, charts(1L));
+
+        archive.rebuildRollups();
+        assertEquals(charts, charts(1L));
+        assertEquals(40, logEntryDao.getCountFromRollups(1L));
+    }
+
+    @Test
+    public void searchFindsArchivedEntriesAfterLiveOnes() {
+        insertAt(LogArchive.monthStart(202401), "Tea, live");
+        insertAt(LogArchive.monthStart(202001) + 1000, "Tea with lemon");
+        insertAt(LogArchive.monthStart(202001) + 2000, "Coffee");
+        LogEntry green = new LogEntry();
+        green.setTimestamp(LogArchive.monthStart(202002));
+        green.setEventTypeId(2);
+        green.setNotes("Green tea");
+        LocalTimeBuckets.fill(green);
+        logEntryDao.insert(green);
+        assertEquals(3, new LogArchive(db).archiveOlderThan(LogArchive.monthStart(202003), TimeZone.getDefault().getID()));
+        LogEntrySearch search = new LogEntrySearch(logEntryDao, new LogArchive(db), db.eventTypeNames());
+
+        // Live matches first, then archived ones newest first
+        List<LogEntryRow> rows = search.search("tea", LogEntrySearch.ALL_EVENT_TYPES, 0, Long.MAX_VALUE, 0);
+        assertEquals(3, rows.size());
+        assertEquals("Tea, live", rows.get(0).notes);
+        assertEquals("Green tea", rows.get(1).notes);
+        assertEquals("Test Event Type 2", rows.get(1).event);
+        assertEquals("Tea with lemon", rows.get(2).notes);
+        assertTrue(search.search("tea", LogEntrySearch.ALL_EVENT_TYPES, 0, Long.MAX_VALUE, 1).isEmpty());
+
+        // The same filters, and event names match archived entries too
+        assertEquals(2, search.search("tea", 1L, 0, Long.MAX_VALUE, 0).size());
+        assertEquals(2, search.search("tea", LogEntrySearch.ALL_EVENT_TYPES, LogArchive.monthStart(202002), Long.MAX_VALUE, 0).size());
+        rows = search.search("type 2 tea", LogEntrySearch.ALL_EVENT_TYPES, 0, Long.MAX_VALUE, 0);
+        assertEquals(1, rows.size());
+        assertEquals("Green tea", rows.get(0).notes);
+        assertEquals(1, search.search("lemo", LogEntrySearch.ALL_EVENT_TYPES, 0, Long.MAX_VALUE, 0).size());
+        assertTrue(search.search("emon", LogEntrySearch.ALL_EVENT_TYPES, 0, Long.MAX_VALUE, 0).isEmpty());
+    }
+
+    @Test
+    public void pagerKeepsAWindowOfPagesWhileScrolling() {
+        int pageSize = LogEntryPager.PAGE_SIZE;
+        int total = pageSize * (LogEntryPager.MAX_PAGES + 2);
+        long base = 1_700_000_000_000L;
+        for (int i = 0; i < total; i++) insertAt(base + i * 1000L, null);
+        long newest = base + (total - 1) * 1000L;
+
+        // Mirrors the adapter's list; loads and their delivery run synchronously
+        List<LogEntryRow> window = new ArrayList<>();
+        LogArchive archive = new LogArchive(db);
+        LogEntryPager pager = new LogEntryPager(archive, db.eventTypeNames(), new LogEntryPager.Callback() {
+            @Override
+            public void onPageAppended(List<LogEntryRow> page) {
+                window.addAll(page);
+            }
+
+            @Override
+            public void onPagePrepended(List<LogEntryRow> page) {
+                window.addAll(0, page);
+            }
+
+            @Override
+            public void onItemsDropped(boolean fromStart, int count) {
+                if (fromStart) {
+                    window.subList(0, count).clear();
+                } else {
+                    window.subList(window.size() - count, window.size()).clear();
+                }
+            }
+        }, Runnable::run, Runnable::run);
+        window.addAll(LogEntryRow.fromEntries(archive.getFirstLogEntriesPage(1L, pageSize), db.eventTypeNames().get()));
+        pager.reset(1L, new ArrayList<>(window));
+        assertWindow(pager, window, newest);
+
+        // Down to the oldest entry, dropping the newest pages on the way
+        boolean droppedNewest = false;
+        for (int step = 0; window.get(window.size() - 1).timestamp != base; step++) {
+            assertTrue("Stuck scrolling down", step < total);
+            pager.onVisibleRange(window.size() - 1, window.size() - 1);
+            assertWindow(pager, window, window.get(0).timestamp);
+            droppedNewest |= window.get(0).timestamp != newest;
+        }
+        assertTrue(droppedNewest);
+        assertEquals(LogEntryPager.MAX_PAGES * pageSize, pager.getItemCount());
+        pager.onVisibleRange(window.size() - 1, window.size() - 1); // Nothing older to load
+        assertEquals(base, window.get(window.size() - 1).timestamp);
+
+        // And back up to the newest one, reloading the dropped pages
+        for (int step = 0; window.get(0).timestamp != newest; step++) {
+            assertTrue("Stuck scrolling up", step < total);
+            pager.onVisibleRange(0, 0);
+            assertWindow(pager, window, window.get(0).timestamp);
+        }
+        assertNotEquals(base, window.get(window.size() - 1).timestamp); // The oldest pages were dropped
+        assertEquals(LogEntryPager.MAX_PAGES * pageSize, pager.getItemCount());
+    }
+
+    // The window is a run of entries one second apart, newest first, starting at first
+    private static void assertWindow(LogEntryPager pager, List<LogEntryRow> window, long first) {
+        assertEquals(window.size(), pager.getItemCount());
+        assertTrue(window.size() <= LogEntryPager.MAX_PAGES * LogEntryPager.PAGE_SIZE);
+        for (int i = 0; i < window.size(); i++) {
+            assertEquals(first - i * 1000L, window.get(i).timestamp);
+        }
+    }
+
+    private void insertAt(long timestamp, String notes) {
+        LogEntry entry = new LogEntry();
+        entry.setTimestamp(timestamp);
+        entry.setEventTypeId(1);
+        entry.setNotes(notes);
+        LocalTimeBuckets.fill(entry);
+        logEntryDao.insert(entry);
+    }
+
+    private static LogEntry findEntry(List<LogEntry> entries, int id) {
+        for (LogEntry entry : entries) {
+            if (entry.getId() == id) return entry;
+        }
+        return null;
+    }
+
+    // Gaps between the distinct timestamps, in bucket order like assertIntervals reads them
+    // The hour, day and month charts of the type as one string
+    private String charts(long eventTypeId) {
+        StringBuilder charts = new StringBuilder();
+        for (LogEntryDao.EventCountByHour row : logEntryDao.getEventCountByHour(eventTypeId)) {
+            charts.append("h").append(row.hour).append('=').append(row.count).append(' ');
+        }
+        for (LogEntryDao.EventCountByDay row : logEntryDao.getEventCountByDay(eventTypeId)) {
+            charts.append("d").append(row.day).append('=').append(row.count).append(' ');
+        }
+        for (LogEntryDao.EventCountByMonth row : logEntryDao.getEventCountByMonthLast12(eventTypeId)) {
+            charts.append("m").append(row.month).append('=').append(row.count).append(' ');
+        }
+        return charts.toString();
+    }
+
+    private static long[] gaps(List<Long> timestamps) {
+        List<Long> distinct = new ArrayList<>(new TreeSet<>(timestamps));
+        long[] gaps = new long[distinct.size() - 1];
+        for (int i = 1; i < distinct.size(); i++) gaps[i - 1] = distinct.get(i) - distinct.get(i - 1);
+        Arrays.sort(gaps);
+        return gaps;
+    }
+
+    @Test
+    public void searchQueryDropsOperatorsAndPunctuation() {
+        assertEquals("cof* walk*", LogEntrySearch.toMatchQuery("cof* -walk"));
+        assertEquals("and* tea*", LogEntrySearch.toMatchQuery("AND \"tea\""));
+        assertEquals("café*", LogEntrySearch.toMatchQuery("café"));
+        assertNull(LogEntrySearch.toMatchQuery(" *-()\" "));
+        assertNull(LogEntrySearch.toMatchQuery(null));
     }
 }
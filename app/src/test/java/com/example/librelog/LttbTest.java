@@ -0,0 +1,48 @@
+package com.example.librelog;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class LttbTest {
+
+    @Test
+    public void keepsEndsAndSpikes() {
+        int length = 10_000;
+        long[] xs = new long[length];
+        float[] ys = new float[length];
+        for (int i = 0; i < length; i++) {
+            xs[i] = 1_600_000_000_000L + i * 60_000L;
+            ys[i] = i % 2; // Flat-ish noise...
+        }
+        ys[4321] = 100; // ...with one spike an average would flatten
+
+        long[] outX = new long[100];
+        float[] outY = new float[100];
+        int count = Lttb.downsample(xs, ys, length, 100, outX, outY);
+
+        assertEquals(100, count);
+        assertEquals(xs[0], outX[0]);
+        assertEquals(xs[length - 1], outX[count - 1]);
+        boolean spikeKept = false;
+        for (int i = 0; i < count; i++) {
+            if (i > 0) assertTrue(outX[i] > outX[i - 1]); // Still sorted, no point twice
+            if (outX[i] == xs[4321]) spikeKept = outY[i] == 100;
+        }
+        assertTrue(spikeKept);
+    }
+
+    @Test
+    public void copiesShortSeries() {
+        long[] xs = {1, 2, 3};
+        float[] ys = {5, 6, 7};
+        long[] outX = new long[10];
+        float[] outY = new float[10];
+        assertEquals(3, Lttb.downsample(xs, ys, 3, 10, outX, outY));
+        assertArrayEquals(new long[]{1, 2, 3}, Arrays.copyOf(outX, 3));
+        assertEquals(2, Lttb.downsample(xs, ys, 3, 2, outX, outY)); // Ends only
+        assertEquals(3, outX[1]);
+    }
+}
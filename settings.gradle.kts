@@ -16,7 +16,7 @@ dependencyResolutionManagement {
     repositories {
         google()
         mavenCentral()
-        maven { url = java.net.URI("https://jitpack.io") } // Added JitPack here
+        maven { url = java.net.URI("https://jitpack.io") } // MPAndroidChart, for a benchmark only
     }
 }
 rootProject.name = "LibreLog"